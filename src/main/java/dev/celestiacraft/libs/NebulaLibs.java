@@ -13,6 +13,7 @@ import dev.celestiacraft.libs.compat.ICheckModLoaded;
 import dev.celestiacraft.libs.compat.ftbquests.client.FTBQuestsClientCompat;
 import dev.celestiacraft.libs.config.CommonConfig;
 import dev.celestiacraft.libs.debug.DebugUserManager;
+import dev.celestiacraft.libs.network.NebulaNetwork;
 import net.createmod.catnip.lang.FontHelper;
 import net.minecraft.client.Minecraft;
 import net.minecraft.resources.ResourceLocation;
@@ -56,6 +57,8 @@ public class NebulaLibs {
 
 		NebulaItem.register(bus);
 
+		NebulaNetwork.register();
+
 		context.registerConfig(ModConfig.Type.COMMON, CommonConfig.SPEC, "nebula/libs/common.toml");
 		DebugUserManager.load();
 	}
@@ -4,8 +4,10 @@ import com.simibubi.create.AllTags;
 import com.simibubi.create.foundation.block.IBE;
 import dev.celestiacraft.libs.api.interaction.context.UseContext;
 import dev.celestiacraft.libs.api.register.block.BasicBlock;
+import dev.celestiacraft.libs.api.register.multiblock.machine.MachineControllerBlockEntity;
 import dev.celestiacraft.libs.common.register.NebulaItem;
 import dev.celestiacraft.libs.compat.patchouli.multiblock.IMultiblockProvider;
+import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
 import net.minecraft.network.chat.Component;
 import net.minecraft.resources.ResourceLocation;
@@ -13,8 +15,11 @@ import net.minecraft.tags.TagKey;
 import net.minecraft.world.InteractionHand;
 import net.minecraft.world.InteractionResult;
 import net.minecraft.world.item.Item;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.LevelReader;
 import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.block.state.properties.BlockStateProperties;
 import net.minecraft.world.level.block.state.properties.Property;
 
@@ -112,6 +117,32 @@ public abstract class ControllerBlock<T extends BlockEntity & IMultiblockProvide
 		return InteractionResult.PASS;
 	}
 
+	/**
+	 * 相邻方块实体内容变化(比较器更新)时调用
+	 *
+	 * <p>
+	 * 通知机器控制器的自动输出立即恢复
+	 * </p>
+	 */
+	@Override
+	public void onNeighborChange(BlockState state, LevelReader level, BlockPos pos, BlockPos neighbor) {
+		super.onNeighborChange(state, level, pos, neighbor);
+		if (level.getBlockEntity(pos) instanceof MachineControllerBlockEntity machine) {
+			machine.onNeighborChanged();
+		}
+	}
+
+	/**
+	 * 相邻方块被放置或破坏时调用
+	 */
+	@Override
+	public void neighborChanged(BlockState state, Level level, BlockPos pos, Block block, BlockPos fromPos, boolean isMoving) {
+		super.neighborChanged(state, level, pos, block, fromPos, isMoving);
+		if (level.getBlockEntity(pos) instanceof MachineControllerBlockEntity machine) {
+			machine.onNeighborChanged();
+		}
+	}
+
 	/**
 	 * 获取触发器
 	 *
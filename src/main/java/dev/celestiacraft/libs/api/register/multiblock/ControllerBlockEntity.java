@@ -4,6 +4,8 @@ import dev.celestiacraft.libs.api.register.multiblock.machine.IControllerRecipe;
 import dev.celestiacraft.libs.api.register.multiblock.machine.MultiblockContext;
 import dev.celestiacraft.libs.compat.patchouli.multiblock.IMultiblockProvider;
 import dev.celestiacraft.libs.compat.patchouli.multiblock.MultiblockHandler;
+import dev.celestiacraft.libs.network.BlockEntitySyncBatcher;
+import dev.celestiacraft.libs.server.tick.TickScheduler;
 import lombok.Getter;
 import lombok.Setter;
 import net.minecraft.core.BlockPos;
@@ -165,12 +167,25 @@ public abstract class ControllerBlockEntity extends BlockEntity implements IMult
 	}
 
 
+	/**
+	 * 请求把当前状态同步到客户端
+	 *
+	 * <p>
+	 * 代替逐个调用 {@code level.sendBlockUpdated(...)}: 同一 Tick 内同一区块的所有请求会合并为一个批量包,
+	 * 客户端通过 {@code handleUpdateTag} 应用 {@link #getUpdateTag()} 的内容
+	 * </p>
+	 */
+	public void syncToClient() {
+		BlockEntitySyncBatcher.queue(this);
+	}
+
 	/**
 	 * BlockEntity 被移除时调用
 	 *
 	 * <p>
 	 * 自动清理客户端多方块结构预览,
-	 * 防止结构显示在方块移除后仍然残留
+	 * 防止结构显示在方块移除后仍然残留;
+	 * 服务端同时取消 {@link TickScheduler} 中属于该方块实体的任务
 	 * </p>
 	 *
 	 * <p>
@@ -180,6 +195,9 @@ public abstract class ControllerBlockEntity extends BlockEntity implements IMult
 	@Override
 	public void setRemoved() {
 		cancelShowMultiblock();
+		if (level != null && !level.isClientSide()) {
+			TickScheduler.cancelAll(this);
+		}
 		super.setRemoved();
 	}
 
@@ -0,0 +1,281 @@
+package dev.celestiacraft.libs.api.register.multiblock.machine;
+
+import dev.celestiacraft.libs.api.register.multiblock.ControllerBlockEntity;
+import net.minecraft.core.Direction;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraftforge.common.capabilities.Capability;
+import net.minecraftforge.common.capabilities.ForgeCapabilities;
+import net.minecraftforge.common.util.LazyOptional;
+import net.minecraftforge.fluids.FluidStack;
+import net.minecraftforge.fluids.capability.IFluidHandler;
+import net.minecraftforge.items.IItemHandler;
+import net.minecraftforge.items.ItemHandlerHelper;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.IntPredicate;
+
+/**
+ * 自动输出到相邻容器
+ *
+ * <p>
+ * 每 {@link #interval} tick 把来源容器中的物品与流体批量推送到六个方向的相邻容器,
+ * 代替外部管道频繁地从机器抽取
+ * </p>
+ *
+ * <ul>
+ *     <li>相邻容器的 capability 只查询一次并缓存, 通过 {@link LazyOptional#addListener} 在失效时清除</li>
+ *     <li>有东西可推送却一件都没推出去时, 间隔按 2 的幂次放大, 最多 {@link #MAX_BACKOFF_SHIFT} 级</li>
+ *     <li>相邻方块变化(包括相邻容器内容变化触发的比较器更新)时调用 {@link #wake()} 立即恢复</li>
+ *     <li>不会向其他控制器或 IO 方块推送, 避免在结构内部来回搬运</li>
+ *     <li>先实际写入目标, 再从来源取出目标真正接受的数量, 不需要把取多的部分放回来源</li>
+ *     <li>流体按储罐取出, 来源可通过 {@link TankDrainer} 指定储罐, 不会误抽其他储罐中的同种流体</li>
+ * </ul>
+ *
+ * <pre>{@code
+ * // 在方块实体的服务端 tick 中
+ * exporter.tick(getItemHandler(), getFluidHandler());
+ *
+ * // 在方块的 onNeighborChange / neighborChanged 中
+ * exporter.wake();
+ * }</pre>
+ */
+public final class AutoExporter {
+	private static final int MAX_BACKOFF_SHIFT = 4;
+	/**
+	 * 单次推送的结果: 没有可推送的内容 / 有内容但全部被拒绝 / 至少推出了一部分
+	 */
+	private static final int IDLE = 0;
+	private static final int BLOCKED = 1;
+	private static final int MOVED = 2;
+	private static final Direction[] DIRECTIONS = Direction.values();
+
+	private final BlockEntity owner;
+	private final int interval;
+
+	@SuppressWarnings("unchecked")
+	private final LazyOptional<IItemHandler>[] itemTargets = new LazyOptional[DIRECTIONS.length];
+	@SuppressWarnings("unchecked")
+	private final LazyOptional<IFluidHandler>[] fluidTargets = new LazyOptional[DIRECTIONS.length];
+
+	private long nextExportTick;
+	private int backoff;
+
+	/**
+	 * 从来源的指定储罐取出流体
+	 */
+	@FunctionalInterface
+	public interface TankDrainer {
+		FluidStack drain(int tank, int amount, IFluidHandler.FluidAction action);
+	}
+
+	/**
+	 * @param owner    执行推送的方块实体
+	 * @param interval 正常情况下的推送间隔(tick)
+	 */
+	public AutoExporter(BlockEntity owner, int interval) {
+		this.owner = owner;
+		this.interval = Math.max(1, interval);
+	}
+
+	/**
+	 * 推送来源容器中的全部内容
+	 */
+	public void tick(@Nullable IItemHandler items, @Nullable IFluidHandler fluids) {
+		tick(items, (slot) -> true, fluids, (tank) -> true);
+	}
+
+	/**
+	 * 推送来源容器中指定槽位与储罐的内容
+	 *
+	 * @param items     物品来源, 允许为 {@code null}
+	 * @param itemSlots 参与推送的物品槽位
+	 * @param fluids    流体来源, 允许为 {@code null}
+	 * @param tanks     参与推送的储罐
+	 */
+	public void tick(@Nullable IItemHandler items, IntPredicate itemSlots, @Nullable IFluidHandler fluids, IntPredicate tanks) {
+		tick(items, itemSlots, fluids, tanks, fluids == null ? null : drainByFluid(fluids));
+	}
+
+	/**
+	 * 推送来源容器中指定槽位与储罐的内容, 流体通过 {@code drainer} 按储罐取出
+	 *
+	 * @param drainer 按储罐取出流体, 为 {@code null} 时不推送流体
+	 */
+	public void tick(@Nullable IItemHandler items, IntPredicate itemSlots, @Nullable IFluidHandler fluids, IntPredicate tanks, @Nullable TankDrainer drainer) {
+		Level level = owner.getLevel();
+		if (level == null || level.isClientSide() || owner.isRemoved()) {
+			return;
+		}
+
+		long gameTime = level.getGameTime();
+		if (gameTime < nextExportTick) {
+			return;
+		}
+
+		int result = Math.max(
+				items == null ? IDLE : exportItems(items, itemSlots),
+				fluids == null || drainer == null ? IDLE : exportFluids(fluids, tanks, drainer)
+		);
+
+		if (result == BLOCKED) {
+			backoff = Math.min(backoff + 1, MAX_BACKOFF_SHIFT);
+		} else if (result == MOVED) {
+			backoff = 0;
+		}
+		nextExportTick = gameTime + ((long) interval << backoff);
+	}
+
+	/**
+	 * 相邻方块或相邻容器内容发生变化时调用
+	 *
+	 * <p>
+	 * 清除退避状态并在下一次 {@link #tick} 时立即推送, 同时重新查询之前没有容器的方向
+	 * </p>
+	 */
+	public void wake() {
+		backoff = 0;
+		nextExportTick = 0;
+		for (int i = 0; i < DIRECTIONS.length; i++) {
+			if (itemTargets[i] != null && !itemTargets[i].isPresent()) {
+				itemTargets[i] = null;
+			}
+			if (fluidTargets[i] != null && !fluidTargets[i].isPresent()) {
+				fluidTargets[i] = null;
+			}
+		}
+	}
+
+	/**
+	 * 清除全部缓存, 方块实体被移除时调用
+	 */
+	public void invalidate() {
+		for (int i = 0; i < DIRECTIONS.length; i++) {
+			itemTargets[i] = null;
+			fluidTargets[i] = null;
+		}
+	}
+
+	private int exportItems(IItemHandler source, IntPredicate slots) {
+		boolean pending = false;
+		boolean moved = false;
+
+		for (int slot = 0; slot < source.getSlots(); slot++) {
+			if (!slots.test(slot)) {
+				continue;
+			}
+
+			for (int side = 0; side < DIRECTIONS.length; side++) {
+				ItemStack available = source.extractItem(slot, Integer.MAX_VALUE, true);
+				if (available.isEmpty()) {
+					break;
+				}
+				pending = true;
+
+				IItemHandler target = getTarget(side, itemTargets, ForgeCapabilities.ITEM_HANDLER);
+				if (target == null) {
+					continue;
+				}
+
+				int accepted = available.getCount() - ItemHandlerHelper.insertItemStacked(target, available, true).getCount();
+				if (accepted <= 0) {
+					continue;
+				}
+
+				ItemStack remainder = ItemHandlerHelper.insertItemStacked(target, available.copyWithCount(accepted), false);
+				int inserted = accepted - remainder.getCount();
+				if (inserted > 0) {
+					source.extractItem(slot, inserted, false);
+					moved = true;
+				}
+			}
+		}
+
+		return moved ? MOVED : pending ? BLOCKED : IDLE;
+	}
+
+	private int exportFluids(IFluidHandler source, IntPredicate tanks, TankDrainer drainer) {
+		boolean pending = false;
+		boolean moved = false;
+
+		for (int tank = 0; tank < source.getTanks(); tank++) {
+			if (!tanks.test(tank)) {
+				continue;
+			}
+
+			for (int side = 0; side < DIRECTIONS.length; side++) {
+				FluidStack stored = source.getFluidInTank(tank);
+				if (stored.isEmpty()) {
+					break;
+				}
+
+				FluidStack available = drainer.drain(tank, stored.getAmount(), IFluidHandler.FluidAction.SIMULATE);
+				if (available.isEmpty()) {
+					break;
+				}
+				pending = true;
+
+				IFluidHandler target = getTarget(side, fluidTargets, ForgeCapabilities.FLUID_HANDLER);
+				if (target == null) {
+					continue;
+				}
+
+				int accepted = target.fill(available, IFluidHandler.FluidAction.SIMULATE);
+				if (accepted <= 0) {
+					continue;
+				}
+
+				int filled = target.fill(new FluidStack(available, accepted), IFluidHandler.FluidAction.EXECUTE);
+				if (filled > 0) {
+					drainer.drain(tank, filled, IFluidHandler.FluidAction.EXECUTE);
+					moved = true;
+				}
+			}
+		}
+
+		return moved ? MOVED : pending ? BLOCKED : IDLE;
+	}
+
+	/**
+	 * 没有按储罐取出的方式时, 按储罐中的流体种类从整个容器取出
+	 */
+	private static TankDrainer drainByFluid(IFluidHandler handler) {
+		return (tank, amount, action) -> {
+			FluidStack stored = handler.getFluidInTank(tank);
+			return stored.isEmpty() ? FluidStack.EMPTY : handler.drain(new FluidStack(stored, amount), action);
+		};
+	}
+
+	@Nullable
+	private <T> T getTarget(int side, LazyOptional<T>[] cache, Capability<T> capability) {
+		LazyOptional<T> cached = cache[side];
+		if (cached == null) {
+			cached = resolveTarget(side, capability);
+			cache[side] = cached;
+		}
+		return cached.resolve().orElse(null);
+	}
+
+	private <T> LazyOptional<T> resolveTarget(int side, Capability<T> capability) {
+		Level level = owner.getLevel();
+		Direction direction = DIRECTIONS[side];
+		BlockEntity neighbor = level == null ? null : level.getBlockEntity(owner.getBlockPos().relative(direction));
+		if (neighbor == null || neighbor instanceof ControllerBlockEntity || neighbor instanceof IOBlockEntity) {
+			return LazyOptional.empty();
+		}
+
+		LazyOptional<T> optional = neighbor.getCapability(capability, direction.getOpposite());
+		if (optional.isPresent()) {
+			optional.addListener((invalidated) -> {
+				if (itemTargets[side] == invalidated) {
+					itemTargets[side] = null;
+				}
+				if (fluidTargets[side] == invalidated) {
+					fluidTargets[side] = null;
+				}
+			});
+		}
+		return optional;
+	}
+}
@@ -0,0 +1,135 @@
+package dev.celestiacraft.libs.api.register.multiblock.machine;
+
+import net.minecraftforge.fluids.FluidStack;
+import net.minecraftforge.fluids.capability.IFluidHandler;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 把多个 {@link IFluidHandler} 首尾相接成一个容器
+ *
+ * <p>
+ * 储罐编号的映射方式与 {@link CombinedItemHandler} 相同.
+ * 注入优先填充已有同种流体的成员, 再按顺序填充其他成员; 抽取会依次从所有成员收集同种流体
+ * </p>
+ */
+public final class CombinedFluidHandler implements IFluidHandler {
+	public static final CombinedFluidHandler EMPTY = new CombinedFluidHandler(List.of());
+
+	private final IFluidHandler[] handlers;
+	/**
+	 * {@code offsets[i]} 为第 i 个成员的起始储罐, 最后一项为总储罐数
+	 */
+	private final int[] offsets;
+
+	public CombinedFluidHandler(List<IFluidHandler> handlers) {
+		List<IFluidHandler> members = new ArrayList<>(handlers.size());
+		for (IFluidHandler handler : handlers) {
+			if (handler.getTanks() > 0) {
+				members.add(handler);
+			}
+		}
+
+		this.handlers = members.toArray(IFluidHandler[]::new);
+		this.offsets = new int[this.handlers.length + 1];
+		for (int i = 0; i < this.handlers.length; i++) {
+			offsets[i + 1] = offsets[i] + this.handlers[i].getTanks();
+		}
+	}
+
+	public int getHandlerCount() {
+		return handlers.length;
+	}
+
+	@Override
+	public int getTanks() {
+		return offsets[handlers.length];
+	}
+
+	@Override
+	public @NotNull FluidStack getFluidInTank(int tank) {
+		int index = getHandlerIndex(tank);
+		return index < 0 ? FluidStack.EMPTY : handlers[index].getFluidInTank(tank - offsets[index]);
+	}
+
+	@Override
+	public int getTankCapacity(int tank) {
+		int index = getHandlerIndex(tank);
+		return index < 0 ? 0 : handlers[index].getTankCapacity(tank - offsets[index]);
+	}
+
+	@Override
+	public boolean isFluidValid(int tank, @NotNull FluidStack stack) {
+		int index = getHandlerIndex(tank);
+		return index >= 0 && handlers[index].isFluidValid(tank - offsets[index], stack);
+	}
+
+	@Override
+	public int fill(FluidStack resource, FluidAction action) {
+		if (resource.isEmpty()) {
+			return 0;
+		}
+
+		int filled = 0;
+		for (int pass = 0; pass < 2 && filled < resource.getAmount(); pass++) {
+			for (IFluidHandler handler : handlers) {
+				if (filled >= resource.getAmount()) {
+					break;
+				}
+				if (containsFluid(handler, resource) != (pass == 0)) {
+					continue;
+				}
+				filled += handler.fill(new FluidStack(resource, resource.getAmount() - filled), action);
+			}
+		}
+		return filled;
+	}
+
+	@Override
+	public @NotNull FluidStack drain(FluidStack resource, FluidAction action) {
+		if (resource.isEmpty()) {
+			return FluidStack.EMPTY;
+		}
+
+		int drained = 0;
+		for (IFluidHandler handler : handlers) {
+			if (drained >= resource.getAmount()) {
+				break;
+			}
+			drained += handler.drain(new FluidStack(resource, resource.getAmount() - drained), action).getAmount();
+		}
+		return drained <= 0 ? FluidStack.EMPTY : new FluidStack(resource, drained);
+	}
+
+	@Override
+	public @NotNull FluidStack drain(int maxDrain, FluidAction action) {
+		for (IFluidHandler handler : handlers) {
+			FluidStack first = handler.drain(maxDrain, FluidAction.SIMULATE);
+			if (!first.isEmpty()) {
+				return drain(new FluidStack(first, maxDrain), action);
+			}
+		}
+		return FluidStack.EMPTY;
+	}
+
+	private static boolean containsFluid(IFluidHandler handler, FluidStack resource) {
+		for (int tank = 0; tank < handler.getTanks(); tank++) {
+			if (handler.getFluidInTank(tank).isFluidEqual(resource)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private int getHandlerIndex(int tank) {
+		if (tank < 0 || tank >= getTanks()) {
+			return -1;
+		}
+
+		int index = Arrays.binarySearch(offsets, 0, handlers.length, tank);
+		return index >= 0 ? index : -index - 2;
+	}
+}
@@ -0,0 +1,94 @@
+package dev.celestiacraft.libs.api.register.multiblock.machine;
+
+import net.minecraft.world.item.ItemStack;
+import net.minecraftforge.items.IItemHandler;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 把多个 {@link IItemHandler} 首尾相接成一个容器
+ *
+ * <p>
+ * 构造时计算每个成员的起始槽位(前缀和), 之后按槽位查找成员只需一次二分查找.
+ * 没有槽位的成员会被忽略
+ * </p>
+ *
+ * <p>
+ * 成员的槽位数量在构造后视为不变, 成员变化时需要重新创建
+ * </p>
+ */
+public final class CombinedItemHandler implements IItemHandler {
+	public static final CombinedItemHandler EMPTY = new CombinedItemHandler(List.of());
+
+	private final IItemHandler[] handlers;
+	/**
+	 * {@code offsets[i]} 为第 i 个成员的起始槽位, 最后一项为总槽位数
+	 */
+	private final int[] offsets;
+
+	public CombinedItemHandler(List<IItemHandler> handlers) {
+		List<IItemHandler> members = new ArrayList<>(handlers.size());
+		for (IItemHandler handler : handlers) {
+			if (handler.getSlots() > 0) {
+				members.add(handler);
+			}
+		}
+
+		this.handlers = members.toArray(IItemHandler[]::new);
+		this.offsets = new int[this.handlers.length + 1];
+		for (int i = 0; i < this.handlers.length; i++) {
+			offsets[i + 1] = offsets[i] + this.handlers[i].getSlots();
+		}
+	}
+
+	public int getHandlerCount() {
+		return handlers.length;
+	}
+
+	@Override
+	public int getSlots() {
+		return offsets[handlers.length];
+	}
+
+	@Override
+	public @NotNull ItemStack getStackInSlot(int slot) {
+		int index = getHandlerIndex(slot);
+		return index < 0 ? ItemStack.EMPTY : handlers[index].getStackInSlot(slot - offsets[index]);
+	}
+
+	@Override
+	public @NotNull ItemStack insertItem(int slot, @NotNull ItemStack stack, boolean simulate) {
+		int index = getHandlerIndex(slot);
+		return index < 0 ? stack : handlers[index].insertItem(slot - offsets[index], stack, simulate);
+	}
+
+	@Override
+	public @NotNull ItemStack extractItem(int slot, int amount, boolean simulate) {
+		int index = getHandlerIndex(slot);
+		return index < 0 ? ItemStack.EMPTY : handlers[index].extractItem(slot - offsets[index], amount, simulate);
+	}
+
+	@Override
+	public int getSlotLimit(int slot) {
+		int index = getHandlerIndex(slot);
+		return index < 0 ? 0 : handlers[index].getSlotLimit(slot - offsets[index]);
+	}
+
+	@Override
+	public boolean isItemValid(int slot, @NotNull ItemStack stack) {
+		int index = getHandlerIndex(slot);
+		return index >= 0 && handlers[index].isItemValid(slot - offsets[index], stack);
+	}
+
+	private int getHandlerIndex(int slot) {
+		if (slot < 0 || slot >= getSlots()) {
+			return -1;
+		}
+
+		int index = Arrays.binarySearch(offsets, 0, handlers.length, slot);
+		return index >= 0 ? index : -index - 2;
+	}
+}
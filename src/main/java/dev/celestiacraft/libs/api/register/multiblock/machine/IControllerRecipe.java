@@ -2,6 +2,7 @@ package dev.celestiacraft.libs.api.register.multiblock.machine;
 
 import com.simibubi.create.foundation.block.IBE;
 import dev.celestiacraft.libs.api.register.multiblock.ControllerBlockEntity;
+import dev.celestiacraft.libs.server.tick.ControllerTickWatchdog;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.world.item.crafting.RecipeType;
 import net.minecraft.world.level.Level;
@@ -107,4 +108,22 @@ public interface IControllerRecipe<T extends ControllerBlockEntity> {
 	 * @return
 	 */
 	MultiblockContext<T> tick(MultiblockContext<T> context);
+
+	/**
+	 * 在 {@link ControllerTickWatchdog} 下调用 {@link #tick(MultiblockContext)}
+	 *
+	 * <p>
+	 * 推荐在 {@code getTicker} 中调用本方法代替直接调用 {@code tick},
+	 * 耗时超出预算的控制器会被自动节流并可通过 {@code /nebula watchdog} 查看
+	 * </p>
+	 *
+	 * <pre>{@code
+	 * return (level, pos, state, entity) -> entity.runTick(MultiblockContext.of(entity));
+	 * }</pre>
+	 *
+	 * @param context 多方块运行上下文
+	 */
+	default void runTick(MultiblockContext<T> context) {
+		ControllerTickWatchdog.tick(context.getEntity(), () -> tick(context));
+	}
 }
\ No newline at end of file
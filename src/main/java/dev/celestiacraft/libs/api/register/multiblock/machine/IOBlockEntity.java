@@ -1,5 +1,7 @@
 package dev.celestiacraft.libs.api.register.multiblock.machine;
 
+import dev.celestiacraft.libs.network.BlockEntitySyncBatcher;
+import dev.celestiacraft.libs.server.tick.TickScheduler;
 import net.minecraft.core.BlockPos;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.network.protocol.game.ClientboundBlockEntityDataPacket;
@@ -37,6 +39,7 @@ import java.util.List;
  * </p>
  * <ul>
  *     <li>实现 {@link #supportedControllers()}, 以 {@link List#of(Object[])} 枚举可配合使用的主控 BE 类</li>
+ *     <li>输出仓重写 {@link #getIORole()} 返回 {@link IOMode#OUTPUT}, 未重写时视为输入仓</li>
  *     <li>按需暴露物品 / 流体 / 能量 capability</li>
  * </ul>
  *
@@ -53,14 +56,78 @@ import java.util.List;
  *             SmelterControllerBlockEntity.class
  *         );
  *     }
+ *
+ *     @Override
+ *     public IOMode getIORole() {
+ *         return IOMode.OUTPUT;
+ *     }
  * }
  * }</pre>
  */
 public abstract class IOBlockEntity extends BlockEntity {
+	@Nullable
+	private AutoExporter autoExporter;
+
 	protected IOBlockEntity(BlockEntityType<?> type, BlockPos pos, BlockState state) {
 		super(type, pos, state);
 	}
 
+	@Override
+	public void setRemoved() {
+		if (autoExporter != null) {
+			autoExporter.invalidate();
+		}
+		if (level != null && !level.isClientSide()) {
+			TickScheduler.cancelAll(this);
+		}
+		super.setRemoved();
+	}
+
+	/**
+	 * 是否自动把内容推送到相邻容器
+	 *
+	 * <p>
+	 * 默认仅 {@link IOMode#OUTPUT} 角色的输出仓开启.
+	 * IO 方块本身没有 tick, 需要在子类的服务端 tick 中调用 {@link #tickAutoExport()},
+	 * 并在方块的 {@code onNeighborChange} / {@code neighborChanged} 中调用 {@link #onNeighborChanged()}
+	 * </p>
+	 *
+	 * @see AutoExporter
+	 */
+	protected boolean useAutoExport() {
+		return getIORole() == IOMode.OUTPUT;
+	}
+
+	/**
+	 * 自动输出的正常间隔(tick), 目标已满时会自动放大
+	 */
+	protected int getAutoExportInterval() {
+		return 20;
+	}
+
+	/**
+	 * 执行一次自动输出检查, 未到间隔时直接返回
+	 */
+	public final void tickAutoExport() {
+		if (!useAutoExport()) {
+			return;
+		}
+
+		if (autoExporter == null) {
+			autoExporter = new AutoExporter(this, getAutoExportInterval());
+		}
+		autoExporter.tick(getItemHandler(), getFluidHandler());
+	}
+
+	/**
+	 * 相邻方块或相邻容器内容变化时调用, 让自动输出立即恢复
+	 */
+	public void onNeighborChanged() {
+		if (autoExporter != null) {
+			autoExporter.wake();
+		}
+	}
+
 	/**
 	 * 客户端同步所用的完整 NBT
 	 *
@@ -86,6 +153,40 @@ public abstract class IOBlockEntity extends BlockEntity {
 		return ClientboundBlockEntityDataPacket.create(this);
 	}
 
+	/**
+	 * 请求把当前状态同步到客户端
+	 *
+	 * <p>
+	 * 代替逐个调用 {@code level.sendBlockUpdated(...)}: 同一 Tick 内同一区块的所有请求会合并为一个批量包,
+	 * 客户端通过 {@link #handleUpdateTag(CompoundTag)} 应用 {@link #getUpdateTag()} 的内容
+	 * </p>
+	 */
+	public void syncToClient() {
+		BlockEntitySyncBatcher.queue(this);
+	}
+
+	/**
+	 * 该 IO 方块在配方中的角色
+	 *
+	 * <p>
+	 * 决定它会被合并进控制器的哪一组容器:
+	 * </p>
+	 * <ul>
+	 *     <li>{@link IOMode#INPUT}: 只作为输入仓</li>
+	 *     <li>{@link IOMode#OUTPUT}: 只作为输出仓</li>
+	 *     <li>{@link IOMode#BOTH}: 同时作为输入与输出仓, 配方输出会被写入其中并可能被下一次合成当作输入消耗</li>
+	 * </ul>
+	 *
+	 * <p>
+	 * 默认为 {@link IOMode#INPUT}, 未声明角色的 IO 方块不会收到配方输出.
+	 * 输出仓需要重写并返回 {@link IOMode#OUTPUT}, 只有明确需要时才返回 {@link IOMode#BOTH};
+	 * 同一种 IO 方块的输入 / 输出版本通常可由方块或构造参数决定
+	 * </p>
+	 */
+	public IOMode getIORole() {
+		return IOMode.INPUT;
+	}
+
 	/**
 	 * 获取当前 IO 方块暴露的物品能力
 	 *
@@ -1,20 +1,34 @@
 package dev.celestiacraft.libs.api.register.multiblock.machine;
 
+import dev.celestiacraft.libs.NebulaLibs;
 import dev.celestiacraft.libs.api.register.multiblock.ControllerBlockEntity;
+import dev.celestiacraft.libs.common.recipe.machine.MachineRecipe;
+import dev.celestiacraft.libs.common.recipe.machine.MachineRecipeIO;
+import dev.celestiacraft.libs.network.NebulaNetwork;
+import dev.celestiacraft.libs.network.packet.MachineSyncPacket;
+import dev.celestiacraft.libs.server.tick.BlockEntityChangeTracker;
+import dev.celestiacraft.libs.utils.WorkerPool;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.ListTag;
 import net.minecraft.nbt.Tag;
 import net.minecraft.network.protocol.game.ClientboundBlockEntityDataPacket;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.entity.BlockEntity;
 import net.minecraft.world.level.block.entity.BlockEntityType;
 import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.phys.Vec3;
 import net.minecraftforge.common.capabilities.Capability;
 import net.minecraftforge.common.capabilities.ForgeCapabilities;
 import net.minecraftforge.common.util.LazyOptional;
+import net.minecraftforge.common.util.NonNullConsumer;
 import net.minecraftforge.energy.IEnergyStorage;
 import net.minecraftforge.fluids.FluidStack;
 import net.minecraftforge.fluids.capability.IFluidHandler;
@@ -25,8 +39,13 @@ import org.jetbrains.annotations.Nullable;
 import vazkii.patchouli.api.IMultiblock;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
@@ -35,6 +54,30 @@ public abstract class MachineControllerBlockEntity extends ControllerBlockEntity
 	private static final String FLUIDS_KEY = "Fluids";
 	private static final String LEGACY_FLUID_KEY = "Fluid";
 	private static final String ENERGY_KEY = "Energy";
+	private static final String STORAGE_VERSION_KEY = "StorageVersion";
+	private static final String ITEM_PALETTE_KEY = "ItemPalette";
+	private static final String ITEM_SLOTS_KEY = "ItemSlots";
+	private static final String FLUID_PALETTE_KEY = "FluidPalette";
+	private static final String FLUID_TANKS_KEY = "FluidTanks";
+	/**
+	 * 存储 NBT 格式版本
+	 *
+	 * <ul>
+	 *     <li>1: 完整的 {@code Inventory} / {@code Fluids} / {@code Fluid}</li>
+	 *     <li>2: 调色板 + 压缩整数数组, 省略空槽位与空储罐</li>
+	 * </ul>
+	 */
+	private static final int STORAGE_VERSION = 2;
+	/**
+	 * 自适应间隔开始放大时的平均 tick 耗时(毫秒)
+	 */
+	private static final float ADAPTIVE_MSPT_TARGET = 30F;
+	/**
+	 * 增量同步的距离分级(方块距离的平方)
+	 */
+	private static final double NEAR_SYNC_DISTANCE_SQR = 32D * 32D;
+	private static final double MID_SYNC_DISTANCE_SQR = 64D * 64D;
+	private static final long NEVER_SYNCED = 0L;
 
 	private final boolean controllerItemIOEnabled;
 	private final boolean controllerFluidIOEnabled;
@@ -52,6 +95,41 @@ public abstract class MachineControllerBlockEntity extends ControllerBlockEntity
 	private final List<FluidStack> fluidStorage;
 
 	private int energyStored;
+	private long lastRecipeTickTime = -1;
+	private long inventoryVersion;
+	private boolean loadingStorage;
+
+	@Nullable
+	private AutoExporter autoExporter;
+
+	@Nullable
+	private CompletableFuture<MachineRecipe> pendingRecipeSearch;
+	private long pendingRecipeSearchVersion;
+
+	private final long[] slotSyncVersions;
+	private final long[] tankSyncVersions;
+	private long energySyncVersion = NEVER_SYNCED;
+	private long workTimeSyncVersion = NEVER_SYNCED;
+	private long syncVersion = NEVER_SYNCED;
+	private Object2LongOpenHashMap<UUID> playerSyncVersions = new Object2LongOpenHashMap<>();
+	private Object2LongOpenHashMap<UUID> playerSyncTimes = new Object2LongOpenHashMap<>();
+
+	private final IFluidHandler internalFluidHandler = new InternalFluidHandler();
+	private final IEnergyStorage internalEnergyStorage = new InternalEnergyStorage();
+
+	@Nullable
+	private List<IOBlockEntity> formedIOBlockEntities;
+	@Nullable
+	private MachineEnergyBus energyBus;
+	@Nullable
+	private CombinedItemHandler itemInputs;
+	@Nullable
+	private CombinedItemHandler itemOutputs;
+	@Nullable
+	private CombinedFluidHandler fluidInputs;
+	@Nullable
+	private CombinedFluidHandler fluidOutputs;
+	private final NonNullConsumer<LazyOptional<?>> formationListener = (optional) -> invalidateFormation();
 
 	private LazyOptional<IItemHandler> itemCapability = LazyOptional.empty();
 	private LazyOptional<IFluidHandler> fluidCapability = LazyOptional.empty();
@@ -74,6 +152,9 @@ public abstract class MachineControllerBlockEntity extends ControllerBlockEntity
 
 		this.itemStorage = internalItemStorageEnabled ? createInternalItemStorage() : null;
 		this.fluidStorage = internalFluidStorageEnabled ? createInternalFluidStorage() : null;
+
+		this.slotSyncVersions = new long[itemStorage == null ? 0 : configuredItemSlots];
+		this.tankSyncVersions = new long[fluidStorage == null ? 0 : configuredFluidSlots.length];
 	}
 
 	@Override
@@ -82,9 +163,20 @@ public abstract class MachineControllerBlockEntity extends ControllerBlockEntity
 		rebuildCapabilities();
 	}
 
+	@Override
+	public void setRemoved() {
+		cancelRecipeSearch();
+		invalidateFormation();
+		if (autoExporter != null) {
+			autoExporter.invalidate();
+		}
+		super.setRemoved();
+	}
+
 	@Override
 	public void invalidateCaps() {
 		super.invalidateCaps();
+		invalidateFormation();
 		itemCapability.invalidate();
 		fluidCapability.invalidate();
 		energyCapability.invalidate();
@@ -116,21 +208,14 @@ public abstract class MachineControllerBlockEntity extends ControllerBlockEntity
 	@Override
 	protected void saveAdditional(@NotNull CompoundTag tag) {
 		super.saveAdditional(tag);
+		tag.putInt(STORAGE_VERSION_KEY, STORAGE_VERSION);
 
 		if (itemStorage != null) {
-			tag.put(INVENTORY_KEY, itemStorage.serializeNBT());
+			saveItems(tag);
 		}
 
-		if (fluidStorage != null && !fluidStorage.isEmpty()) {
-			ListTag fluids = new ListTag();
-			for (FluidStack stack : fluidStorage) {
-				fluids.add(stack.writeToNBT(new CompoundTag()));
-			}
-			tag.put(FLUIDS_KEY, fluids);
-
-			if (fluidStorage.size() == 1) {
-				tag.put(LEGACY_FLUID_KEY, fluidStorage.get(0).writeToNBT(new CompoundTag()));
-			}
+		if (fluidStorage != null) {
+			saveFluids(tag);
 		}
 
 		if (internalEnergyStorageEnabled) {
@@ -142,6 +227,156 @@ public abstract class MachineControllerBlockEntity extends ControllerBlockEntity
 	public void load(@NotNull CompoundTag tag) {
 		super.load(tag);
 
+		loadingStorage = true;
+		try {
+			if (tag.getInt(STORAGE_VERSION_KEY) >= STORAGE_VERSION) {
+				loadItems(tag);
+				loadFluids(tag);
+			} else {
+				loadLegacyStorage(tag);
+			}
+		} finally {
+			loadingStorage = false;
+		}
+		markInventoryChanged();
+
+		if (internalEnergyStorageEnabled) {
+			energyStored = clampEnergy(tag.getInt(ENERGY_KEY));
+		}
+	}
+
+	/**
+	 * 物品按 "槽位, 调色板索引, 数量" 三元组写入整数数组, 调色板中的物品数量固定为 1
+	 */
+	private void saveItems(CompoundTag tag) {
+		List<ItemStack> palette = new ArrayList<>();
+		int[] entries = new int[itemStorage.getSlots() * 3];
+		int length = 0;
+
+		for (int slot = 0; slot < itemStorage.getSlots(); slot++) {
+			ItemStack stack = itemStorage.getStackInSlot(slot);
+			if (stack.isEmpty()) {
+				continue;
+			}
+
+			int index = 0;
+			while (index < palette.size() && !ItemStack.isSameItemSameTags(palette.get(index), stack)) {
+				index++;
+			}
+			if (index == palette.size()) {
+				palette.add(stack);
+			}
+
+			entries[length++] = slot;
+			entries[length++] = index;
+			entries[length++] = stack.getCount();
+		}
+
+		if (length == 0) {
+			return;
+		}
+
+		ListTag paletteTag = new ListTag();
+		for (ItemStack stack : palette) {
+			paletteTag.add(stack.copyWithCount(1).save(new CompoundTag()));
+		}
+		tag.put(ITEM_PALETTE_KEY, paletteTag);
+		tag.putIntArray(ITEM_SLOTS_KEY, Arrays.copyOf(entries, length));
+	}
+
+	/**
+	 * 流体按 "储罐, 调色板索引, 数量" 三元组写入整数数组, 调色板中的流体数量固定为 1
+	 */
+	private void saveFluids(CompoundTag tag) {
+		List<FluidStack> palette = new ArrayList<>();
+		int[] entries = new int[fluidStorage.size() * 3];
+		int length = 0;
+
+		for (int tank = 0; tank < fluidStorage.size(); tank++) {
+			FluidStack stack = fluidStorage.get(tank);
+			if (stack.isEmpty()) {
+				continue;
+			}
+
+			int index = 0;
+			while (index < palette.size() && !palette.get(index).isFluidEqual(stack)) {
+				index++;
+			}
+			if (index == palette.size()) {
+				palette.add(stack);
+			}
+
+			entries[length++] = tank;
+			entries[length++] = index;
+			entries[length++] = stack.getAmount();
+		}
+
+		if (length == 0) {
+			return;
+		}
+
+		ListTag paletteTag = new ListTag();
+		for (FluidStack stack : palette) {
+			paletteTag.add(new FluidStack(stack, 1).writeToNBT(new CompoundTag()));
+		}
+		tag.put(FLUID_PALETTE_KEY, paletteTag);
+		tag.putIntArray(FLUID_TANKS_KEY, Arrays.copyOf(entries, length));
+	}
+
+	private void loadItems(CompoundTag tag) {
+		if (itemStorage == null) {
+			return;
+		}
+
+		for (int slot = 0; slot < itemStorage.getSlots(); slot++) {
+			itemStorage.setStackInSlot(slot, ItemStack.EMPTY);
+		}
+
+		ListTag paletteTag = tag.getList(ITEM_PALETTE_KEY, Tag.TAG_COMPOUND);
+		ItemStack[] palette = new ItemStack[paletteTag.size()];
+		for (int i = 0; i < palette.length; i++) {
+			palette[i] = ItemStack.of(paletteTag.getCompound(i));
+		}
+
+		int[] entries = tag.getIntArray(ITEM_SLOTS_KEY);
+		for (int i = 0; i + 2 < entries.length; i += 3) {
+			int slot = entries[i];
+			int index = entries[i + 1];
+			if (slot >= 0 && slot < itemStorage.getSlots() && index >= 0 && index < palette.length && !palette[index].isEmpty()) {
+				itemStorage.setStackInSlot(slot, palette[index].copyWithCount(entries[i + 2]));
+			}
+		}
+	}
+
+	private void loadFluids(CompoundTag tag) {
+		if (fluidStorage == null) {
+			return;
+		}
+
+		for (int tank = 0; tank < fluidStorage.size(); tank++) {
+			fluidStorage.set(tank, FluidStack.EMPTY);
+		}
+
+		ListTag paletteTag = tag.getList(FLUID_PALETTE_KEY, Tag.TAG_COMPOUND);
+		FluidStack[] palette = new FluidStack[paletteTag.size()];
+		for (int i = 0; i < palette.length; i++) {
+			palette[i] = FluidStack.loadFluidStackFromNBT(paletteTag.getCompound(i));
+		}
+
+		int[] entries = tag.getIntArray(FLUID_TANKS_KEY);
+		for (int i = 0; i + 2 < entries.length; i += 3) {
+			int tank = entries[i];
+			int index = entries[i + 1];
+			if (tank >= 0 && tank < fluidStorage.size() && index >= 0 && index < palette.length && !palette[index].isEmpty()) {
+				fluidStorage.set(tank, new FluidStack(palette[index], entries[i + 2]));
+			}
+		}
+	}
+
+	/**
+	 * 读取版本 1 的存储格式, 下次保存时会自动转换为当前格式
+	 */
+	private void loadLegacyStorage(CompoundTag tag) {
 		if (itemStorage != null && tag.contains(INVENTORY_KEY, Tag.TAG_COMPOUND)) {
 			itemStorage.deserializeNBT(tag.getCompound(INVENTORY_KEY));
 		}
@@ -160,12 +395,15 @@ public abstract class MachineControllerBlockEntity extends ControllerBlockEntity
 				fluidStorage.set(0, FluidStack.loadFluidStackFromNBT(tag.getCompound(LEGACY_FLUID_KEY)));
 			}
 		}
-
-		if (internalEnergyStorageEnabled) {
-			energyStored = clampEnergy(tag.getInt(ENERGY_KEY));
-		}
 	}
 
+	/**
+	 * 区块加载时下发的完整 NBT
+	 *
+	 * <p>
+	 * 之后能量、工作进度、物品槽与流体槽的变化通过 {@link MachineSyncPacket} 增量同步
+	 * </p>
+	 */
 	@Override
 	public @NotNull CompoundTag getUpdateTag() {
 		return saveWithoutMetadata();
@@ -181,6 +419,10 @@ public abstract class MachineControllerBlockEntity extends ControllerBlockEntity
 	}
 
 	protected final boolean prepareRecipeTick(MultiblockContext<? extends MachineControllerBlockEntity> context) {
+		if (!context.isClient()) {
+			tickAutoExport();
+		}
+
 		if (context.isClient() || !isMachineStructureValid()) {
 			return false;
 		}
@@ -194,6 +436,243 @@ public abstract class MachineControllerBlockEntity extends ControllerBlockEntity
 		return true;
 	}
 
+	/**
+	 * 间隔运行版本的 {@link #prepareRecipeTick(MultiblockContext)}
+	 *
+	 * <p>
+	 * 控制器每 {@link #getTickInterval()} tick 才真正运行一次,
+	 * 返回距上次运行经过的 tick 数, 交给 {@link #runRecipeTicks(MachineRecipe, MachineRecipeIO, int)} 一次性推进进度
+	 * </p>
+	 *
+	 * <p>
+	 * 不同位置的控制器按坐标错开运行相位, 避免同一 tick 集中运行
+	 * </p>
+	 *
+	 * @return 本次需要推进的 tick 数, 为 0 表示本 tick 跳过
+	 */
+	protected final int prepareRecipeTicks(MultiblockContext<? extends MachineControllerBlockEntity> context) {
+		if (!context.isClient()) {
+			tickAutoExport();
+		}
+
+		if (context.isClient() || !isMachineStructureValid()) {
+			lastRecipeTickTime = -1;
+			return 0;
+		}
+
+		long gameTime = context.getLevel().getGameTime();
+		if (lastRecipeTickTime < 0 || gameTime <= lastRecipeTickTime) {
+			lastRecipeTickTime = gameTime - 1;
+		}
+
+		int interval = getEffectiveTickInterval();
+		if (interval > 1 && Math.floorMod(gameTime + Long.hashCode(getBlockPos().asLong()), interval) != 0) {
+			return 0;
+		}
+
+		long elapsed = Math.min(gameTime - lastRecipeTickTime, Math.max(interval, getMaxTickInterval()));
+		lastRecipeTickTime = gameTime;
+
+		WorkConditionResult result = getWorkCondition(context);
+		if (!result.pass()) {
+			onWorkConditionFailed(context, result);
+			return 0;
+		}
+
+		return (int) elapsed;
+	}
+
+	/**
+	 * 一次推进 {@code elapsedTicks} tick 的配方进度
+	 *
+	 * <p>
+	 * 进度累加到 {@link #workTime}, 按经过的时间一次性完成所有到期的合成(结合 {@link #getMaxParallel()}),
+	 * 未到期时不会做任何配方匹配. 在不被输出堵塞的情况下, 总产量与逐 tick 运行一致
+	 * </p>
+	 *
+	 * <p>
+	 * 输出被堵塞时进度停在 {@code duration}, 与逐 tick 运行时的表现相同
+	 * </p>
+	 *
+	 * @return 本次完成的合成次数
+	 */
+	protected final int runRecipeTicks(MachineRecipe recipe, MachineRecipeIO io, int elapsedTicks) {
+		if (level == null || level.isClientSide() || elapsedTicks <= 0) {
+			return 0;
+		}
+
+		int duration = recipe.getDuration();
+		long progress = (long) workTime + elapsedTicks;
+		long due = progress / duration;
+		if (due <= 0) {
+			workTime = (int) progress;
+			markWorkTimeChanged();
+			return 0;
+		}
+
+		int parallel = Math.max(1, getMaxParallel());
+		int crafts = recipe.getMaxParallel(io, (int) Math.min(Integer.MAX_VALUE, due * parallel));
+		if (crafts > 0) {
+			crafts = recipe.craft(level, io, crafts);
+		}
+		if (crafts <= 0) {
+			if (workTime != duration) {
+				workTime = duration;
+				markWorkTimeChanged();
+			}
+			return 0;
+		}
+
+		long cycles = (crafts + parallel - 1) / parallel;
+		long remaining = progress - cycles * duration;
+		workTime = (int) (cycles < due ? Math.min(remaining, duration) : remaining);
+		markWorkTimeChanged();
+		return crafts;
+	}
+
+	/**
+	 * 按 {@link #getMaxParallel()} 批量执行配方
+	 *
+	 * <p>
+	 * 一次性根据输入、输出空间和能量算出本次可并行的次数, 然后整体消耗并产出
+	 * </p>
+	 *
+	 * @return 实际执行的合成次数, 无法执行时为 0
+	 */
+	protected final int craftParallel(MachineRecipe recipe, MachineRecipeIO io) {
+		if (level == null || level.isClientSide()) {
+			return 0;
+		}
+
+		int crafts = recipe.getMaxParallel(io, Math.max(1, getMaxParallel()));
+		if (crafts > 0) {
+			crafts = recipe.craft(level, io, crafts);
+		}
+		return crafts;
+	}
+
+	/**
+	 * 是否自动把输出槽位与输出储罐的内容推送到相邻容器
+	 *
+	 * <p>
+	 * 只推送 IO 模式为 {@link IOMode#OUTPUT} 的槽位与储罐, 由 {@link #prepareRecipeTick(MultiblockContext)}
+	 * 或 {@link #prepareRecipeTicks(MultiblockContext)} 自动驱动, 默认关闭
+	 * </p>
+	 *
+	 * @see AutoExporter
+	 */
+	protected boolean useAutoExport() {
+		return false;
+	}
+
+	/**
+	 * 自动输出的正常间隔(tick), 目标已满时会自动放大
+	 */
+	protected int getAutoExportInterval() {
+		return 20;
+	}
+
+	/**
+	 * 执行一次自动输出检查, 未到间隔时直接返回
+	 */
+	protected final void tickAutoExport() {
+		if (!useAutoExport() || !isMachineStructureValid()) {
+			return;
+		}
+
+		if (autoExporter == null) {
+			autoExporter = new AutoExporter(this, getAutoExportInterval());
+		}
+
+		autoExporter.tick(
+				itemCapability.resolve().orElse(null),
+				(slot) -> getItemIO(slot) == IOMode.OUTPUT,
+				fluidCapability.resolve().orElse(null),
+				(tank) -> getFluidIO(tank) == IOMode.OUTPUT,
+				this::drainFluidInternal
+		);
+	}
+
+	/**
+	 * 相邻方块或相邻容器内容变化时由 {@link dev.celestiacraft.libs.api.register.multiblock.ControllerBlock} 调用
+	 */
+	public void onNeighborChanged() {
+		if (autoExporter != null) {
+			autoExporter.wake();
+		}
+	}
+
+	/**
+	 * 在工作线程上异步搜索配方
+	 *
+	 * <p>
+	 * 先在主线程通过 {@link #captureSnapshot()} 拍下库存快照, 再把 {@code search} 交给 {@link WorkerPool} 执行.
+	 * 结果通过 {@link #pollRecipeSearch()} 在之后的 tick 取回
+	 * </p>
+	 *
+	 * <p>
+	 * {@code search} 只能读取传入的快照, 不能访问世界或控制器本身
+	 * </p>
+	 *
+	 * @param search 配方搜索逻辑, 未找到时返回 {@code null}
+	 * @return 成功提交返回 {@code true}; 已有搜索未完成或线程池已满时返回 {@code false}
+	 */
+	protected final boolean requestRecipeSearch(Function<MachineSnapshot, MachineRecipe> search) {
+		if (pendingRecipeSearch != null || level == null || level.isClientSide()) {
+			return false;
+		}
+
+		MachineSnapshot snapshot = captureSnapshot();
+		try {
+			pendingRecipeSearch = WorkerPool.supply(() -> search.apply(snapshot));
+		} catch (RejectedExecutionException exception) {
+			return false;
+		}
+		pendingRecipeSearchVersion = snapshot.getVersion();
+		return true;
+	}
+
+	/**
+	 * 取回异步配方搜索的结果
+	 *
+	 * <p>
+	 * 只有在搜索已经完成, 且拍快照之后库存版本没有变化时才返回配方;
+	 * 库存已变化时结果会被丢弃, 需要重新发起搜索
+	 * </p>
+	 *
+	 * @return 可以直接使用的配方, 搜索未完成、未找到或已过期时返回 {@code null}
+	 */
+	@Nullable
+	protected final MachineRecipe pollRecipeSearch() {
+		CompletableFuture<MachineRecipe> future = pendingRecipeSearch;
+		if (future == null || !future.isDone()) {
+			return null;
+		}
+
+		pendingRecipeSearch = null;
+		if (pendingRecipeSearchVersion != getInventoryVersion()) {
+			return null;
+		}
+
+		try {
+			return future.getNow(null);
+		} catch (Exception exception) {
+			NebulaLibs.LOGGER.error("Async recipe search failed for controller at {}", getBlockPos(), exception);
+			return null;
+		}
+	}
+
+	protected final boolean isRecipeSearchPending() {
+		return pendingRecipeSearch != null;
+	}
+
+	protected final void cancelRecipeSearch() {
+		if (pendingRecipeSearch != null) {
+			pendingRecipeSearch.cancel(false);
+			pendingRecipeSearch = null;
+		}
+	}
+
 	protected final WorkConditionResult getCurrentWorkCondition() {
 		if (level == null) {
 			return WorkConditionResult.fail("level_unavailable");
@@ -240,21 +719,110 @@ public abstract class MachineControllerBlockEntity extends ControllerBlockEntity
 	}
 
 	protected final <T extends IOBlockEntity> List<T> findMatchedIOBlockEntities(Class<T> type) {
+		List<T> result = new ArrayList<>();
+		for (IOBlockEntity entity : getFormedIOBlockEntities()) {
+			if (type.isInstance(entity)) {
+				result.add(type.cast(entity));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 当前成型结构中所有允许接入的 IO 方块
+	 *
+	 * <p>
+	 * 结果在结构成型后扫描一次并缓存, 以下情况会重新扫描:
+	 * </p>
+	 * <ul>
+	 *     <li>结构不再完整</li>
+	 *     <li>缓存中的 IO 方块已被移除</li>
+	 *     <li>IO 方块的物品 / 流体 / 能量 capability 失效</li>
+	 *     <li>子类调用 {@link #invalidateFormation()}</li>
+	 * </ul>
+	 */
+	protected final List<IOBlockEntity> getFormedIOBlockEntities() {
 		if (level == null || !isStructureValid()) {
+			if (formedIOBlockEntities != null) {
+				invalidateFormation();
+			}
 			return Collections.emptyList();
 		}
 
-		List<T> result = new ArrayList<>();
-		for (BlockPos pos : getMultiblockHandler().findFilterBlock((state) -> true)) {
-			BlockEntity entity = level.getBlockEntity(pos);
-			if (type.isInstance(entity)) {
-				T ioBlockEntity = type.cast(entity);
-				if (ioBlockEntity.isControllerAllowed(this)) {
-					result.add(ioBlockEntity);
+		if (formedIOBlockEntities != null) {
+			for (IOBlockEntity entity : formedIOBlockEntities) {
+				if (entity.isRemoved()) {
+					invalidateFormation();
+					break;
 				}
 			}
 		}
-		return result;
+
+		if (formedIOBlockEntities == null) {
+			formedIOBlockEntities = List.copyOf(scanIOBlockEntities());
+			for (IOBlockEntity entity : formedIOBlockEntities) {
+				listenFormation(entity.getCapability(ForgeCapabilities.ITEM_HANDLER));
+				listenFormation(entity.getCapability(ForgeCapabilities.FLUID_HANDLER));
+				listenFormation(entity.getCapability(ForgeCapabilities.ENERGY));
+			}
+		}
+
+		return formedIOBlockEntities;
+	}
+
+	/**
+	 * 丢弃缓存的成型结构信息(IO 方块列表, 能量总线), 下次访问时重新扫描
+	 */
+	protected final void invalidateFormation() {
+		formedIOBlockEntities = null;
+		energyBus = null;
+		itemInputs = null;
+		itemOutputs = null;
+		fluidInputs = null;
+		fluidOutputs = null;
+	}
+
+	/**
+	 * 由所有能量仓与内部能量缓存组成的能量总线
+	 *
+	 * <p>
+	 * 在结构成型后创建一次并缓存, 结构变化后自动重建; 结构不完整时返回空总线.
+	 * 能量仓按 {@link IOBlockEntity#getIORole()} 分组: 可输入的作为配方的供能成员,
+	 * 可输出的作为配方产出能量的储能成员; 内部能量缓存同时属于两者
+	 * </p>
+	 *
+	 * @see MachineEnergyBus
+	 */
+	protected final MachineEnergyBus getEnergyBus() {
+		getFormedIOBlockEntities();
+		if (formedIOBlockEntities == null) {
+			return MachineEnergyBus.EMPTY;
+		}
+
+		if (energyBus == null) {
+			List<IEnergyStorage> sources = new ArrayList<>();
+			List<IEnergyStorage> sinks = new ArrayList<>();
+			for (IOBlockEntity entity : formedIOBlockEntities) {
+				IEnergyStorage storage = entity.getEnergyStorage();
+				if (storage == null) {
+					continue;
+				}
+				IOMode role = entity.getIORole();
+				if (role.canInsert()) {
+					sources.add(storage);
+				}
+				if (role.canExtract()) {
+					sinks.add(storage);
+				}
+			}
+			if (internalEnergyStorageEnabled) {
+				sources.add(internalEnergyStorage);
+				sinks.add(internalEnergyStorage);
+			}
+			energyBus = sources.isEmpty() && sinks.isEmpty() ? MachineEnergyBus.EMPTY : new MachineEnergyBus(sources, sinks);
+		}
+
+		return energyBus;
 	}
 
 	@Nullable
@@ -269,7 +837,7 @@ public abstract class MachineControllerBlockEntity extends ControllerBlockEntity
 	}
 
 	protected final int countMatchedIOBlockEntities() {
-		return findMatchedIOBlockEntities().size();
+		return getFormedIOBlockEntities().size();
 	}
 
 	protected final int countMatchedItemIOBlockEntities() {
@@ -317,6 +885,336 @@ public abstract class MachineControllerBlockEntity extends ControllerBlockEntity
 		return ioBlockEntity == null ? null : ioBlockEntity.getEnergyStorage();
 	}
 
+	/**
+	 * 所有输入仓({@link IOBlockEntity#getIORole()} 可输入)的物品容器合并视图
+	 *
+	 * <p>
+	 * 与 {@link #getEnergyBus()} 一样按结构成型缓存, 结构不完整时为空容器
+	 * </p>
+	 */
+	protected final CombinedItemHandler getItemInputs() {
+		getFormedIOBlockEntities();
+		if (formedIOBlockEntities == null) {
+			return CombinedItemHandler.EMPTY;
+		}
+		if (itemInputs == null) {
+			itemInputs = combineItemHandlers(IOMode::canInsert);
+		}
+		return itemInputs;
+	}
+
+	/**
+	 * 所有输出仓({@link IOBlockEntity#getIORole()} 可输出)的物品容器合并视图
+	 */
+	protected final CombinedItemHandler getItemOutputs() {
+		getFormedIOBlockEntities();
+		if (formedIOBlockEntities == null) {
+			return CombinedItemHandler.EMPTY;
+		}
+		if (itemOutputs == null) {
+			itemOutputs = combineItemHandlers(IOMode::canExtract);
+		}
+		return itemOutputs;
+	}
+
+	/**
+	 * 所有输入仓的流体容器合并视图
+	 */
+	protected final CombinedFluidHandler getFluidInputs() {
+		getFormedIOBlockEntities();
+		if (formedIOBlockEntities == null) {
+			return CombinedFluidHandler.EMPTY;
+		}
+		if (fluidInputs == null) {
+			fluidInputs = combineFluidHandlers(IOMode::canInsert);
+		}
+		return fluidInputs;
+	}
+
+	/**
+	 * 所有输出仓的流体容器合并视图
+	 */
+	protected final CombinedFluidHandler getFluidOutputs() {
+		getFormedIOBlockEntities();
+		if (formedIOBlockEntities == null) {
+			return CombinedFluidHandler.EMPTY;
+		}
+		if (fluidOutputs == null) {
+			fluidOutputs = combineFluidHandlers(IOMode::canExtract);
+		}
+		return fluidOutputs;
+	}
+
+	/**
+	 * 由全部输入 / 输出仓与能量总线组成的合并模式配方容器
+	 *
+	 * <p>
+	 * 配方输入从所有输入仓中收集, 输出自动堆叠到任意输出仓
+	 * </p>
+	 */
+	protected final MachineRecipeIO getFormedRecipeIO() {
+		return MachineRecipeIO.builder()
+				.itemInputs(getItemInputs(), 0)
+				.itemOutputs(getItemOutputs(), 0)
+				.fluidInputs(getFluidInputs(), 0)
+				.fluidOutputs(getFluidOutputs())
+				.energy(getEnergyBus())
+				.pooled()
+				.build();
+	}
+
+	/**
+	 * 当前库存版本
+	 *
+	 * <p>
+	 * 内部物品与流体每次实际变化都会递增, 能量变化不计入.
+	 * 使用外部 IO 方块的机器可重写该方法, 合并 IO 方块自身的变化
+	 * </p>
+	 */
+	protected long getInventoryVersion() {
+		return inventoryVersion;
+	}
+
+	/**
+	 * 手动递增库存版本, 使之前的异步搜索结果失效
+	 */
+	protected final void markInventoryChanged() {
+		inventoryVersion++;
+	}
+
+	/**
+	 * 拍摄用于异步配方搜索的库存快照
+	 *
+	 * <p>
+	 * 默认包含内部物品、流体与能量存储. 使用外部 IO 方块的机器可重写为
+	 * {@code MachineSnapshot.of(getInventoryVersion(), hatchItems, hatchFluids, hatchEnergy)}
+	 * </p>
+	 */
+	protected MachineSnapshot captureSnapshot() {
+		return MachineSnapshot.of(
+				getInventoryVersion(),
+				itemStorage,
+				fluidStorage == null ? null : internalFluidHandler,
+				internalEnergyStorageEnabled ? internalEnergyStorage : null
+		);
+	}
+
+	@Override
+	public void setWorkTime(int workTime) {
+		if (this.workTime != workTime) {
+			super.setWorkTime(workTime);
+			markWorkTimeChanged();
+		}
+	}
+
+	/**
+	 * 标记工作进度已变化, 在 Tick 结束时同步给客户端
+	 *
+	 * <p>
+	 * 通过 {@link #setWorkTime(int)} 或 {@link #runRecipeTicks(MachineRecipe, MachineRecipeIO, int)} 修改时会自动调用;
+	 * 子类直接改写 {@link #workTime} 字段时需要手动调用
+	 * </p>
+	 */
+	protected final void markWorkTimeChanged() {
+		workTimeSyncVersion = markSyncChanged();
+	}
+
+	/**
+	 * 增量同步给某个玩家的最小间隔(tick)
+	 *
+	 * <p>
+	 * 默认 32 格内每 tick, 64 格内每 5 tick, 更远处每 20 tick
+	 * </p>
+	 */
+	protected int getSyncInterval(ServerPlayer player) {
+		double distance = player.distanceToSqr(Vec3.atCenterOf(worldPosition));
+		if (distance <= NEAR_SYNC_DISTANCE_SQR) {
+			return 1;
+		}
+		if (distance <= MID_SYNC_DISTANCE_SQR) {
+			return 5;
+		}
+		return 20;
+	}
+
+	/**
+	 * 应用服务端发来的增量同步包, 只应由网络处理器在客户端调用
+	 */
+	public void applySyncPacket(MachineSyncPacket packet) {
+		if (packet.hasEnergy() && internalEnergyStorageEnabled) {
+			energyStored = clampEnergy(packet.getEnergy());
+		}
+
+		if (packet.hasWorkTime()) {
+			workTime = packet.getWorkTime();
+		}
+
+		if (itemStorage != null) {
+			int[] slots = packet.getSlots();
+			for (int i = 0; i < slots.length; i++) {
+				if (slots[i] >= 0 && slots[i] < itemStorage.getSlots()) {
+					itemStorage.setStackInSlot(slots[i], packet.getItems()[i]);
+				}
+			}
+		}
+
+		if (fluidStorage != null) {
+			int[] tanks = packet.getTanks();
+			for (int i = 0; i < tanks.length; i++) {
+				if (isValidFluidTank(tanks[i])) {
+					fluidStorage.set(tanks[i], packet.getFluids()[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 向追踪该区块的玩家发送增量包
+	 *
+	 * <p>
+	 * 每个字段记录最后一次变化时的同步版本, 每个玩家记录已收到的版本与发送时间,
+	 * 只发送之后变化过的字段; 已收到版本相同的玩家共用同一个包.
+	 * 首次出现的玩家只会收到区块加载后真正变化过的字段
+	 * </p>
+	 *
+	 * @return 仍有玩家因限频而没有收到最新变化时返回 {@code true}
+	 */
+	boolean flushSyncDelta() {
+		if (!(level instanceof ServerLevel serverLevel) || isRemoved()) {
+			playerSyncVersions.clear();
+			playerSyncTimes.clear();
+			return false;
+		}
+
+		List<ServerPlayer> players = serverLevel.getChunkSource().chunkMap.getPlayers(new ChunkPos(worldPosition), false);
+		if (players.isEmpty()) {
+			playerSyncVersions.clear();
+			playerSyncTimes.clear();
+			return false;
+		}
+
+		long now = serverLevel.getGameTime();
+		boolean pending = false;
+		Object2LongOpenHashMap<UUID> versions = new Object2LongOpenHashMap<>(players.size());
+		Object2LongOpenHashMap<UUID> times = new Object2LongOpenHashMap<>(players.size());
+		Long2ObjectOpenHashMap<MachineSyncPacket> packets = new Long2ObjectOpenHashMap<>();
+
+		for (ServerPlayer player : players) {
+			UUID id = player.getUUID();
+			boolean known = playerSyncVersions.containsKey(id);
+			long sentVersion = known ? playerSyncVersions.getLong(id) : NEVER_SYNCED;
+			long sentTime = known ? playerSyncTimes.getLong(id) : now;
+
+			if (sentVersion < syncVersion && (!known || now - sentTime >= getSyncInterval(player))) {
+				MachineSyncPacket packet = packets.computeIfAbsent(sentVersion, this::createSyncPacket);
+				if (!packet.isEmpty()) {
+					NebulaNetwork.sendToPlayer(player, packet);
+				}
+				sentVersion = syncVersion;
+				sentTime = now;
+			} else if (sentVersion < syncVersion) {
+				pending = true;
+			}
+
+			versions.put(id, sentVersion);
+			times.put(id, sentTime);
+		}
+
+		playerSyncVersions = versions;
+		playerSyncTimes = times;
+		return pending;
+	}
+
+	private MachineSyncPacket createSyncPacket(long since) {
+		MachineSyncPacket.Builder builder = MachineSyncPacket.builder(worldPosition);
+
+		if (energySyncVersion > since) {
+			builder.energy(energyStored);
+		}
+
+		if (workTimeSyncVersion > since) {
+			builder.workTime(workTime);
+		}
+
+		if (itemStorage != null) {
+			for (int slot = 0; slot < slotSyncVersions.length; slot++) {
+				if (slotSyncVersions[slot] > since) {
+					builder.item(slot, itemStorage.getStackInSlot(slot));
+				}
+			}
+		}
+
+		if (fluidStorage != null) {
+			for (int tank = 0; tank < tankSyncVersions.length; tank++) {
+				if (tankSyncVersions[tank] > since) {
+					builder.fluid(tank, fluidStorage.get(tank));
+				}
+			}
+		}
+
+		return builder.build();
+	}
+
+	private long markSyncChanged() {
+		if (level == null || level.isClientSide()) {
+			return NEVER_SYNCED;
+		}
+
+		MachineSyncTracker.markDirty(this);
+		return ++syncVersion;
+	}
+
+	/**
+	 * 标记存储内容已变更
+	 *
+	 * <p>
+	 * 服务端同一 Tick 内的多次调用会合并为 Tick 结束时的一次 {@link #setChanged()},
+	 * 区块保存标记与比较器更新只执行一次
+	 * </p>
+	 */
+	protected final void markContentsChanged() {
+		BlockEntityChangeTracker.markChanged(this);
+	}
+
+	/**
+	 * 标记内部物品槽位已变化
+	 *
+	 * <p>
+	 * 供 {@link MachineMenu.MachineItemSlot} 在原地修改物品数量(不经过 {@code setStackInSlot})后调用
+	 * </p>
+	 */
+	void markItemSlotChanged(int slot) {
+		if (slot >= 0 && slot < slotSyncVersions.length) {
+			slotSyncVersions[slot] = markSyncChanged();
+		}
+		markInventoryChanged();
+		markContentsChanged();
+	}
+
+	/**
+	 * 不受 IO 模式和结构状态限制的内部物品存储
+	 */
+	@Nullable
+	protected final IItemHandler getInternalItemHandler() {
+		return itemStorage;
+	}
+
+	/**
+	 * 不受 IO 模式和结构状态限制的内部流体存储
+	 */
+	@Nullable
+	protected final IFluidHandler getInternalFluidHandler() {
+		return fluidStorage == null ? null : internalFluidHandler;
+	}
+
+	/**
+	 * 不受 IO 模式和结构状态限制的内部能量存储
+	 */
+	@Nullable
+	protected final IEnergyStorage getInternalEnergyStorage() {
+		return internalEnergyStorageEnabled ? internalEnergyStorage : null;
+	}
+
 	protected final int getStoredEnergy() {
 		return energyStored;
 	}
@@ -376,7 +1274,8 @@ public abstract class MachineControllerBlockEntity extends ControllerBlockEntity
 		int received = Math.min(configuredEnergyCapacity - energyStored, maxReceive);
 		if (!simulate && received > 0) {
 			energyStored += received;
-			setChanged();
+			energySyncVersion = markSyncChanged();
+			markContentsChanged();
 		}
 
 		return received;
@@ -390,7 +1289,8 @@ public abstract class MachineControllerBlockEntity extends ControllerBlockEntity
 		int extracted = Math.min(energyStored, maxExtract);
 		if (!simulate && extracted > 0) {
 			energyStored -= extracted;
-			setChanged();
+			energySyncVersion = markSyncChanged();
+			markContentsChanged();
 		}
 
 		return extracted;
@@ -495,6 +1395,47 @@ public abstract class MachineControllerBlockEntity extends ControllerBlockEntity
 		return 0;
 	}
 
+	/**
+	 * 控制器的运行间隔(tick)
+	 *
+	 * <p>
+	 * 默认为 1, 即每 tick 运行. 短配方机器可重写为更大的值,
+	 * 配合 {@link #prepareRecipeTicks(MultiblockContext)} 降低每 tick 开销
+	 * </p>
+	 */
+	protected int getTickInterval() {
+		return 1;
+	}
+
+	/**
+	 * 是否根据服务器平均 tick 耗时自动放大运行间隔
+	 *
+	 * <p>
+	 * 开启后当平均耗时超过 30ms 时按比例放大 {@link #getTickInterval()}, 最大不超过 {@link #getMaxTickInterval()}
+	 * </p>
+	 */
+	protected boolean useAdaptiveTickInterval() {
+		return false;
+	}
+
+	/**
+	 * 运行间隔的上限, 同时也是一次最多补算的 tick 数
+	 */
+	protected int getMaxTickInterval() {
+		return 20;
+	}
+
+	/**
+	 * 单次运行最多同时进行的合成次数
+	 *
+	 * <p>
+	 * 默认为 1, 大型机器可重写以实现并行处理
+	 * </p>
+	 */
+	protected int getMaxParallel() {
+		return 1;
+	}
+
 	protected boolean isItemAllowed(int slot, @NotNull ItemStack stack) {
 		return true;
 	}
@@ -506,9 +1447,48 @@ public abstract class MachineControllerBlockEntity extends ControllerBlockEntity
 	protected void onWorkConditionFailed(MultiblockContext<? extends MachineControllerBlockEntity> context, WorkConditionResult result) {
 	}
 
+	private CombinedItemHandler combineItemHandlers(Predicate<IOMode> role) {
+		List<IItemHandler> handlers = new ArrayList<>();
+		for (IOBlockEntity entity : getFormedIOBlockEntities()) {
+			IItemHandler handler = role.test(entity.getIORole()) ? entity.getItemHandler() : null;
+			if (handler != null) {
+				handlers.add(handler);
+			}
+		}
+		return handlers.isEmpty() ? CombinedItemHandler.EMPTY : new CombinedItemHandler(handlers);
+	}
+
+	private CombinedFluidHandler combineFluidHandlers(Predicate<IOMode> role) {
+		List<IFluidHandler> handlers = new ArrayList<>();
+		for (IOBlockEntity entity : getFormedIOBlockEntities()) {
+			IFluidHandler handler = role.test(entity.getIORole()) ? entity.getFluidHandler() : null;
+			if (handler != null) {
+				handlers.add(handler);
+			}
+		}
+		return handlers.isEmpty() ? CombinedFluidHandler.EMPTY : new CombinedFluidHandler(handlers);
+	}
+
+	private List<IOBlockEntity> scanIOBlockEntities() {
+		List<IOBlockEntity> result = new ArrayList<>();
+		for (BlockPos pos : getMultiblockHandler().findFilterBlock((state) -> true)) {
+			if (level.getBlockEntity(pos) instanceof IOBlockEntity ioBlockEntity && ioBlockEntity.isControllerAllowed(this)) {
+				result.add(ioBlockEntity);
+			}
+		}
+		return result;
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private void listenFormation(LazyOptional<?> optional) {
+		if (optional.isPresent()) {
+			optional.addListener((NonNullConsumer) formationListener);
+		}
+	}
+
 	private int countMatchedAllowedIOBlockEntities(Predicate<IOBlockEntity> predicate) {
 		int count = 0;
-		for (IOBlockEntity entity : findMatchedIOBlockEntities()) {
+		for (IOBlockEntity entity : getFormedIOBlockEntities()) {
 			if (predicate.test(entity)) {
 				count++;
 			}
@@ -518,7 +1498,7 @@ public abstract class MachineControllerBlockEntity extends ControllerBlockEntity
 
 	@Nullable
 	private IOBlockEntity findFirstMatchedAllowedIOBlockEntity(Predicate<IOBlockEntity> predicate) {
-		for (IOBlockEntity entity : findMatchedIOBlockEntities()) {
+		for (IOBlockEntity entity : getFormedIOBlockEntities()) {
 			if (predicate.test(entity)) {
 				return entity;
 			}
@@ -526,6 +1506,21 @@ public abstract class MachineControllerBlockEntity extends ControllerBlockEntity
 		return null;
 	}
 
+	private int getEffectiveTickInterval() {
+		int interval = Math.max(1, getTickInterval());
+		if (!useAdaptiveTickInterval() || level == null || level.getServer() == null) {
+			return interval;
+		}
+
+		float mspt = level.getServer().getAverageTickTime();
+		if (mspt <= ADAPTIVE_MSPT_TARGET) {
+			return interval;
+		}
+
+		int scaled = (int) Math.ceil(interval * mspt / ADAPTIVE_MSPT_TARGET);
+		return Math.max(interval, Math.min(scaled, getMaxTickInterval()));
+	}
+
 	private int configuredItemSlotsHint() {
 		return Math.max(0, getItemSlots());
 	}
@@ -556,7 +1551,9 @@ public abstract class MachineControllerBlockEntity extends ControllerBlockEntity
 		return new ItemStackHandler(configuredItemSlots) {
 			@Override
 			protected void onContentsChanged(int slot) {
-				setChanged();
+				if (!loadingStorage) {
+					markItemSlotChanged(slot);
+				}
 			}
 
 			@Override
@@ -662,7 +1659,9 @@ public abstract class MachineControllerBlockEntity extends ControllerBlockEntity
 				updated.grow(fillable);
 			}
 			fluidStorage.set(tank, updated);
-			setChanged();
+			tankSyncVersions[tank] = markSyncChanged();
+			markInventoryChanged();
+			markContentsChanged();
 		}
 
 		return fillable;
@@ -689,7 +1688,9 @@ public abstract class MachineControllerBlockEntity extends ControllerBlockEntity
 			FluidStack updated = stored.copy();
 			updated.shrink(drained);
 			fluidStorage.set(tank, updated.isEmpty() ? FluidStack.EMPTY : updated);
-			setChanged();
+			tankSyncVersions[tank] = markSyncChanged();
+			markInventoryChanged();
+			markContentsChanged();
 		}
 
 		return result;
@@ -857,4 +1858,107 @@ public abstract class MachineControllerBlockEntity extends ControllerBlockEntity
 			return isMachineStructureValid() && getEnergyIO(0).canInsert();
 		}
 	}
+
+	private final class InternalFluidHandler implements IFluidHandler {
+		@Override
+		public int getTanks() {
+			return configuredFluidSlots.length;
+		}
+
+		@Override
+		public @NotNull FluidStack getFluidInTank(int tank) {
+			return fluidStorage == null || !isValidFluidTank(tank) ? FluidStack.EMPTY : fluidStorage.get(tank);
+		}
+
+		@Override
+		public int getTankCapacity(int tank) {
+			return isValidFluidTank(tank) ? getFluidSlot(tank).capacity() : 0;
+		}
+
+		@Override
+		public boolean isFluidValid(int tank, @NotNull FluidStack stack) {
+			return isValidFluidTank(tank) && getFluidSlot(tank).accepts(stack);
+		}
+
+		@Override
+		public int fill(FluidStack stack, FluidAction action) {
+			if (stack.isEmpty()) {
+				return 0;
+			}
+
+			int totalFilled = 0;
+			for (int pass = 0; pass < 2 && totalFilled < stack.getAmount(); pass++) {
+				for (int tank = 0; tank < configuredFluidSlots.length && totalFilled < stack.getAmount(); tank++) {
+					FluidStack stored = getFluidInTank(tank);
+					boolean matchesPass = pass == 0 ? !stored.isEmpty() && stored.isFluidEqual(stack) : stored.isEmpty();
+					if (!matchesPass) {
+						continue;
+					}
+
+					totalFilled += fillFluidSlot(tank, new FluidStack(stack, stack.getAmount() - totalFilled), action, false);
+				}
+			}
+
+			return totalFilled;
+		}
+
+		@Override
+		public @NotNull FluidStack drain(FluidStack stack, FluidAction action) {
+			if (stack.isEmpty()) {
+				return FluidStack.EMPTY;
+			}
+
+			for (int tank = 0; tank < configuredFluidSlots.length; tank++) {
+				FluidStack stored = getFluidInTank(tank);
+				if (!stored.isEmpty() && stored.isFluidEqual(stack)) {
+					return drainFluidSlot(tank, stack.getAmount(), action, false);
+				}
+			}
+
+			return FluidStack.EMPTY;
+		}
+
+		@Override
+		public @NotNull FluidStack drain(int amount, FluidAction action) {
+			for (int tank = 0; tank < configuredFluidSlots.length; tank++) {
+				if (!getFluidInTank(tank).isEmpty()) {
+					return drainFluidSlot(tank, amount, action, false);
+				}
+			}
+
+			return FluidStack.EMPTY;
+		}
+	}
+
+	private final class InternalEnergyStorage implements IEnergyStorage {
+		@Override
+		public int receiveEnergy(int maxReceive, boolean simulate) {
+			return receiveEnergyInternal(maxReceive, simulate);
+		}
+
+		@Override
+		public int extractEnergy(int maxExtract, boolean simulate) {
+			return extractEnergyInternal(maxExtract, simulate);
+		}
+
+		@Override
+		public int getEnergyStored() {
+			return energyStored;
+		}
+
+		@Override
+		public int getMaxEnergyStored() {
+			return configuredEnergyCapacity;
+		}
+
+		@Override
+		public boolean canExtract() {
+			return internalEnergyStorageEnabled;
+		}
+
+		@Override
+		public boolean canReceive() {
+			return internalEnergyStorageEnabled;
+		}
+	}
 }
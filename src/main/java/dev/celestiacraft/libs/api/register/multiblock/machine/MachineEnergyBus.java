@@ -0,0 +1,242 @@
+package dev.celestiacraft.libs.api.register.multiblock.machine;
+
+import net.minecraftforge.energy.IEnergyStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 机器能量总线
+ *
+ * <p>
+ * 把一个控制器的全部能量仓与内部能量缓存合并成一个 {@link IEnergyStorage},
+ * 配方只需要面对这一个能量容器
+ * </p>
+ *
+ * <ul>
+ *     <li>成员分为供能成员与储能成员: {@link #extractEnergy(int, boolean)} 只从供能成员提取,
+ *     {@link #receiveEnergy(int, boolean)} 只写入储能成员, 同一个容器可以同时属于两者</li>
+ *     <li>{@link #getEnergyStored()} 只统计供能成员中可提取的能量;
+ *     {@link #getMaxEnergyStored()} 为该值加上储能成员中可接收的空间, 两者之差就是可写入的量</li>
+ *     <li>总量按 long 累加, 超出 int 范围时 {@link #getEnergyStored()} 返回 {@link Integer#MAX_VALUE}</li>
+ *     <li>输入输出先模拟出每个成员可用的量, 再按均分的方式一次性分配, 每个成员最多实际调用一次</li>
+ *     <li>每次实际输入输出后起始成员轮换, 多个能量仓的消耗保持平均</li>
+ * </ul>
+ *
+ * <p>
+ * 成员列表在结构成型时确定, 由控制器在结构变化后重新创建
+ * </p>
+ */
+public final class MachineEnergyBus implements IEnergyStorage {
+	public static final MachineEnergyBus EMPTY = new MachineEnergyBus(List.of());
+
+	private final IEnergyStorage[] members;
+	private final boolean[] sources;
+	private final boolean[] sinks;
+	private final int[] available;
+	private final int[] planned;
+	private int cursor;
+
+	/**
+	 * 所有成员同时作为供能与储能成员
+	 */
+	public MachineEnergyBus(List<IEnergyStorage> members) {
+		this(members, members);
+	}
+
+	/**
+	 * @param sources 配方消耗能量时提取的成员, 通常是输入能量仓
+	 * @param sinks   配方产出能量时写入的成员, 通常是输出能量仓
+	 */
+	public MachineEnergyBus(List<IEnergyStorage> sources, List<IEnergyStorage> sinks) {
+		List<IEnergyStorage> all = new ArrayList<>(sources);
+		for (IEnergyStorage sink : sinks) {
+			if (!containsReference(all, sink)) {
+				all.add(sink);
+			}
+		}
+
+		this.members = all.toArray(IEnergyStorage[]::new);
+		this.sources = new boolean[members.length];
+		this.sinks = new boolean[members.length];
+		for (int i = 0; i < members.length; i++) {
+			this.sources[i] = containsReference(sources, members[i]);
+			this.sinks[i] = containsReference(sinks, members[i]);
+		}
+		this.available = new int[members.length];
+		this.planned = new int[members.length];
+	}
+
+	public int getMemberCount() {
+		return members.length;
+	}
+
+	public boolean isEmpty() {
+		return members.length == 0;
+	}
+
+	/**
+	 * 供能成员中可提取的能量总量
+	 */
+	public long getEnergyStoredLong() {
+		long total = 0;
+		for (int i = 0; i < members.length; i++) {
+			if (sources[i] && members[i].canExtract()) {
+				total += members[i].getEnergyStored();
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * 储能成员中可接收的空间总量
+	 */
+	public long getFreeSpaceLong() {
+		long total = 0;
+		for (int i = 0; i < members.length; i++) {
+			if (sinks[i] && members[i].canReceive()) {
+				total += Math.max(0, members[i].getMaxEnergyStored() - members[i].getEnergyStored());
+			}
+		}
+		return total;
+	}
+
+	public long getMaxEnergyStoredLong() {
+		return getEnergyStoredLong() + getFreeSpaceLong();
+	}
+
+	@Override
+	public int receiveEnergy(int maxReceive, boolean simulate) {
+		if (maxReceive <= 0 || members.length == 0) {
+			return 0;
+		}
+
+		for (int i = 0; i < members.length; i++) {
+			available[i] = sinks[i] && members[i].canReceive() ? members[i].receiveEnergy(Integer.MAX_VALUE, true) : 0;
+		}
+
+		int total = plan(maxReceive);
+		if (!simulate && total > 0) {
+			total = 0;
+			for (int i = 0; i < members.length; i++) {
+				if (planned[i] > 0) {
+					total += members[i].receiveEnergy(planned[i], false);
+				}
+			}
+			rotate();
+		}
+		return total;
+	}
+
+	@Override
+	public int extractEnergy(int maxExtract, boolean simulate) {
+		if (maxExtract <= 0 || members.length == 0) {
+			return 0;
+		}
+
+		for (int i = 0; i < members.length; i++) {
+			available[i] = sources[i] && members[i].canExtract() ? members[i].extractEnergy(Integer.MAX_VALUE, true) : 0;
+		}
+
+		int total = plan(maxExtract);
+		if (!simulate && total > 0) {
+			total = 0;
+			for (int i = 0; i < members.length; i++) {
+				if (planned[i] > 0) {
+					total += members[i].extractEnergy(planned[i], false);
+				}
+			}
+			rotate();
+		}
+		return total;
+	}
+
+	@Override
+	public int getEnergyStored() {
+		return (int) Math.min(Integer.MAX_VALUE, getEnergyStoredLong());
+	}
+
+	@Override
+	public int getMaxEnergyStored() {
+		return (int) Math.min(Integer.MAX_VALUE, getMaxEnergyStoredLong());
+	}
+
+	@Override
+	public boolean canExtract() {
+		for (int i = 0; i < members.length; i++) {
+			if (sources[i] && members[i].canExtract()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean canReceive() {
+		for (int i = 0; i < members.length; i++) {
+			if (sinks[i] && members[i].canReceive()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 按 {@link #available} 把 {@code amount} 均分到各成员, 结果写入 {@link #planned}
+	 *
+	 * <p>
+	 * 每一轮给所有仍有余量的成员分配相同的份额, 余量不足的成员取尽后退出,
+	 * 剩下的部分在下一轮继续均分; 最多 {@code members.length} 轮
+	 * </p>
+	 *
+	 * @return 实际分配的总量
+	 */
+	private int plan(int amount) {
+		int remaining = amount;
+		int active = 0;
+		for (int i = 0; i < members.length; i++) {
+			planned[i] = 0;
+			if (available[i] > 0) {
+				active++;
+			}
+		}
+
+		while (remaining > 0 && active > 0) {
+			int share = Math.max(1, remaining / active);
+			active = 0;
+
+			for (int step = 0; step < members.length && remaining > 0; step++) {
+				int i = (cursor + step) % members.length;
+				int left = available[i] - planned[i];
+				if (left <= 0) {
+					continue;
+				}
+
+				int take = Math.min(Math.min(share, left), remaining);
+				planned[i] += take;
+				remaining -= take;
+
+				if (take < left) {
+					active++;
+				}
+			}
+		}
+
+		return amount - remaining;
+	}
+
+	private static boolean containsReference(List<IEnergyStorage> storages, IEnergyStorage storage) {
+		for (IEnergyStorage candidate : storages) {
+			if (candidate == storage) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void rotate() {
+		if (members.length > 0) {
+			cursor = (cursor + 1) % members.length;
+		}
+	}
+}
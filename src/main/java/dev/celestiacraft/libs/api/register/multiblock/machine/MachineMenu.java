@@ -0,0 +1,275 @@
+package dev.celestiacraft.libs.api.register.multiblock.machine;
+
+import lombok.Getter;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.world.Container;
+import net.minecraft.world.entity.player.Inventory;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.inventory.AbstractContainerMenu;
+import net.minecraft.world.inventory.ContainerData;
+import net.minecraft.world.inventory.MenuType;
+import net.minecraft.world.inventory.SimpleContainerData;
+import net.minecraft.world.inventory.Slot;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.material.Fluid;
+import net.minecraft.world.level.material.Fluids;
+import net.minecraftforge.fluids.FluidStack;
+import net.minecraftforge.fluids.capability.IFluidHandler;
+import net.minecraftforge.items.IItemHandler;
+import net.minecraftforge.items.SlotItemHandler;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 机器菜单基类
+ *
+ * <p>
+ * 通过原版 {@link ContainerData} 同步能量, {@code workTime} 与流体储罐,
+ * 通过 {@link MachineItemSlot} 暴露内部物品槽位
+ * </p>
+ *
+ * <ul>
+ *     <li>数据槽由原版 {@link AbstractContainerMenu#broadcastChanges()} 比较, 只在值变化时发送, 且只发给打开菜单的玩家</li>
+ *     <li>原版数据包只传输 16 位, 每个 int 拆成低位与高位两个数据槽</li>
+ *     <li>每个储罐占用数量与流体 ID 两个 int, 流体的 NBT 不参与同步</li>
+ * </ul>
+ *
+ * <p>
+ * 数据槽布局:
+ * </p>
+ * <ul>
+ *     <li>0 ~ 1: 能量</li>
+ *     <li>2 ~ 3: {@code workTime}</li>
+ *     <li>之后每个储罐 4 个: 数量(低, 高), 流体 ID(低, 高)</li>
+ * </ul>
+ *
+ * <pre>{@code
+ * public class ExampleMenu extends MachineMenu<ExampleBlockEntity> {
+ *     // 服务端, 由 NetworkHooks.openScreen(player, provider, pos) 打开
+ *     public ExampleMenu(int id, Inventory inventory, ExampleBlockEntity machine) {
+ *         super(ExampleMenus.EXAMPLE.get(), id, inventory, machine);
+ *         addMachineSlot(0, 44, 35);
+ *         addMachineSlot(1, 116, 35);
+ *         addPlayerInventory(inventory, 8, 84);
+ *     }
+ *
+ *     // 客户端, 注册 IForgeMenuType.create(ExampleMenu::new)
+ *     public ExampleMenu(int id, Inventory inventory, FriendlyByteBuf buf) {
+ *         this(id, inventory, readMachine(inventory, buf, ExampleBlockEntity.class));
+ *     }
+ * }
+ * }</pre>
+ *
+ * @param <T> 机器类型
+ */
+public abstract class MachineMenu<T extends MachineControllerBlockEntity> extends AbstractContainerMenu {
+	private static final int ENERGY_INDEX = 0;
+	private static final int WORK_TIME_INDEX = 2;
+	private static final int TANK_START_INDEX = 4;
+	private static final int SLOTS_PER_TANK = 4;
+
+	@Getter
+	protected final T machine;
+	private final int tanks;
+	private final ContainerData data;
+	private int playerInventoryStart = -1;
+	private int playerInventoryEnd = -1;
+
+	protected MachineMenu(@Nullable MenuType<?> type, int containerId, Inventory inventory, T machine) {
+		super(type, containerId);
+		this.machine = machine;
+
+		IFluidHandler fluids = machine.getInternalFluidHandler();
+		this.tanks = fluids == null ? 0 : fluids.getTanks();
+
+		int count = TANK_START_INDEX + tanks * SLOTS_PER_TANK;
+		this.data = inventory.player.level().isClientSide() ? new SimpleContainerData(count) : new MachineData();
+		addDataSlots(data);
+	}
+
+	/**
+	 * 客户端构造菜单时读取服务端写入的方块坐标并取得机器
+	 *
+	 * @throws IllegalStateException 坐标处不是指定类型的机器
+	 */
+	protected static <T extends MachineControllerBlockEntity> T readMachine(Inventory inventory, FriendlyByteBuf buf, Class<T> type) {
+		BlockPos pos = buf.readBlockPos();
+		BlockEntity blockEntity = inventory.player.level().getBlockEntity(pos);
+		if (!type.isInstance(blockEntity)) {
+			throw new IllegalStateException("Block entity at " + pos + " is not " + type.getSimpleName() + ": " + blockEntity);
+		}
+		return type.cast(blockEntity);
+	}
+
+	/**
+	 * 添加一个内部物品槽位
+	 */
+	protected final MachineItemSlot addMachineSlot(int slot, int x, int y) {
+		IItemHandler items = machine.getInternalItemHandler();
+		if (items == null) {
+			throw new IllegalStateException("Machine has no internal item storage: " + machine.getBlockPos());
+		}
+		return (MachineItemSlot) addSlot(new MachineItemSlot(machine, items, slot, x, y));
+	}
+
+	/**
+	 * 添加玩家背包(3 x 9)与快捷栏, 快捷栏位于背包下方 58 像素
+	 */
+	protected final void addPlayerInventory(Inventory inventory, int x, int y) {
+		playerInventoryStart = slots.size();
+		for (int row = 0; row < 3; row++) {
+			for (int column = 0; column < 9; column++) {
+				addSlot(new Slot(inventory, column + row * 9 + 9, x + column * 18, y + row * 18));
+			}
+		}
+		for (int column = 0; column < 9; column++) {
+			addSlot(new Slot(inventory, column, x + column * 18, y + 58));
+		}
+		playerInventoryEnd = slots.size();
+	}
+
+	public int getEnergy() {
+		return getInt(ENERGY_INDEX);
+	}
+
+	public int getEnergyCapacity() {
+		return machine.getConfiguredEnergyCapacity();
+	}
+
+	public int getWorkTime() {
+		return getInt(WORK_TIME_INDEX);
+	}
+
+	public int getTanks() {
+		return tanks;
+	}
+
+	/**
+	 * 储罐中的流体, 客户端由数据槽还原, 不含 NBT
+	 */
+	@NotNull
+	public FluidStack getFluid(int tank) {
+		if (tank < 0 || tank >= tanks) {
+			return FluidStack.EMPTY;
+		}
+
+		int base = TANK_START_INDEX + tank * SLOTS_PER_TANK;
+		int amount = getInt(base);
+		Fluid fluid = BuiltInRegistries.FLUID.byId(getInt(base + 2));
+		return amount <= 0 || fluid == Fluids.EMPTY ? FluidStack.EMPTY : new FluidStack(fluid, amount);
+	}
+
+	public int getFluidCapacity(int tank) {
+		IFluidHandler fluids = machine.getInternalFluidHandler();
+		return fluids == null || tank < 0 || tank >= tanks ? 0 : fluids.getTankCapacity(tank);
+	}
+
+	@Override
+	public boolean stillValid(@NotNull Player player) {
+		return Container.stillValidBlockEntity(machine, player);
+	}
+
+	@Override
+	public @NotNull ItemStack quickMoveStack(@NotNull Player player, int index) {
+		Slot slot = slots.get(index);
+		if (!slot.hasItem() || playerInventoryStart < 0) {
+			return ItemStack.EMPTY;
+		}
+
+		ItemStack stack = slot.getItem();
+		ItemStack original = stack.copy();
+
+		if (slot instanceof MachineItemSlot) {
+			if (!moveItemStackTo(stack, playerInventoryStart, playerInventoryEnd, true)) {
+				return ItemStack.EMPTY;
+			}
+		} else if (!moveItemStackTo(stack, 0, playerInventoryStart, false)) {
+			return ItemStack.EMPTY;
+		}
+
+		if (stack.isEmpty()) {
+			slot.setByPlayer(ItemStack.EMPTY);
+		} else {
+			slot.setChanged();
+		}
+
+		if (stack.getCount() == original.getCount()) {
+			return ItemStack.EMPTY;
+		}
+		slot.onTake(player, stack);
+		return original;
+	}
+
+	private int getInt(int index) {
+		return (data.get(index) & 0xFFFF) | (data.get(index + 1) << 16);
+	}
+
+	private static int half(int value, boolean high) {
+		return high ? value >>> 16 : value & 0xFFFF;
+	}
+
+	/**
+	 * 服务端数据源, 每次 {@link AbstractContainerMenu#broadcastChanges()} 时直接读取机器
+	 */
+	private final class MachineData implements ContainerData {
+		@Override
+		public int get(int index) {
+			boolean high = (index & 1) == 1;
+			if (index < WORK_TIME_INDEX) {
+				return half(machine.getStoredEnergy(), high);
+			}
+			if (index < TANK_START_INDEX) {
+				return half(machine.getWorkTime(), high);
+			}
+
+			int offset = index - TANK_START_INDEX;
+			FluidStack fluid = machine.getStoredFluid(offset / SLOTS_PER_TANK);
+			int value = offset % SLOTS_PER_TANK < 2
+					? fluid.getAmount()
+					: fluid.isEmpty() ? 0 : BuiltInRegistries.FLUID.getId(fluid.getFluid());
+			return half(value, high);
+		}
+
+		@Override
+		public void set(int index, int value) {
+		}
+
+		@Override
+		public int getCount() {
+			return TANK_START_INDEX + tanks * SLOTS_PER_TANK;
+		}
+	}
+
+	/**
+	 * 机器内部物品槽位
+	 *
+	 * <p>
+	 * 玩家只能向 IO 模式允许输入的槽位放入物品, 任何槽位都可以取出.
+	 * 原地修改数量后会通知机器, 保证配方搜索与客户端同步能感知到变化
+	 * </p>
+	 */
+	public static class MachineItemSlot extends SlotItemHandler {
+		private final MachineControllerBlockEntity machine;
+
+		public MachineItemSlot(MachineControllerBlockEntity machine, IItemHandler items, int slot, int x, int y) {
+			super(items, slot, x, y);
+			this.machine = machine;
+		}
+
+		@Override
+		public boolean mayPlace(@NotNull ItemStack stack) {
+			return machine.getItemIO(getSlotIndex()).canInsert() && super.mayPlace(stack);
+		}
+
+		@Override
+		public void setChanged() {
+			super.setChanged();
+			if (!machine.isRemoved() && machine.getLevel() != null && !machine.getLevel().isClientSide()) {
+				machine.markItemSlotChanged(getSlotIndex());
+			}
+		}
+	}
+}
@@ -0,0 +1,320 @@
+package dev.celestiacraft.libs.api.register.multiblock.machine;
+
+import dev.celestiacraft.libs.common.recipe.machine.MachineRecipeIO;
+import lombok.Getter;
+import net.minecraft.world.item.ItemStack;
+import net.minecraftforge.energy.IEnergyStorage;
+import net.minecraftforge.fluids.FluidStack;
+import net.minecraftforge.fluids.capability.IFluidHandler;
+import net.minecraftforge.items.IItemHandler;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 机器库存的不可变快照
+ *
+ * <p>
+ * 在主线程上复制控制器的物品、流体与能量, 之后可以在工作线程上安全地做配方搜索
+ * </p>
+ *
+ * <p>
+ * 快照提供只读的 {@link IItemHandler} / {@link IFluidHandler} / {@link IEnergyStorage} 视图,
+ * 可直接传给 {@link dev.celestiacraft.libs.common.recipe.machine.MachineRecipe} 的匹配方法.
+ * 模拟插入、填充与提取按复制下来的内容和容量计算结果; 实际执行的写入一律被拒绝, 快照本身永远不会改变
+ * </p>
+ *
+ * <p>
+ * {@link #getVersion()} 记录拍摄时控制器的库存版本, 用于判断结果是否已经过期
+ * </p>
+ */
+public final class MachineSnapshot {
+	@Getter
+	private final long version;
+	private final ItemStack[] items;
+	private final int[] slotLimits;
+	private final FluidStack[] fluids;
+	private final int[] tankCapacities;
+	@Getter
+	private final int energy;
+	@Getter
+	private final int energyCapacity;
+	private final int extractableEnergy;
+	private final int receivableEnergy;
+
+	private final IItemHandler itemView = new ItemView();
+	private final IFluidHandler fluidView = new FluidView();
+	private final IEnergyStorage energyView = new EnergyView();
+
+	private MachineSnapshot(long version, ItemStack[] items, int[] slotLimits, FluidStack[] fluids, int[] tankCapacities, int energy, int energyCapacity, int extractableEnergy, int receivableEnergy) {
+		this.version = version;
+		this.items = items;
+		this.slotLimits = slotLimits;
+		this.fluids = fluids;
+		this.tankCapacities = tankCapacities;
+		this.energy = energy;
+		this.energyCapacity = energyCapacity;
+		this.extractableEnergy = extractableEnergy;
+		this.receivableEnergy = receivableEnergy;
+	}
+
+	/**
+	 * 复制给定容器的当前内容, 必须在主线程调用
+	 *
+	 * @param version 控制器当前的库存版本
+	 * @param items   物品容器, 允许为 {@code null}
+	 * @param fluids  流体容器, 允许为 {@code null}
+	 * @param energy  能量容器, 允许为 {@code null}
+	 */
+	public static MachineSnapshot of(long version, @Nullable IItemHandler items, @Nullable IFluidHandler fluids, @Nullable IEnergyStorage energy) {
+		int slots = items == null ? 0 : items.getSlots();
+		ItemStack[] itemCopies = new ItemStack[slots];
+		int[] slotLimits = new int[slots];
+		for (int slot = 0; slot < slots; slot++) {
+			itemCopies[slot] = items.getStackInSlot(slot).copy();
+			slotLimits[slot] = items.getSlotLimit(slot);
+		}
+
+		int tanks = fluids == null ? 0 : fluids.getTanks();
+		FluidStack[] fluidCopies = new FluidStack[tanks];
+		int[] capacities = new int[tanks];
+		for (int tank = 0; tank < tanks; tank++) {
+			fluidCopies[tank] = fluids.getFluidInTank(tank).copy();
+			capacities[tank] = fluids.getTankCapacity(tank);
+		}
+
+		return new MachineSnapshot(
+				version,
+				itemCopies,
+				slotLimits,
+				fluidCopies,
+				capacities,
+				energy == null ? 0 : energy.getEnergyStored(),
+				energy == null ? 0 : energy.getMaxEnergyStored(),
+				energy == null ? 0 : energy.extractEnergy(Integer.MAX_VALUE, true),
+				energy == null ? 0 : energy.receiveEnergy(Integer.MAX_VALUE, true)
+		);
+	}
+
+	public IItemHandler getItems() {
+		return itemView;
+	}
+
+	public IFluidHandler getFluids() {
+		return fluidView;
+	}
+
+	public IEnergyStorage getEnergyStorage() {
+		return energyView;
+	}
+
+	/**
+	 * 以快照内容构造合并模式的配方容器
+	 *
+	 * <p>
+	 * 输入从任意槽位收集, 输出按任意空位或可堆叠槽位计算, 与
+	 * {@link MachineControllerBlockEntity#getFormedRecipeIO()} 的匹配方式一致.
+	 * 内部槽位按固定区间划分输入 / 输出的机器应改用 {@link #toRecipeIO(int, int, int)}
+	 * </p>
+	 *
+	 * <p>
+	 * 可用于在工作线程上匹配配方和预估并行数, 但不能用于 {@code craft}
+	 * </p>
+	 */
+	public MachineRecipeIO toRecipeIO() {
+		return MachineRecipeIO.builder()
+				.itemInputs(itemView, 0)
+				.itemOutputs(itemView, 0)
+				.fluidInputs(fluidView, 0)
+				.fluidOutputs(fluidView)
+				.energy(energyView)
+				.pooled()
+				.build();
+	}
+
+	/**
+	 * 以快照内容构造按槽位匹配的配方容器
+	 *
+	 * <p>
+	 * 第 i 个物品输入对应 {@code itemInputStart + i} 号槽位, 第 i 个物品输出对应 {@code itemOutputStart + i} 号槽位,
+	 * 流体输入同理; 起始槽位应与机器在主线程上调用 {@code craft} 时使用的布局一致
+	 * </p>
+	 *
+	 * @param itemInputStart  物品输入的起始槽位
+	 * @param itemOutputStart 物品输出的起始槽位
+	 * @param fluidInputStart 流体输入的起始储罐
+	 */
+	public MachineRecipeIO toRecipeIO(int itemInputStart, int itemOutputStart, int fluidInputStart) {
+		return MachineRecipeIO.builder()
+				.itemInputs(itemView, itemInputStart)
+				.itemOutputs(itemView, itemOutputStart)
+				.fluidInputs(fluidView, fluidInputStart)
+				.fluidOutputs(fluidView)
+				.energy(energyView)
+				.build();
+	}
+
+	private final class ItemView implements IItemHandler {
+		@Override
+		public int getSlots() {
+			return items.length;
+		}
+
+		@Override
+		public @NotNull ItemStack getStackInSlot(int slot) {
+			return slot >= 0 && slot < items.length ? items[slot] : ItemStack.EMPTY;
+		}
+
+		@Override
+		public @NotNull ItemStack insertItem(int slot, @NotNull ItemStack stack, boolean simulate) {
+			if (!simulate || stack.isEmpty() || slot < 0 || slot >= items.length) {
+				return stack;
+			}
+
+			ItemStack existing = items[slot];
+			int limit = Math.min(slotLimits[slot], stack.getMaxStackSize());
+			if (!existing.isEmpty()) {
+				if (!ItemStack.isSameItemSameTags(existing, stack)) {
+					return stack;
+				}
+				limit -= existing.getCount();
+			}
+
+			if (limit <= 0) {
+				return stack;
+			}
+			return stack.getCount() <= limit ? ItemStack.EMPTY : stack.copyWithCount(stack.getCount() - limit);
+		}
+
+		@Override
+		public @NotNull ItemStack extractItem(int slot, int amount, boolean simulate) {
+			if (!simulate || amount <= 0 || slot < 0 || slot >= items.length) {
+				return ItemStack.EMPTY;
+			}
+
+			ItemStack existing = items[slot];
+			if (existing.isEmpty()) {
+				return ItemStack.EMPTY;
+			}
+			return existing.copyWithCount(Math.min(amount, Math.min(existing.getCount(), existing.getMaxStackSize())));
+		}
+
+		@Override
+		public int getSlotLimit(int slot) {
+			return slot >= 0 && slot < slotLimits.length ? slotLimits[slot] : 0;
+		}
+
+		@Override
+		public boolean isItemValid(int slot, @NotNull ItemStack stack) {
+			return slot >= 0 && slot < items.length;
+		}
+	}
+
+	private final class FluidView implements IFluidHandler {
+		@Override
+		public int getTanks() {
+			return fluids.length;
+		}
+
+		@Override
+		public @NotNull FluidStack getFluidInTank(int tank) {
+			return tank >= 0 && tank < fluids.length ? fluids[tank] : FluidStack.EMPTY;
+		}
+
+		@Override
+		public int getTankCapacity(int tank) {
+			return tank >= 0 && tank < tankCapacities.length ? tankCapacities[tank] : 0;
+		}
+
+		@Override
+		public boolean isFluidValid(int tank, @NotNull FluidStack stack) {
+			return tank >= 0 && tank < fluids.length;
+		}
+
+		/**
+		 * 先填入已有同种流体的储罐, 再填入空储罐
+		 */
+		@Override
+		public int fill(FluidStack resource, FluidAction action) {
+			if (action.execute() || resource.isEmpty()) {
+				return 0;
+			}
+
+			int remaining = resource.getAmount();
+			for (int tank = 0; tank < fluids.length && remaining > 0; tank++) {
+				if (fluids[tank].isFluidEqual(resource)) {
+					remaining -= Math.min(remaining, Math.max(0, tankCapacities[tank] - fluids[tank].getAmount()));
+				}
+			}
+			for (int tank = 0; tank < fluids.length && remaining > 0; tank++) {
+				if (fluids[tank].isEmpty()) {
+					remaining -= Math.min(remaining, tankCapacities[tank]);
+				}
+			}
+			return resource.getAmount() - remaining;
+		}
+
+		@Override
+		public @NotNull FluidStack drain(FluidStack resource, FluidAction action) {
+			if (action.execute() || resource.isEmpty()) {
+				return FluidStack.EMPTY;
+			}
+
+			int drained = 0;
+			for (FluidStack stored : fluids) {
+				if (stored.isFluidEqual(resource)) {
+					drained += Math.min(resource.getAmount() - drained, stored.getAmount());
+					if (drained >= resource.getAmount()) {
+						break;
+					}
+				}
+			}
+			return drained <= 0 ? FluidStack.EMPTY : new FluidStack(resource, drained);
+		}
+
+		@Override
+		public @NotNull FluidStack drain(int maxDrain, FluidAction action) {
+			if (action.execute() || maxDrain <= 0) {
+				return FluidStack.EMPTY;
+			}
+
+			for (FluidStack stored : fluids) {
+				if (!stored.isEmpty()) {
+					return drain(new FluidStack(stored, maxDrain), action);
+				}
+			}
+			return FluidStack.EMPTY;
+		}
+	}
+
+	private final class EnergyView implements IEnergyStorage {
+		@Override
+		public int receiveEnergy(int maxReceive, boolean simulate) {
+			return simulate ? Math.max(0, Math.min(maxReceive, receivableEnergy)) : 0;
+		}
+
+		@Override
+		public int extractEnergy(int maxExtract, boolean simulate) {
+			return simulate ? Math.max(0, Math.min(maxExtract, extractableEnergy)) : 0;
+		}
+
+		@Override
+		public int getEnergyStored() {
+			return energy;
+		}
+
+		@Override
+		public int getMaxEnergyStored() {
+			return energyCapacity;
+		}
+
+		@Override
+		public boolean canExtract() {
+			return extractableEnergy > 0;
+		}
+
+		@Override
+		public boolean canReceive() {
+			return receivableEnergy > 0;
+		}
+	}
+}
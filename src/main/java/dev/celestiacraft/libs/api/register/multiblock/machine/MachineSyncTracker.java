@@ -0,0 +1,48 @@
+package dev.celestiacraft.libs.api.register.multiblock.machine;
+
+import dev.celestiacraft.libs.NebulaLibs;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import it.unimi.dsi.fastutil.objects.ReferenceLinkedOpenHashSet;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.server.ServerStoppedEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+/**
+ * 机器控制器增量同步的调度器
+ *
+ * <p>
+ * 控制器的同步字段发生变化后登记到这里, 在服务器 Tick 结束时统一发送增量包.
+ * 因距离限频而暂未发送的控制器会保留到之后的 Tick
+ * </p>
+ */
+@Mod.EventBusSubscriber(modid = NebulaLibs.MODID, bus = Mod.EventBusSubscriber.Bus.FORGE)
+public final class MachineSyncTracker {
+	private static final ReferenceLinkedOpenHashSet<MachineControllerBlockEntity> PENDING = new ReferenceLinkedOpenHashSet<>();
+
+	private MachineSyncTracker() {
+	}
+
+	static void markDirty(MachineControllerBlockEntity blockEntity) {
+		PENDING.add(blockEntity);
+	}
+
+	@SubscribeEvent
+	public static void onServerTick(TickEvent.ServerTickEvent event) {
+		if (event.phase != TickEvent.Phase.END || PENDING.isEmpty()) {
+			return;
+		}
+
+		ObjectIterator<MachineControllerBlockEntity> iterator = PENDING.iterator();
+		while (iterator.hasNext()) {
+			if (!iterator.next().flushSyncDelta()) {
+				iterator.remove();
+			}
+		}
+	}
+
+	@SubscribeEvent
+	public static void onServerStopped(ServerStoppedEvent event) {
+		PENDING.clear();
+	}
+}
@@ -0,0 +1,155 @@
+package dev.celestiacraft.libs.client.exporter;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * 逐行写入的 RGBA PNG 编码器
+ *
+ * <p>
+ * 扫描行经 Sub 过滤后直接压缩并分块写入 {@code IDAT}, 内存占用只与一行的宽度有关,
+ * 用于分块导出超出单张纹理大小的图片. 行必须从上到下依次写入, 写满 {@code height} 行后调用 {@link #close()}
+ * </p>
+ */
+final class PngStreamWriter implements AutoCloseable {
+	private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+	private static final int CHUNK_SIZE = 64 * 1024;
+	private static final int FILTER_SUB = 1;
+
+	private final DataOutputStream file;
+	private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+	private final DeflaterOutputStream idat;
+	private final int width;
+	private final int height;
+	private final byte[] filtered;
+	private int rowsWritten;
+
+	PngStreamWriter(Path path, int width, int height) throws IOException {
+		this.width = width;
+		this.height = height;
+		this.filtered = new byte[1 + width * 4];
+		this.file = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), CHUNK_SIZE));
+
+		file.write(SIGNATURE);
+
+		byte[] header = new byte[13];
+		writeInt(header, 0, width);
+		writeInt(header, 4, height);
+		header[8] = 8;
+		header[9] = 6;
+		writeChunk("IHDR", header, header.length);
+
+		this.idat = new DeflaterOutputStream(new IdatOutputStream(), deflater, CHUNK_SIZE);
+	}
+
+	/**
+	 * 写入一行 RGBA 像素
+	 *
+	 * @param pixels 像素数据, 每像素 4 字节
+	 * @param offset 本行在 {@code pixels} 中的起始位置
+	 */
+	void writeRow(byte[] pixels, int offset) throws IOException {
+		if (rowsWritten >= height) {
+			throw new IOException("All " + height + " rows have been written");
+		}
+
+		filtered[0] = FILTER_SUB;
+		int rowBytes = width * 4;
+		System.arraycopy(pixels, offset, filtered, 1, Math.min(4, rowBytes));
+		for (int i = 4; i < rowBytes; i++) {
+			filtered[1 + i] = (byte) (pixels[offset + i] - pixels[offset + i - 4]);
+		}
+		idat.write(filtered, 0, 1 + rowBytes);
+		rowsWritten++;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			if (rowsWritten != height) {
+				throw new IOException("Only " + rowsWritten + " of " + height + " rows were written");
+			}
+			idat.finish();
+			idat.flush();
+			writeChunk("IEND", new byte[0], 0);
+			file.flush();
+		} finally {
+			deflater.end();
+			file.close();
+		}
+	}
+
+	private void writeChunk(String type, byte[] data, int length) throws IOException {
+		byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+		CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(data, 0, length);
+
+		file.writeInt(length);
+		file.write(typeBytes);
+		file.write(data, 0, length);
+		file.writeInt((int) crc.getValue());
+	}
+
+	private static void writeInt(byte[] buffer, int offset, int value) {
+		buffer[offset] = (byte) (value >>> 24);
+		buffer[offset + 1] = (byte) (value >>> 16);
+		buffer[offset + 2] = (byte) (value >>> 8);
+		buffer[offset + 3] = (byte) value;
+	}
+
+	/**
+	 * 把压缩后的数据按 {@link #CHUNK_SIZE} 切分为 {@code IDAT} 块
+	 */
+	private final class IdatOutputStream extends OutputStream {
+		private final byte[] buffer = new byte[CHUNK_SIZE];
+		private int size;
+
+		@Override
+		public void write(int value) throws IOException {
+			buffer[size++] = (byte) value;
+			if (size == buffer.length) {
+				flushChunk();
+			}
+		}
+
+		@Override
+		public void write(byte[] data, int offset, int length) throws IOException {
+			while (length > 0) {
+				int count = Math.min(length, buffer.length - size);
+				System.arraycopy(data, offset, buffer, size, count);
+				size += count;
+				offset += count;
+				length -= count;
+				if (size == buffer.length) {
+					flushChunk();
+				}
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			flushChunk();
+		}
+
+		@Override
+		public void close() throws IOException {
+			flushChunk();
+		}
+
+		private void flushChunk() throws IOException {
+			if (size > 0) {
+				writeChunk("IDAT", buffer, size);
+				size = 0;
+			}
+		}
+	}
+}
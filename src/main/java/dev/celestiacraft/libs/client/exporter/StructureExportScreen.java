@@ -13,7 +13,7 @@ import net.minecraft.client.gui.screens.Screen;
 import net.minecraft.network.chat.Component;
 
 import javax.annotation.Nonnull;
-import java.io.IOException;
+import javax.annotation.Nullable;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -27,6 +27,8 @@ public class StructureExportScreen extends Screen {
 	private EditBox rotYInput;
 	private StructureScene scene;
 	private StructureRenderer renderer;
+	@Nullable
+	private StructureLoadTask loadTask;
 	private final Minecraft minecraft = Minecraft.getInstance();
 
 	private float rotationX = -30f;
@@ -233,8 +235,21 @@ public class StructureExportScreen extends Screen {
 			return;
 		}
 
-		try {
-			scene = StructureScene.loadFromFile(path);
+		if (minecraft.level == null) {
+			return;
+		}
+
+		if (loadTask != null) {
+			loadTask.cancel();
+		}
+
+		String fileName = pathStr;
+		loadTask = StructureLoadTask.start(path, minecraft.level, (result) -> {
+			scene = result.scene();
+			if (renderer != null) {
+				renderer.close();
+			}
+			renderer = result.renderer();
 
 			// 提示缺失方块
 			if (!scene.getMissingBlocks().isEmpty() && minecraft.player != null) {
@@ -247,17 +262,11 @@ public class StructureExportScreen extends Screen {
 						false
 				);
 			}
-
-			if (minecraft.level != null) {
-				if (renderer != null) {
-					renderer.close();
-				}
-				renderer = new StructureRenderer(scene, minecraft.level);
-			}
-		} catch (IOException exception) {
+		}, (exception) -> {
+			loadTask = null;
 			NebulaLibs.LOGGER.error(
 					"Failed to load structure: {}",
-					pathStr,
+					fileName,
 					exception
 			);
 			if (minecraft.player != null) {
@@ -266,7 +275,7 @@ public class StructureExportScreen extends Screen {
 						false
 				);
 			}
-		}
+		});
 	}
 
 	private void refreshSuggestions() {
@@ -327,12 +336,21 @@ public class StructureExportScreen extends Screen {
 		graphics.drawString(this.font, "X:", centerLabelX - 140, angleY, 0xFFFFFF);
 		graphics.drawString(this.font, "Y:", centerLabelX - 65, angleY, 0xFFFFFF);
 
+		if (loadTask != null && loadTask.getStage() == StructureLoadTask.Stage.MESHING && renderer != null) {
+			loadTask.update(StructureLoadTask.Stage.MESHING, renderer.getMeshingProgress());
+			if (renderer.isMeshingComplete()) {
+				loadTask = null;
+			}
+		}
+
 		if (scene == null || renderer == null) {
-			graphics.drawCenteredString(
-					this.font,
-					NebulaLang.translateDirect("export.no_structure"),
-					this.width / 2, this.height / 2, 0xAAAAAA
-			);
+			if (loadTask == null) {
+				graphics.drawCenteredString(
+						this.font,
+						NebulaLang.translateDirect("export.no_structure"),
+						this.width / 2, this.height / 2, 0xAAAAAA
+				);
+			}
 		} else {
 			int previewH = this.height - 80;
 			PoseStack poseStack = graphics.pose();
@@ -347,6 +365,9 @@ public class StructureExportScreen extends Screen {
 					previewH
 			);
 		}
+		if (loadTask != null) {
+			renderLoadProgress(graphics, loadTask);
+		}
 		if (pendingExport && renderer != null) {
 			pendingExport = false;
 			doExport();
@@ -399,6 +420,23 @@ public class StructureExportScreen extends Screen {
 		}
 	}
 
+	private void renderLoadProgress(GuiGraphics graphics, StructureLoadTask task) {
+		int barWidth = 200;
+		int barX = (this.width - barWidth) / 2;
+		int barY = this.height / 2 + 6;
+		StructureLoadTask.Stage stage = task.getStage();
+		float total = (stage.ordinal() + task.getProgress()) / StructureLoadTask.Stage.values().length;
+
+		graphics.drawCenteredString(
+				this.font,
+				NebulaLang.translateDirect(stage.getLangKey(), Math.round(task.getProgress() * 100)),
+				this.width / 2, barY - 12, 0xFFFFFF
+		);
+		graphics.fill(barX - 1, barY - 1, barX + barWidth + 1, barY + 5, 0xFF555555);
+		graphics.fill(barX, barY, barX + barWidth, barY + 4, 0xFF000000);
+		graphics.fill(barX, barY, barX + Math.round(barWidth * total), barY + 4, 0xFF55FF55);
+	}
+
 	private void doExport() {
 		int resolution;
 
@@ -408,7 +446,7 @@ public class StructureExportScreen extends Screen {
 			resolution = SELECTED_RESOLUTION;
 		}
 
-		resolution = Math.max(1024, Math.min(16384, resolution));
+		resolution = Math.max(1024, Math.min(StructureRenderer.MAX_EXPORT_SIZE, resolution));
 
 		String pathStr = pathInput.getValue().trim();
 
@@ -560,6 +598,10 @@ public class StructureExportScreen extends Screen {
 
 	@Override
 	public void onClose() {
+		if (loadTask != null) {
+			loadTask.cancel();
+			loadTask = null;
+		}
 		if (renderer != null) {
 			renderer.close();
 		}
@@ -0,0 +1,189 @@
+package dev.celestiacraft.libs.client.exporter;
+
+import lombok.Getter;
+import net.minecraft.Util;
+import net.minecraft.client.Minecraft;
+import net.minecraft.world.level.Level;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * 结构文件的后台加载流程
+ *
+ * <p>
+ * 加载分为四个阶段, 每个阶段都会更新进度并检查是否已取消:
+ * </p>
+ *
+ * <ul>
+ *     <li>{@link Stage#READING}: 解压并读取 NBT</li>
+ *     <li>{@link Stage#RESOLVING}: 解析调色板并写入方块数据</li>
+ *     <li>{@link Stage#BUILDING}: 创建虚拟世界</li>
+ *     <li>{@link Stage#MESHING}: 分区网格构建, 由 {@link StructureRenderer} 在渲染线程推进</li>
+ * </ul>
+ *
+ * <p>
+ * 前三个阶段在后台线程运行, 只处理方块数据, 不调用其他模组的代码;
+ * 方块实体创建(包括 {@code load} 与能力附加事件), 实体加载, Mekanism 管道连接刷新与相邻方块形状计算
+ * ({@code updateShape}) 会运行其他模组的代码并访问客户端世界, 与渲染器创建一起回到渲染线程执行.
+ * 形状计算放在方块实体创建之后, 依赖方块实体判断连接的方块(如靠近储罐的管道)才能得到正确的形状.
+ * 取消后后台线程会在下一次更新进度时退出, 已完成的结果也不会再交给界面
+ * </p>
+ */
+public final class StructureLoadTask {
+	/**
+	 * 读取进度的更新间隔, 单位字节
+	 */
+	private static final int PROGRESS_STEP = 64 * 1024;
+
+	public enum Stage {
+		READING("export.stage.reading"),
+		RESOLVING("export.stage.resolving"),
+		BUILDING("export.stage.building"),
+		MESHING("export.stage.meshing");
+
+		@Getter
+		private final String langKey;
+
+		Stage(String langKey) {
+			this.langKey = langKey;
+		}
+	}
+
+	/**
+	 * 加载完成的结构与渲染器
+	 */
+	public record Result(StructureScene scene, StructureRenderer renderer) {
+	}
+
+	private record Loaded(StructureScene scene, VirtualBlockLevel level) {
+	}
+
+	@Getter
+	private volatile Stage stage = Stage.READING;
+	@Getter
+	private volatile float progress;
+	@Getter
+	private volatile boolean cancelled;
+
+	private StructureLoadTask() {
+	}
+
+	/**
+	 * 开始加载, 回调总是在渲染线程执行
+	 *
+	 * @param path     结构文件
+	 * @param level    客户端世界
+	 * @param onLoaded 加载完成, 之后进入 {@link Stage#MESHING}
+	 * @param onError  加载失败, 取消时不会调用
+	 */
+	public static StructureLoadTask start(Path path, Level level, Consumer<Result> onLoaded, Consumer<Exception> onError) {
+		StructureLoadTask task = new StructureLoadTask();
+		Minecraft mc = Minecraft.getInstance();
+
+		CompletableFuture.supplyAsync(() -> {
+			try {
+				StructureScene scene = StructureScene.loadFromFile(path, task);
+
+				task.update(Stage.BUILDING, 0f);
+				VirtualBlockLevel virtualLevel = new VirtualBlockLevel(level, scene);
+				task.update(Stage.BUILDING, 1f);
+				return new Loaded(scene, virtualLevel);
+			} catch (IOException exception) {
+				throw new CompletionException(exception);
+			}
+		}, Util.backgroundExecutor()).whenComplete((loaded, error) -> mc.execute(() -> {
+			if (task.cancelled) {
+				return;
+			}
+
+			if (error != null) {
+				Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+				if (cause instanceof CancellationException) {
+					return;
+				}
+				onError.accept(cause instanceof Exception exception ? exception : new RuntimeException(cause));
+				return;
+			}
+
+			try {
+				loaded.level().initAllBlockEntities();
+				loaded.level().initEntities(loaded.scene().getEntities());
+				loaded.level().refreshTransmitterConnections();
+				loaded.level().updateNeighborStates();
+			} catch (RuntimeException exception) {
+				onError.accept(exception);
+				return;
+			}
+
+			task.stage = Stage.MESHING;
+			task.progress = 0f;
+			onLoaded.accept(new Result(loaded.scene(), new StructureRenderer(loaded.scene(), loaded.level())));
+		}));
+
+		return task;
+	}
+
+	/**
+	 * 取消加载, 后台线程会在下一次更新进度时停止
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * 更新当前阶段与进度
+	 *
+	 * @param fraction 阶段内进度 {@code [0, 1]}
+	 * @throws CancellationException 已被取消
+	 */
+	void update(Stage stage, float fraction) {
+		if (cancelled) {
+			throw new CancellationException();
+		}
+		this.stage = stage;
+		this.progress = Math.max(0f, Math.min(1f, fraction));
+	}
+
+	/**
+	 * 读取时按已读字节数更新 {@link Stage#READING} 进度的输入流
+	 */
+	InputStream track(InputStream in, long total) {
+		return new FilterInputStream(in) {
+			private long read;
+			private long reported;
+
+			@Override
+			public int read() throws IOException {
+				int value = super.read();
+				if (value >= 0) {
+					advance(1);
+				}
+				return value;
+			}
+
+			@Override
+			public int read(byte[] buffer, int offset, int length) throws IOException {
+				int count = super.read(buffer, offset, length);
+				if (count > 0) {
+					advance(count);
+				}
+				return count;
+			}
+
+			private void advance(int count) {
+				read += count;
+				if (read - reported >= PROGRESS_STEP) {
+					reported = read;
+					update(Stage.READING, total > 0 ? (float) read / total : 0f);
+				}
+			}
+		};
+	}
+}
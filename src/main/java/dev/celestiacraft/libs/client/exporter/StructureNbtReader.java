@@ -0,0 +1,358 @@
+package dev.celestiacraft.libs.client.exporter;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtAccounter;
+import net.minecraft.nbt.Tag;
+import net.minecraft.world.phys.Vec3;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 结构文件的流式读取器
+ *
+ * <p>
+ * 直接在 GZIP 解压流上按顺序读取 {@code size}, {@code palette}, {@code blocks} 与 {@code entities},
+ * 不构建整个 {@link CompoundTag} 树:
+ * </p>
+ *
+ * <ul>
+ *     <li>方块条目只读取坐标与状态编号并直接写入 {@link StructureScene} 的压缩存储</li>
+ *     <li>只保留方块实体与实体的 {@code nbt} 子树, 以及体积很小的调色板条目</li>
+ *     <li>原版按哈希顺序写入字段, {@code blocks} 可能出现在尺寸或调色板之前;
+ *     此时方块先以每个 4 个 int 暂存, 读取结束后再写入</li>
+ *     <li>其他字段直接跳过</li>
+ * </ul>
+ */
+final class StructureNbtReader {
+	private static final int MAX_DEPTH = 512;
+
+	private final StructureScene scene;
+	@Nullable
+	private final StructureLoadTask task;
+
+	/**
+	 * 尺寸或调色板尚未读取时暂存的方块, 每个方块依次为 x, y, z, 状态编号
+	 */
+	private final IntArrayList pendingBlocks = new IntArrayList();
+	private final Int2ObjectMap<CompoundTag> pendingNbt = new Int2ObjectOpenHashMap<>();
+
+	private int blockX;
+	private int blockY;
+	private int blockZ;
+	private boolean blockHasPos;
+	private int blockState;
+	@Nullable
+	private CompoundTag blockNbt;
+
+	@Nullable
+	private Vec3 entityPos;
+	@Nullable
+	private CompoundTag entityNbt;
+
+	StructureNbtReader(StructureScene scene, @Nullable StructureLoadTask task) {
+		this.scene = scene;
+		this.task = task;
+	}
+
+	@FunctionalInterface
+	private interface FieldReader {
+		/**
+		 * 读取一个字段, 返回 {@code false} 时该字段会被跳过
+		 */
+		boolean read(DataInput in, String name, int type) throws IOException;
+	}
+
+	void read(InputStream stream) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(stream)));
+		if (in.readByte() != Tag.TAG_COMPOUND) {
+			throw new IOException("Root tag must be a compound");
+		}
+		in.readUTF();
+
+		readFields(in, this::readRootField);
+		flushPendingBlocks();
+		scene.finish();
+	}
+
+	// 根字段
+
+	private boolean readRootField(DataInput in, String name, int type) throws IOException {
+		if (type != Tag.TAG_LIST) {
+			return false;
+		}
+
+		switch (name) {
+			case "size" -> {
+				int[] size = new int[3];
+				int elementType = in.readByte();
+				int length = in.readInt();
+				for (int i = 0; i < length; i++) {
+					if (elementType == Tag.TAG_INT && i < 3) {
+						size[i] = in.readInt();
+					} else {
+						skip(in, elementType, 0);
+					}
+				}
+				scene.setSize(size[0], size[1], size[2]);
+				return true;
+			}
+			case "palette" -> {
+				int elementType = in.readByte();
+				int length = in.readInt();
+				List<CompoundTag> entries = new ArrayList<>(Math.max(0, length));
+				for (int i = 0; i < length; i++) {
+					if (elementType == Tag.TAG_COMPOUND) {
+						entries.add(readCompound(in));
+					} else {
+						skip(in, elementType, 0);
+					}
+				}
+				scene.setPalette(entries);
+				return true;
+			}
+			case "blocks" -> {
+				int elementType = in.readByte();
+				int length = in.readInt();
+				for (int i = 0; i < length; i++) {
+					if (elementType == Tag.TAG_COMPOUND) {
+						readBlock(in);
+					} else {
+						skip(in, elementType, 0);
+					}
+				}
+				return true;
+			}
+			case "entities" -> {
+				int elementType = in.readByte();
+				int length = in.readInt();
+				for (int i = 0; i < length; i++) {
+					if (elementType == Tag.TAG_COMPOUND) {
+						readEntity(in);
+					} else {
+						skip(in, elementType, 0);
+					}
+				}
+				return true;
+			}
+			default -> {
+				return false;
+			}
+		}
+	}
+
+	// 方块
+
+	private void readBlock(DataInput in) throws IOException {
+		blockHasPos = false;
+		blockState = 0;
+		blockNbt = null;
+
+		readFields(in, this::readBlockField);
+		if (!blockHasPos) {
+			return;
+		}
+
+		if (scene.isStorageReady()) {
+			scene.putBlock(blockX, blockY, blockZ, blockState, blockNbt);
+			return;
+		}
+
+		if (blockNbt != null) {
+			pendingNbt.put(pendingBlocks.size() / 4, blockNbt);
+		}
+		pendingBlocks.add(blockX);
+		pendingBlocks.add(blockY);
+		pendingBlocks.add(blockZ);
+		pendingBlocks.add(blockState);
+	}
+
+	private boolean readBlockField(DataInput in, String name, int type) throws IOException {
+		switch (name) {
+			case "pos" -> {
+				if (type != Tag.TAG_LIST) {
+					return false;
+				}
+				int elementType = in.readByte();
+				int length = in.readInt();
+				if (elementType != Tag.TAG_INT || length < 3) {
+					skipElements(in, elementType, length, 0);
+					return true;
+				}
+				blockX = in.readInt();
+				blockY = in.readInt();
+				blockZ = in.readInt();
+				blockHasPos = true;
+				skipElements(in, elementType, length - 3, 0);
+				return true;
+			}
+			case "state" -> {
+				if (type != Tag.TAG_INT) {
+					return false;
+				}
+				blockState = in.readInt();
+				return true;
+			}
+			case "nbt" -> {
+				if (type != Tag.TAG_COMPOUND) {
+					return false;
+				}
+				blockNbt = readCompound(in);
+				return true;
+			}
+			default -> {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * 写入尺寸或调色板读取之前暂存的方块
+	 */
+	private void flushPendingBlocks() throws IOException {
+		if (pendingBlocks.isEmpty()) {
+			return;
+		}
+
+		if (!scene.isStorageReady()) {
+			scene.finish();
+		}
+
+		int count = pendingBlocks.size() / 4;
+		for (int i = 0; i < count; i++) {
+			if (task != null && (i & 4095) == 0) {
+				task.update(StructureLoadTask.Stage.RESOLVING, (float) i / count);
+			}
+			int offset = i * 4;
+			scene.putBlock(
+					pendingBlocks.getInt(offset),
+					pendingBlocks.getInt(offset + 1),
+					pendingBlocks.getInt(offset + 2),
+					pendingBlocks.getInt(offset + 3),
+					pendingNbt.get(i)
+			);
+		}
+
+		pendingBlocks.clear();
+		pendingNbt.clear();
+	}
+
+	// 实体
+
+	private void readEntity(DataInput in) throws IOException {
+		entityPos = null;
+		entityNbt = null;
+
+		readFields(in, this::readEntityField);
+		if (entityNbt != null) {
+			scene.addEntity(new StructureScene.EntityInfo(entityPos == null ? Vec3.ZERO : entityPos, entityNbt));
+		}
+	}
+
+	private boolean readEntityField(DataInput in, String name, int type) throws IOException {
+		switch (name) {
+			case "pos" -> {
+				if (type != Tag.TAG_LIST) {
+					return false;
+				}
+				int elementType = in.readByte();
+				int length = in.readInt();
+				if (elementType != Tag.TAG_DOUBLE || length < 3) {
+					skipElements(in, elementType, length, 0);
+					return true;
+				}
+				entityPos = new Vec3(in.readDouble(), in.readDouble(), in.readDouble());
+				skipElements(in, elementType, length - 3, 0);
+				return true;
+			}
+			case "nbt" -> {
+				if (type != Tag.TAG_COMPOUND) {
+					return false;
+				}
+				entityNbt = readCompound(in);
+				return true;
+			}
+			default -> {
+				return false;
+			}
+		}
+	}
+
+	// NBT 基础读取
+
+	private static CompoundTag readCompound(DataInput in) throws IOException {
+		return CompoundTag.TYPE.load(in, 1, NbtAccounter.UNLIMITED);
+	}
+
+	/**
+	 * 依次读取复合标签的字段直到 {@code TAG_END}, 未处理的字段被跳过
+	 */
+	private static void readFields(DataInput in, FieldReader reader) throws IOException {
+		int type;
+		while ((type = in.readByte()) != Tag.TAG_END) {
+			String name = in.readUTF();
+			if (!reader.read(in, name, type)) {
+				skip(in, type, 0);
+			}
+		}
+	}
+
+	private static void skip(DataInput in, int type, int depth) throws IOException {
+		if (depth > MAX_DEPTH) {
+			throw new IOException("NBT tag is nested too deeply");
+		}
+
+		switch (type) {
+			case Tag.TAG_BYTE -> skipBytes(in, 1);
+			case Tag.TAG_SHORT -> skipBytes(in, 2);
+			case Tag.TAG_INT, Tag.TAG_FLOAT -> skipBytes(in, 4);
+			case Tag.TAG_LONG, Tag.TAG_DOUBLE -> skipBytes(in, 8);
+			case Tag.TAG_BYTE_ARRAY -> skipBytes(in, in.readInt());
+			case Tag.TAG_STRING -> skipBytes(in, in.readUnsignedShort());
+			case Tag.TAG_LIST -> {
+				int elementType = in.readByte();
+				skipElements(in, elementType, in.readInt(), depth + 1);
+			}
+			case Tag.TAG_COMPOUND -> {
+				int fieldType;
+				while ((fieldType = in.readByte()) != Tag.TAG_END) {
+					skipBytes(in, in.readUnsignedShort());
+					skip(in, fieldType, depth + 1);
+				}
+			}
+			case Tag.TAG_INT_ARRAY -> skipBytes(in, in.readInt() * 4L);
+			case Tag.TAG_LONG_ARRAY -> skipBytes(in, in.readInt() * 8L);
+			default -> throw new IOException("Unknown NBT tag type " + type);
+		}
+	}
+
+	private static void skipElements(DataInput in, int elementType, int length, int depth) throws IOException {
+		for (int i = 0; i < length; i++) {
+			skip(in, elementType, depth);
+		}
+	}
+
+	private static void skipBytes(DataInput in, long count) throws IOException {
+		if (count < 0) {
+			throw new IOException("Negative NBT length " + count);
+		}
+		while (count > 0) {
+			int skipped = in.skipBytes((int) Math.min(count, Integer.MAX_VALUE));
+			if (skipped <= 0) {
+				in.readByte();
+				skipped = 1;
+			}
+			count -= skipped;
+		}
+	}
+}
@@ -3,7 +3,6 @@ package dev.celestiacraft.libs.client.exporter;
 import com.mojang.blaze3d.pipeline.TextureTarget;
 import com.mojang.blaze3d.platform.GlStateManager;
 import com.mojang.blaze3d.platform.Lighting;
-import com.mojang.blaze3d.platform.NativeImage;
 import com.mojang.blaze3d.systems.RenderSystem;
 import com.mojang.blaze3d.vertex.BufferBuilder;
 import com.mojang.blaze3d.vertex.DefaultVertexFormat;
@@ -13,9 +12,15 @@ import com.mojang.blaze3d.vertex.VertexConsumer;
 import com.mojang.blaze3d.vertex.VertexFormat;
 import com.mojang.blaze3d.vertex.VertexSorting;
 import com.mojang.math.Axis;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import dev.celestiacraft.libs.NebulaLibs;
 import dev.celestiacraft.libs.compat.ICheckModLoaded;
 import dev.celestiacraft.libs.compat.ie.IEModelHelper;
+import net.minecraft.Util;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.LevelRenderer;
 import net.minecraft.client.renderer.LightTexture;
@@ -28,6 +33,8 @@ import net.minecraft.client.renderer.culling.Frustum;
 import net.minecraft.client.renderer.texture.OverlayTexture;
 import net.minecraft.client.resources.model.BakedModel;
 import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.core.SectionPos;
 import net.minecraft.util.RandomSource;
 import net.minecraft.world.entity.Entity;
 import net.minecraft.world.level.Level;
@@ -41,14 +48,27 @@ import org.jetbrains.annotations.NotNull;
 import org.joml.Matrix4f;
 import org.joml.Vector3f;
 import org.lwjgl.opengl.GL11;
+import org.lwjgl.system.MemoryUtil;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
-import java.util.function.BiConsumer;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
 
 public class StructureRenderer implements AutoCloseable {
@@ -66,6 +86,31 @@ public class StructureRenderer implements AutoCloseable {
 		}
 	};
 
+	/**
+	 * 视线方向与上次排序相差超过约 2° 时才重新排序半透明层
+	 */
+	private static final float TRANSLUCENT_RESORT_COS = 0.9994f;
+
+	/**
+	 * 导出图片的最大边长
+	 */
+	public static final int MAX_EXPORT_SIZE = 32768;
+	/**
+	 * 导出分块的最大边长, 同时受 {@code GL_MAX_TEXTURE_SIZE} 限制
+	 */
+	private static final int MAX_TILE_SIZE = 8192;
+	/**
+	 * 每条导出像素带的字节数上限, 决定分块高度
+	 */
+	private static final int EXPORT_BAND_BYTES = 32 * 1024 * 1024;
+
+	/**
+	 * 同时进行构建的分区数上限, 也是复用的 {@link SectionBuffers} 数量上限
+	 */
+	private static final int MAX_BUFFERS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+	private static final Queue<SectionBuffers> FREE_BUFFERS = new ConcurrentLinkedQueue<>();
+	private static final AtomicInteger ALLOCATED_BUFFERS = new AtomicInteger();
+
 	@Nullable
 	private static final Field CAPTURED_FRUSTUM_FIELD;
 
@@ -87,22 +132,38 @@ public class StructureRenderer implements AutoCloseable {
 	private final StructureScene scene;
 	private final VirtualBlockLevel virtualLevel;
 
-	private final Map<RenderType, VertexBuffer> blockVBOs = new HashMap<>();
-	@Nullable
-	private VertexBuffer translucentBlockVBO;
+	private final Long2ObjectMap<StructureSection> sections = new Long2ObjectOpenHashMap<>();
+	private final Queue<StructureSection> pendingSections = new ArrayDeque<>();
+	private final Queue<SectionMesh> completedMeshes = new ConcurrentLinkedQueue<>();
+	private int inFlightMeshes;
+	private boolean meshingStarted;
+	private volatile boolean closed;
+
+	/**
+	 * 按从远到近排列的含半透明方块的分区
+	 */
+	private final List<StructureSection> translucentSections = new ArrayList<>();
+	private final Vector3f translucentSortDirection = new Vector3f();
+	private boolean translucentOrderDirty;
 	@Nullable
-	private VertexBuffer fluidVBO;
-	private boolean vbosBuilt;
+	private BufferBuilder translucentSortBuilder;
 
 	public StructureRenderer(StructureScene scene, Level level) {
-		this.scene = scene;
-		this.virtualLevel = new VirtualBlockLevel(level, scene.getBlocks(), scene.getBlockEntityNbt());
+		this(scene, new VirtualBlockLevel(level, scene));
 		this.virtualLevel.initAllBlockEntities();
 		this.virtualLevel.initEntities(scene.getEntities());
 		this.virtualLevel.refreshTransmitterConnections();
 		this.virtualLevel.updateNeighborStates();
 	}
 
+	/**
+	 * 使用已经构建完成的虚拟世界, 见 {@link StructureLoadTask}
+	 */
+	public StructureRenderer(StructureScene scene, VirtualBlockLevel virtualLevel) {
+		this.scene = scene;
+		this.virtualLevel = virtualLevel;
+	}
+
 	// 公共渲染入口
 
 	public void renderPreview(PoseStack guiPose, float rotX, float rotY, float zoom, float panX, float panY, int screenWidth, int screenHeight) {
@@ -126,11 +187,20 @@ public class StructureRenderer implements AutoCloseable {
 		RenderSystem.setProjectionMatrix(savedProj, VertexSorting.ORTHOGRAPHIC_Z);
 	}
 
+	/**
+	 * 分块导出 PNG
+	 *
+	 * <p>
+	 * 画面按正交投影切分为若干子视锥, 每块复用同一个帧缓冲渲染并读回,
+	 * 同一行的所有分块拼成一条像素带后交给 {@link PngStreamWriter} 在 IO 线程逐行编码写盘.
+	 * 两条像素带交替使用, 内存占用与最终图片大小无关, 分辨率不再受 {@code GL_MAX_TEXTURE_SIZE} 限制
+	 * </p>
+	 */
 	public void exportToPng(Path outputPath, int resolution, float rotX, float rotY, float zoom, float panX, float panY, Consumer<Path> onSuccess, Consumer<Exception> onError) {
 		Minecraft mc = Minecraft.getInstance();
 		float aspect = (float) mc.getWindow().getGuiScaledWidth() / mc.getWindow().getGuiScaledHeight();
 
-		int maxSize = Math.min(resolution, GL11.glGetInteger(GL11.GL_MAX_TEXTURE_SIZE));
+		int maxSize = Math.max(1, Math.min(resolution, MAX_EXPORT_SIZE));
 		int exportWidth, exportHeight;
 		if (aspect >= 1.0f) {
 			exportWidth = maxSize;
@@ -140,68 +210,160 @@ public class StructureRenderer implements AutoCloseable {
 			exportHeight = maxSize;
 		}
 
-		TextureTarget fbo = new TextureTarget(exportWidth, exportHeight, true, Minecraft.ON_OSX);
+		int maxTileSize = Math.min(GL11.glGetInteger(GL11.GL_MAX_TEXTURE_SIZE), MAX_TILE_SIZE);
+		int tileWidth = Math.min(exportWidth, maxTileSize);
+		int tileHeight = Math.min(exportHeight, Math.min(maxTileSize, Math.max(16, EXPORT_BAND_BYTES / (exportWidth * 4))));
+
+		Matrix4f savedProj = new Matrix4f(RenderSystem.getProjectionMatrix());
+		TextureTarget fbo = new TextureTarget(tileWidth, tileHeight, true, Minecraft.ON_OSX);
 		fbo.setClearColor(0f, 0f, 0f, 0f);
-		fbo.clear(Minecraft.ON_OSX);
-		fbo.bindWrite(true);
-		RenderSystem.viewport(0, 0, exportWidth, exportHeight);
+		ByteBuffer tilePixels = MemoryUtil.memAlloc(tileWidth * tileHeight * 4);
 
-		RenderSystem.enableBlend();
-		RenderSystem.blendFuncSeparate(
-				GlStateManager.SourceFactor.SRC_ALPHA,
-				GlStateManager.DestFactor.ONE_MINUS_SRC_ALPHA,
-				GlStateManager.SourceFactor.ONE,
-				GlStateManager.DestFactor.ONE_MINUS_SRC_ALPHA
-		);
-		RenderSystem.enableDepthTest();
+		PngStreamWriter writer = null;
+		CompletableFuture<Void> writing = CompletableFuture.completedFuture(null);
+		boolean cameraSet = false;
 
-		setupCamera(rotX, rotY, zoom, panX, panY, aspect);
-		Lighting.setupFor3DItems();
+		try {
+			if (outputPath.getParent() != null) {
+				Files.createDirectories(outputPath.getParent());
+			}
+			PngStreamWriter png = writer = new PngStreamWriter(outputPath, exportWidth, exportHeight);
+
+			setupCamera(rotX, rotY, zoom, panX, panY, aspect);
+			cameraSet = true;
+			Lighting.setupFor3DItems();
+			finishMeshing();
+
+			float range = getOrthoRange(zoom);
+			float left = -range * aspect;
+			float width = range * aspect * 2f;
+			float top = range;
+			float height = range * 2f;
+
+			byte[][] bands = {new byte[exportWidth * tileHeight * 4], new byte[exportWidth * tileHeight * 4]};
+			List<CompletableFuture<Void>> bandWrites = new ArrayList<>(List.of(writing, writing));
+			MultiBufferSource.BufferSource bufferSource = mc.renderBuffers().bufferSource();
+
+			for (int y0 = 0, band = 0; y0 < exportHeight; y0 += tileHeight, band ^= 1) {
+				int rows = Math.min(tileHeight, exportHeight - y0);
+				byte[] bandPixels = bands[band];
+				bandWrites.get(band).join();
+
+				for (int x0 = 0; x0 < exportWidth; x0 += tileWidth) {
+					int cols = Math.min(tileWidth, exportWidth - x0);
+
+					Matrix4f ortho = new Matrix4f().ortho(
+							left + width * x0 / exportWidth,
+							left + width * (x0 + cols) / exportWidth,
+							top - height * (y0 + rows) / exportHeight,
+							top - height * y0 / exportHeight,
+							0.01f, 400f
+					);
+					RenderSystem.setProjectionMatrix(ortho, VertexSorting.ORTHOGRAPHIC_Z);
+
+					fbo.clear(Minecraft.ON_OSX);
+					fbo.bindWrite(false);
+					RenderSystem.viewport(0, 0, cols, rows);
+					RenderSystem.enableBlend();
+					RenderSystem.blendFuncSeparate(
+							GlStateManager.SourceFactor.SRC_ALPHA,
+							GlStateManager.DestFactor.ONE_MINUS_SRC_ALPHA,
+							GlStateManager.SourceFactor.ONE,
+							GlStateManager.DestFactor.ONE_MINUS_SRC_ALPHA
+					);
+					RenderSystem.enableDepthTest();
+
+					renderScene(new PoseStack(), bufferSource);
+					bufferSource.endBatch();
+
+					tilePixels.clear();
+					GL11.glReadPixels(0, 0, cols, rows, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, tilePixels);
+					for (int row = 0; row < rows; row++) {
+						tilePixels.get(row * cols * 4, bandPixels, ((rows - 1 - row) * exportWidth + x0) * 4, cols * 4);
+					}
+				}
 
-		MultiBufferSource.BufferSource bufferSource = mc.renderBuffers().bufferSource();
-		renderScene(new PoseStack(), bufferSource);
-		bufferSource.endBatch();
+				writing = writing.thenRunAsync(() -> writeBand(png, bandPixels, rows, exportWidth), Util.ioPool());
+				bandWrites.set(band, writing);
+			}
 
-		NativeImage image;
-		try {
-			image = new NativeImage(exportWidth, exportHeight, false);
-			RenderSystem.bindTexture(fbo.getColorTextureId());
-			image.downloadTexture(0, false);
-			image.flipY();
-		} catch (OutOfMemoryError error) {
-			NebulaLibs.LOGGER.error("Export failed: resolution {}x{} is too large, out of memory", exportWidth, exportHeight);
-			teardownCamera();
+			writing = writing.thenRunAsync(() -> {
+				try {
+					png.close();
+				} catch (IOException exception) {
+					throw new UncheckedIOException(exception);
+				}
+			}, Util.ioPool());
+		} catch (IOException | RuntimeException | OutOfMemoryError error) {
+			PngStreamWriter failed = writer;
+			writing = writing.handle((ignored, previous) -> {
+				closeQuietly(failed);
+				throw new CompletionException(error);
+			});
+		} finally {
+			if (cameraSet) {
+				teardownCamera();
+			}
+			RenderSystem.disableBlend();
+			RenderSystem.setProjectionMatrix(savedProj, VertexSorting.ORTHOGRAPHIC_Z);
 			fbo.destroyBuffers();
+			MemoryUtil.memFree(tilePixels);
 			restoreMainTarget(mc);
-			onError.accept(new RuntimeException("Resolution too large, out of memory. Try a smaller value."));
-			return;
 		}
 
-		teardownCamera();
-		fbo.destroyBuffers();
-		restoreMainTarget(mc);
+		writing.whenComplete((ignored, error) -> {
+			if (error == null) {
+				mc.execute(() -> onSuccess.accept(outputPath));
+				return;
+			}
 
-		CompletableFuture.runAsync(() -> {
+			Throwable cause = unwrap(error);
+			NebulaLibs.LOGGER.error("Export failed: {}x{}", exportWidth, exportHeight, cause);
 			try {
-				if (outputPath.getParent() != null) {
-					outputPath.getParent().toFile().mkdirs();
-				}
-				image.writeToFile(outputPath);
-				image.close();
-				mc.execute(() -> onSuccess.accept(outputPath));
-			} catch (Exception exception) {
-				NebulaLibs.LOGGER.error("Export failed", exception);
-				image.close();
-				mc.execute(() -> onError.accept(exception));
+				Files.deleteIfExists(outputPath);
+			} catch (IOException ignoredException) {
 			}
+			Exception exception = cause instanceof Exception e ? e : new RuntimeException("Resolution too large, out of memory. Try a smaller value.", cause);
+			mc.execute(() -> onError.accept(exception));
 		});
 	}
 
+	private static void writeBand(PngStreamWriter writer, byte[] band, int rows, int width) {
+		try {
+			for (int row = 0; row < rows; row++) {
+				writer.writeRow(band, row * width * 4);
+			}
+		} catch (IOException exception) {
+			throw new UncheckedIOException(exception);
+		}
+	}
+
+	private static void closeQuietly(@Nullable PngStreamWriter writer) {
+		if (writer == null) {
+			return;
+		}
+		try {
+			writer.close();
+		} catch (IOException ignored) {
+		}
+	}
+
+	private static Throwable unwrap(Throwable error) {
+		while ((error instanceof CompletionException || error instanceof UncheckedIOException) && error.getCause() != null) {
+			error = error.getCause();
+		}
+		return error;
+	}
+
 	// 摄像机设置/恢复
 
-	private void setupCamera(float rotX, float rotY, float zoom, float panX, float panY, float aspect) {
+	private float getOrthoRange(float zoom) {
 		float dim = Math.max(scene.getMaxDimension(), 1f);
-		float orthoRange = dim / zoom * 0.7f;
+		return dim / zoom * 0.7f;
+	}
+
+	private void setupCamera(float rotX, float rotY, float zoom, float panX, float panY, float aspect) {
+		float orthoRange = getOrthoRange(zoom);
 
 		Matrix4f ortho = new Matrix4f().ortho(
 				-orthoRange * aspect, orthoRange * aspect,
@@ -235,22 +397,22 @@ public class StructureRenderer implements AutoCloseable {
 
 	private void renderScene(PoseStack stack, MultiBufferSource.BufferSource source) {
 		Minecraft mc = Minecraft.getInstance();
-		BlockRenderDispatcher dispatcher = mc.getBlockRenderer();
 
 		Frustum savedFrustum = disableFrustumCulling();
 
-		if (!vbosBuilt) {
-			buildVBOs(dispatcher);
+		if (!meshingStarted) {
+			startMeshing();
 		}
-		buildTranslucentBlockVBO(dispatcher);
+		pumpMeshing();
+		resortTranslucentSections();
 
 		drawBlockVBOs();
-		drawTranslucentBlockVBO();
+		drawTranslucentBlockVBOs();
 
 		renderBlockEntities(mc, source);
 		source.endBatch();
 
-		drawFluidVBO();
+		drawFluidVBOs();
 
 		renderEntities(stack, mc, source);
 		source.endBatch();
@@ -258,191 +420,414 @@ public class StructureRenderer implements AutoCloseable {
 		restoreFrustumCulling(savedFrustum);
 	}
 
-	// VBO 构建与绘制
+	// 分区网格构建
 
-	private void buildVBOs(BlockRenderDispatcher dispatcher) {
-		PoseStack poseStack = new PoseStack();
-		RandomSource random = RandomSource.create();
-		ModelBlockRenderer modelRenderer = dispatcher.getModelRenderer();
-		ModelBlockRenderer.enableCaching();
-
-		Map<RenderType, BufferBuilder> builders = new HashMap<>();
-		for (RenderType renderType : RenderType.chunkBufferLayers()) {
-			if (renderType == RenderType.translucent()) {
-				continue;
+	/**
+	 * 按 16³ 分区整理场景中的方块, 全部加入待构建队列
+	 */
+	private void startMeshing() {
+		scene.forEachBlock((index, x, y, z, state) -> {
+			int sectionX = SectionPos.blockToSectionCoord(x);
+			int sectionY = SectionPos.blockToSectionCoord(y);
+			int sectionZ = SectionPos.blockToSectionCoord(z);
+			long key = SectionPos.asLong(sectionX, sectionY, sectionZ);
+			StructureSection section = sections.get(key);
+			if (section == null) {
+				section = new StructureSection(SectionPos.of(sectionX, sectionY, sectionZ));
+				sections.put(key, section);
 			}
-			BufferBuilder builder = new BufferBuilder(256 * 1024);
-			builder.begin(VertexFormat.Mode.QUADS, DefaultVertexFormat.BLOCK);
-			builders.put(renderType, builder);
+			section.addBlock(index);
+		});
+
+		for (StructureSection section : sections.values()) {
+			section.setQueued(true);
+			pendingSections.add(section);
 		}
+		meshingStarted = true;
+	}
 
-		forEachModelBlock((pos, state) -> {
-			ModelData modelData = getModelData(pos, state, dispatcher);
-			BakedModel model = new ExporterCulledBakedModel(dispatcher.getBlockModel(state), virtualLevel, pos, state);
-			random.setSeed(state.getSeed(pos));
+	/**
+	 * 标记某个方块所在及相邻的分区需要重建
+	 *
+	 * <p>
+	 * 只重建受影响的分区, 其余分区的顶点缓冲保持不变
+	 * </p>
+	 */
+	public void markDirty(BlockPos pos) {
+		if (!meshingStarted) {
+			return;
+		}
 
-			for (RenderType renderType : model.getRenderTypes(state, random, modelData)) {
-				BufferBuilder builder = builders.get(renderType);
-				if (builder == null) {
-					continue;
-				}
+		markSectionDirty(pos);
+		for (Direction direction : Direction.values()) {
+			markSectionDirty(pos.relative(direction));
+		}
+	}
 
-				poseStack.pushPose();
-				poseStack.translate(pos.getX(), pos.getY(), pos.getZ());
+	private void markSectionDirty(BlockPos pos) {
+		StructureSection section = sections.get(SectionPos.asLong(
+				SectionPos.blockToSectionCoord(pos.getX()),
+				SectionPos.blockToSectionCoord(pos.getY()),
+				SectionPos.blockToSectionCoord(pos.getZ())
+		));
+		if (section == null) {
+			return;
+		}
 
-				modelRenderer.tesselateBlock(
-						virtualLevel, model, state, pos, poseStack, builder,
-						true, random, state.getSeed(pos),
-						OverlayTexture.NO_OVERLAY, modelData, renderType
-				);
+		section.invalidate();
+		if (!section.isQueued()) {
+			section.setQueued(true);
+			pendingSections.add(section);
+		}
+	}
 
-				poseStack.popPose();
+	/**
+	 * 上传已完成的分区, 并在有空闲缓冲时提交新的构建任务
+	 *
+	 * <p>
+	 * 只在渲染线程调用; 每帧都会调用, 预览随分区完成逐步显示
+	 * </p>
+	 */
+	private void pumpMeshing() {
+		SectionMesh mesh;
+		while ((mesh = completedMeshes.poll()) != null) {
+			inFlightMeshes--;
+			if (mesh.generation() == mesh.section().getGeneration()) {
+				uploadMesh(mesh);
+			} else {
+				mesh.release();
 			}
-		});
+			FREE_BUFFERS.add(mesh.buffers());
+		}
 
-		for (Map.Entry<RenderType, BufferBuilder> entry : builders.entrySet()) {
-			BufferBuilder.RenderedBuffer rendered = entry.getValue().endOrDiscardIfEmpty();
-			if (rendered != null) {
-				VertexBuffer vbo = new VertexBuffer(VertexBuffer.Usage.STATIC);
-				vbo.bind();
-				vbo.upload(rendered);
-				blockVBOs.put(entry.getKey(), vbo);
+		while (!pendingSections.isEmpty()) {
+			SectionBuffers buffers = acquireBuffers();
+			if (buffers == null) {
+				break;
 			}
-		}
-		VertexBuffer.unbind();
 
-		ModelBlockRenderer.clearCache();
+			StructureSection section = pendingSections.poll();
+			section.setQueued(false);
+			submitMesh(section, buffers);
+		}
+	}
 
-		buildFluidVBO(dispatcher);
+	/**
+	 * 已上传的分区比例 {@code [0, 1]}, 尚未开始构建时为 0
+	 */
+	public float getMeshingProgress() {
+		if (!meshingStarted) {
+			return 0f;
+		}
+		if (sections.isEmpty()) {
+			return 1f;
+		}
+		return 1f - (float) (pendingSections.size() + inFlightMeshes) / sections.size();
+	}
 
-		vbosBuilt = true;
+	public boolean isMeshingComplete() {
+		return meshingStarted && pendingSections.isEmpty() && inFlightMeshes == 0;
 	}
 
-	private void buildTranslucentBlockVBO(BlockRenderDispatcher dispatcher) {
-		if (translucentBlockVBO != null) {
-			translucentBlockVBO.close();
-			translucentBlockVBO = null;
+	/**
+	 * 阻塞直到所有分区构建并上传完成, 用于导出
+	 */
+	private void finishMeshing() {
+		if (!meshingStarted) {
+			startMeshing();
 		}
 
-		PoseStack poseStack = new PoseStack();
-		RandomSource random = RandomSource.create();
-		ModelBlockRenderer modelRenderer = dispatcher.getModelRenderer();
-		BufferBuilder builder = new BufferBuilder(256 * 1024);
-		builder.begin(VertexFormat.Mode.QUADS, DefaultVertexFormat.BLOCK);
-
-		forEachModelBlock((pos, state) -> {
-			ModelData modelData = getModelData(pos, state, dispatcher);
-			BakedModel model = new ExporterCulledBakedModel(dispatcher.getBlockModel(state), virtualLevel, pos, state);
-			random.setSeed(state.getSeed(pos));
-			if (!model.getRenderTypes(state, random, modelData).contains(RenderType.translucent())) {
-				return;
-			}
+		pumpMeshing();
+		while (inFlightMeshes > 0 || !pendingSections.isEmpty()) {
+			LockSupport.parkNanos(1000000L);
+			pumpMeshing();
+		}
+	}
 
-			poseStack.pushPose();
-			poseStack.translate(pos.getX(), pos.getY(), pos.getZ());
-			modelRenderer.tesselateBlock(
-					virtualLevel, model, state, pos, poseStack, builder,
-					true, random, state.getSeed(pos),
-					OverlayTexture.NO_OVERLAY, modelData, RenderType.translucent()
-			);
-			poseStack.popPose();
-		});
+	@Nullable
+	private static SectionBuffers acquireBuffers() {
+		SectionBuffers buffers = FREE_BUFFERS.poll();
+		if (buffers != null) {
+			return buffers;
+		}
 
-		builder.setQuadSorting(createTranslucentSorting());
-		BufferBuilder.RenderedBuffer rendered = builder.endOrDiscardIfEmpty();
-		if (rendered != null) {
-			translucentBlockVBO = new VertexBuffer(VertexBuffer.Usage.STATIC);
-			translucentBlockVBO.bind();
-			translucentBlockVBO.upload(rendered);
-			VertexBuffer.unbind();
+		if (ALLOCATED_BUFFERS.getAndIncrement() < MAX_BUFFERS) {
+			return new SectionBuffers();
 		}
+		ALLOCATED_BUFFERS.decrementAndGet();
+		return null;
 	}
 
-	private VertexSorting createTranslucentSorting() {
+	/**
+	 * 在渲染线程采集模型数据后, 把分区交给后台线程构建
+	 *
+	 * <p>
+	 * 与原版区块构建相同, {@link ModelData} 在渲染线程获取, 后台线程只读取虚拟世界中的方块状态
+	 * </p>
+	 */
+	private void submitMesh(StructureSection section, SectionBuffers buffers) {
+		BlockRenderDispatcher dispatcher = Minecraft.getInstance().getBlockRenderer();
+		Int2ObjectMap<ModelData> modelData = new Int2ObjectOpenHashMap<>();
+		IntList indices = section.getIndices();
+		for (int i = 0; i < indices.size(); i++) {
+			int index = indices.getInt(i);
+			BlockState state = virtualLevel.getBlockState(index);
+			if (state.getRenderShape() == RenderShape.MODEL && state.hasBlockEntity()) {
+				modelData.put(index, getModelData(scene.posOf(index), state, dispatcher));
+			}
+		}
+
+		int generation = section.getGeneration();
 		Matrix4f modelView = new Matrix4f(RenderSystem.getModelViewMatrix());
-		return VertexSorting.byDistance(center -> {
-			Vector3f transformed = new Vector3f(center);
-			modelView.transformPosition(transformed);
-			return -transformed.z();
+
+		inFlightMeshes++;
+		Util.backgroundExecutor().execute(() -> {
+			completedMeshes.add(buildMesh(section, generation, modelData, modelView, buffers));
+			if (closed) {
+				discardCompletedMeshes();
+			}
 		});
 	}
 
-	private void forEachSceneBlock(BiConsumer<BlockPos, BlockState> consumer) {
-		for (Map.Entry<BlockPos, BlockState> entry : scene.getBlocks().entrySet()) {
-			consumer.accept(entry.getKey(), entry.getValue());
+	/**
+	 * 构建单个分区的网格, 在后台线程运行
+	 */
+	private SectionMesh buildMesh(StructureSection section, int generation, Int2ObjectMap<ModelData> modelData, Matrix4f modelView, SectionBuffers buffers) {
+		BlockRenderDispatcher dispatcher = Minecraft.getInstance().getBlockRenderer();
+		ModelBlockRenderer modelRenderer = dispatcher.getModelRenderer();
+		PoseStack poseStack = new PoseStack();
+		RandomSource random = RandomSource.create();
+
+		buffers.begin();
+		ModelBlockRenderer.enableCaching();
+		try {
+			IntList indices = section.getIndices();
+			for (int i = 0; i < indices.size(); i++) {
+				int index = indices.getInt(i);
+				BlockState state = virtualLevel.getBlockState(index);
+				BlockPos pos = scene.posOf(index);
+
+				if (state.getRenderShape() == RenderShape.MODEL) {
+					ModelData data = modelData.get(index);
+					if (data == null) {
+						data = dispatcher.getBlockModel(state).getModelData(virtualLevel, pos, state, ModelData.EMPTY);
+					}
+					BakedModel model = new ExporterCulledBakedModel(dispatcher.getBlockModel(state), virtualLevel, pos, state);
+					random.setSeed(state.getSeed(pos));
+
+					for (RenderType renderType : model.getRenderTypes(state, random, data)) {
+						BufferBuilder builder = buffers.blocks.get(renderType);
+						if (builder == null) {
+							continue;
+						}
+
+						poseStack.pushPose();
+						poseStack.translate(pos.getX(), pos.getY(), pos.getZ());
+
+						modelRenderer.tesselateBlock(
+								virtualLevel, model, state, pos, poseStack, builder,
+								true, random, state.getSeed(pos),
+								OverlayTexture.NO_OVERLAY, data, renderType
+						);
+
+						poseStack.popPose();
+					}
+				}
+
+				FluidState fluidState = state.getFluidState();
+				if (!fluidState.isEmpty()) {
+					int chunkBaseX = pos.getX() & ~15;
+					int chunkBaseY = pos.getY() & ~15;
+					int chunkBaseZ = pos.getZ() & ~15;
+
+					VertexConsumer buffer = (chunkBaseX | chunkBaseY | chunkBaseZ) == 0
+							? buffers.fluid
+							: new OffsetVertexConsumer(buffers.fluid, chunkBaseX, chunkBaseY, chunkBaseZ);
+
+					dispatcher.renderLiquid(pos, virtualLevel, buffer, state, fluidState);
+				}
+			}
+		} catch (Exception exception) {
+			NebulaLibs.LOGGER.error("Failed to build structure section {}", section.getOrigin(), exception);
+			buffers.endAndRelease();
+			return new SectionMesh(section, generation, buffers, Map.of(), null, null, new Vector3f(), null);
+		} finally {
+			ModelBlockRenderer.clearCache();
 		}
+
+		Map<RenderType, BufferBuilder.RenderedBuffer> blocks = new HashMap<>();
+		for (Map.Entry<RenderType, BufferBuilder> entry : buffers.blocks.entrySet()) {
+			if (entry.getKey() == RenderType.translucent()) {
+				continue;
+			}
+			BufferBuilder.RenderedBuffer rendered = entry.getValue().endOrDiscardIfEmpty();
+			if (rendered != null) {
+				blocks.put(entry.getKey(), rendered);
+			}
+		}
+
+		BufferBuilder translucent = buffers.blocks.get(RenderType.translucent());
+		translucent.setQuadSorting(createTranslucentSorting(modelView));
+		BufferBuilder.SortState sortState = translucent.getSortState();
+		BufferBuilder.RenderedBuffer translucentRendered = translucent.endOrDiscardIfEmpty();
+		Vector3f sortDirection = getViewDirection(modelView, new Vector3f());
+
+		return new SectionMesh(section, generation, buffers, blocks, translucentRendered, sortState, sortDirection, buffers.fluid.endOrDiscardIfEmpty());
 	}
 
-	private void forEachModelBlock(BiConsumer<BlockPos, BlockState> consumer) {
-		forEachSceneBlock((pos, state) -> {
-			if (state.getRenderShape() == RenderShape.MODEL) {
-				consumer.accept(pos, state);
+	private void uploadMesh(SectionMesh mesh) {
+		StructureSection section = mesh.section();
+		for (RenderType renderType : RenderType.chunkBufferLayers()) {
+			if (renderType != RenderType.translucent()) {
+				section.uploadBlocks(renderType, mesh.blocks().get(renderType));
 			}
-		});
+		}
+		section.uploadTranslucent(mesh.translucent(), mesh.translucentSortState(), mesh.translucentSortDirection());
+		section.uploadFluid(mesh.fluid());
+		translucentOrderDirty = true;
 	}
 
-	private void buildFluidVBO(BlockRenderDispatcher dispatcher) {
-		BufferBuilder builder = new BufferBuilder(256 * 1024);
-		builder.begin(VertexFormat.Mode.QUADS, DefaultVertexFormat.BLOCK);
+	private void discardCompletedMeshes() {
+		SectionMesh mesh;
+		while ((mesh = completedMeshes.poll()) != null) {
+			mesh.release();
+			FREE_BUFFERS.add(mesh.buffers());
+		}
+	}
 
-		forEachSceneBlock((pos, state) -> {
-			FluidState fluidState = state.getFluidState();
+	// 半透明排序
 
-			if (fluidState.isEmpty()) {
-				return;
+	/**
+	 * 视线方向变化超过阈值时重新排序半透明层
+	 *
+	 * <p>
+	 * 顶点数据只在构建分区时生成一次并保留在显存中,
+	 * 这里根据保存的四边形中心点重新计算索引顺序, 并只上传索引缓冲;
+	 * 分区之间按中心点深度从远到近绘制.
+	 * 正交投影下排序结果只取决于视线方向, 平移与缩放不会触发重排
+	 * </p>
+	 */
+	private void resortTranslucentSections() {
+		Vector3f direction = getViewDirection(RenderSystem.getModelViewMatrix(), new Vector3f());
+
+		if (translucentOrderDirty || direction.dot(translucentSortDirection) < TRANSLUCENT_RESORT_COS) {
+			translucentOrderDirty = false;
+			translucentSortDirection.set(direction);
+
+			translucentSections.clear();
+			for (StructureSection section : sections.values()) {
+				if (section.getTranslucentVBO() != null) {
+					translucentSections.add(section);
+				}
 			}
+			translucentSections.sort(Comparator.comparingDouble((section) -> direction.dot(section.getCenter())));
+		}
 
-			int chunkBaseX = pos.getX() & ~15;
-			int chunkBaseY = pos.getY() & ~15;
-			int chunkBaseZ = pos.getZ() & ~15;
+		for (StructureSection section : translucentSections) {
+			if (direction.dot(section.getTranslucentSortDirection()) < TRANSLUCENT_RESORT_COS) {
+				resortTranslucentSection(section, direction);
+			}
+		}
+	}
 
-			VertexConsumer buffer = (chunkBaseX | chunkBaseY | chunkBaseZ) == 0
-					? builder
-					: new OffsetVertexConsumer(builder, chunkBaseX, chunkBaseY, chunkBaseZ);
+	private void resortTranslucentSection(StructureSection section, Vector3f direction) {
+		VertexBuffer vbo = section.getTranslucentVBO();
+		BufferBuilder.SortState sortState = section.getTranslucentSortState();
+		if (vbo == null || sortState == null) {
+			return;
+		}
 
-			dispatcher.renderLiquid(pos, virtualLevel, buffer, state, fluidState);
+		if (translucentSortBuilder == null) {
+			translucentSortBuilder = new BufferBuilder(4 * 1024);
+		}
+		BufferBuilder builder = translucentSortBuilder;
+		builder.begin(VertexFormat.Mode.QUADS, DefaultVertexFormat.BLOCK);
+		builder.restoreSortState(sortState);
+		builder.setQuadSorting(createTranslucentSorting(RenderSystem.getModelViewMatrix()));
+		section.setTranslucentSortState(builder.getSortState());
+		section.getTranslucentSortDirection().set(direction);
+
+		vbo.bind();
+		vbo.upload(builder.end());
+		VertexBuffer.unbind();
+	}
+
+	private static VertexSorting createTranslucentSorting(Matrix4f matrix) {
+		Matrix4f modelView = new Matrix4f(matrix);
+		return VertexSorting.byDistance(center -> {
+			Vector3f transformed = new Vector3f(center);
+			modelView.transformPosition(transformed);
+			return -transformed.z();
 		});
+	}
 
-		BufferBuilder.RenderedBuffer rendered = builder.endOrDiscardIfEmpty();
-		if (rendered != null) {
-			fluidVBO = new VertexBuffer(VertexBuffer.Usage.STATIC);
-			fluidVBO.bind();
-			fluidVBO.upload(rendered);
-			VertexBuffer.unbind();
-		}
+	/**
+	 * 模型视图矩阵对应的视线方向(观察空间 z 轴在世界空间中的方向)
+	 */
+	private static Vector3f getViewDirection(Matrix4f modelView, Vector3f dest) {
+		return dest.set(modelView.m02(), modelView.m12(), modelView.m22()).normalize();
 	}
 
+	// VBO 绘制
+
 	private void drawBlockVBOs() {
-		for (Map.Entry<RenderType, VertexBuffer> entry : blockVBOs.entrySet()) {
-			RenderType renderType = entry.getKey();
-			VertexBuffer vbo = entry.getValue();
+		for (RenderType renderType : RenderType.chunkBufferLayers()) {
+			if (renderType == RenderType.translucent()) {
+				continue;
+			}
 
-			renderType.setupRenderState();
-			vbo.bind();
-			vbo.drawWithShader(
-					RenderSystem.getModelViewMatrix(),
-					RenderSystem.getProjectionMatrix(),
-					RenderSystem.getShader()
-			);
-			VertexBuffer.unbind();
-			renderType.clearRenderState();
+			boolean setup = false;
+			for (StructureSection section : sections.values()) {
+				VertexBuffer vbo = section.getBlockVBO(renderType);
+				if (vbo == null) {
+					continue;
+				}
+				if (!setup) {
+					renderType.setupRenderState();
+					setup = true;
+				}
+				drawVertexBuffer(vbo);
+			}
+			if (setup) {
+				renderType.clearRenderState();
+			}
 		}
 	}
 
-	private void drawTranslucentBlockVBO() {
-		drawVertexBuffer(translucentBlockVBO, RenderType.translucent());
-	}
+	private void drawTranslucentBlockVBOs() {
+		if (translucentSections.isEmpty()) {
+			return;
+		}
 
-	private void drawFluidVBO() {
-		drawVertexBuffer(fluidVBO, RenderType.translucent());
+		RenderType.translucent().setupRenderState();
+		for (StructureSection section : translucentSections) {
+			VertexBuffer vbo = section.getTranslucentVBO();
+			if (vbo != null) {
+				drawVertexBuffer(vbo);
+			}
+		}
+		RenderType.translucent().clearRenderState();
 	}
 
-	private void drawVertexBuffer(@Nullable VertexBuffer vbo, RenderType renderType) {
-		if (vbo == null) {
-			return;
+	private void drawFluidVBOs() {
+		boolean setup = false;
+		for (StructureSection section : sections.values()) {
+			VertexBuffer vbo = section.getFluidVBO();
+			if (vbo == null) {
+				continue;
+			}
+			if (!setup) {
+				RenderType.translucent().setupRenderState();
+				setup = true;
+			}
+			drawVertexBuffer(vbo);
+		}
+		if (setup) {
+			RenderType.translucent().clearRenderState();
 		}
+	}
 
-		renderType.setupRenderState();
+	private static void drawVertexBuffer(VertexBuffer vbo) {
 		vbo.bind();
 		vbo.drawWithShader(
 				RenderSystem.getModelViewMatrix(),
@@ -450,33 +835,79 @@ public class StructureRenderer implements AutoCloseable {
 				RenderSystem.getShader()
 		);
 		VertexBuffer.unbind();
-		renderType.clearRenderState();
 	}
 
 	// VBO 资源管理
 
 	private void releaseVBOs() {
-		for (VertexBuffer vbo : blockVBOs.values()) {
-			vbo.close();
+		for (StructureSection section : sections.values()) {
+			section.close();
 		}
-		blockVBOs.clear();
+		sections.clear();
+		translucentSections.clear();
+		pendingSections.clear();
+		meshingStarted = false;
+	}
 
-		if (translucentBlockVBO != null) {
-			translucentBlockVBO.close();
-			translucentBlockVBO = null;
+	@Override
+	public void close() {
+		closed = true;
+		discardCompletedMeshes();
+		releaseVBOs();
+	}
+
+	/**
+	 * 一个分区各渲染层使用的 {@link BufferBuilder}, 在所有预览之间复用
+	 */
+	private static final class SectionBuffers {
+		private final Map<RenderType, BufferBuilder> blocks = new HashMap<>();
+		private final BufferBuilder fluid = new BufferBuilder(RenderType.translucent().bufferSize());
+
+		private SectionBuffers() {
+			for (RenderType renderType : RenderType.chunkBufferLayers()) {
+				blocks.put(renderType, new BufferBuilder(renderType.bufferSize()));
+			}
 		}
 
-		if (fluidVBO != null) {
-			fluidVBO.close();
-			fluidVBO = null;
+		private void begin() {
+			for (BufferBuilder builder : blocks.values()) {
+				builder.begin(VertexFormat.Mode.QUADS, DefaultVertexFormat.BLOCK);
+			}
+			fluid.begin(VertexFormat.Mode.QUADS, DefaultVertexFormat.BLOCK);
+		}
+
+		private void endAndRelease() {
+			for (BufferBuilder builder : blocks.values()) {
+				release(builder.endOrDiscardIfEmpty());
+			}
+			release(fluid.endOrDiscardIfEmpty());
 		}
 
-		vbosBuilt = false;
+		private static void release(@Nullable BufferBuilder.RenderedBuffer rendered) {
+			if (rendered != null) {
+				rendered.release();
+			}
+		}
 	}
 
-	@Override
-	public void close() {
-		releaseVBOs();
+	/**
+	 * 后台线程构建完成的分区网格, 由渲染线程上传
+	 */
+	private record SectionMesh(
+			StructureSection section,
+			int generation,
+			SectionBuffers buffers,
+			Map<RenderType, BufferBuilder.RenderedBuffer> blocks,
+			@Nullable BufferBuilder.RenderedBuffer translucent,
+			@Nullable BufferBuilder.SortState translucentSortState,
+			Vector3f translucentSortDirection,
+			@Nullable BufferBuilder.RenderedBuffer fluid
+	) {
+		private void release() {
+			blocks.values().forEach(BufferBuilder.RenderedBuffer::release);
+			SectionBuffers.release(translucent);
+			SectionBuffers.release(fluid);
+		}
 	}
 
 	// 方块数据辅助
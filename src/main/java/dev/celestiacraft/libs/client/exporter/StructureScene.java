@@ -1,31 +1,76 @@
 package dev.celestiacraft.libs.client.exporter;
 
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import lombok.AccessLevel;
 import lombok.Getter;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.registries.BuiltInRegistries;
 import net.minecraft.nbt.*;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.util.Mth;
+import net.minecraft.util.SimpleBitStorage;
 import net.minecraft.world.level.block.Blocks;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.phys.Vec3;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 
+/**
+ * 结构文件的方块数据
+ *
+ * <p>
+ * 方块以调色板索引保存在覆盖整个包围盒的位压缩数组中, 方块实体 NBT 只保存在稀疏表中:
+ * </p>
+ *
+ * <ul>
+ *     <li>调色板第 0 项固定为空气, 其后依次为文件中的调色板</li>
+ *     <li>每个方块占 {@code ceil(log2(调色板大小))} 位, 不再为每个方块创建 {@link BlockPos} 与哈希节点</li>
+ *     <li>索引顺序为 x 最快, 其次 z, 最后 y, 见 {@link #indexOf(int, int, int)}</li>
+ * </ul>
+ */
 @Getter
 public class StructureScene {
 	public record EntityInfo(Vec3 pos, CompoundTag nbt) {
 	}
 
-	private final Map<BlockPos, BlockState> blocks = new HashMap<>();
-	private final Map<BlockPos, CompoundTag> blockEntityNbt = new HashMap<>();
+	/**
+	 * 按索引遍历方块时的回调
+	 */
+	@FunctionalInterface
+	public interface BlockVisitor {
+		void accept(int index, int x, int y, int z, BlockState state);
+	}
+
+	@Getter(AccessLevel.NONE)
+	private final List<BlockState> palette = new ArrayList<>();
+	@Getter(AccessLevel.NONE)
+	private final Reference2IntMap<BlockState> paletteIds = new Reference2IntOpenHashMap<>();
+	@Getter(AccessLevel.NONE)
+	@Nullable
+	private SimpleBitStorage storage;
+	@Getter(AccessLevel.NONE)
+	@Nullable
+	private int[] paletteMapping;
+	@Getter(AccessLevel.NONE)
+	private boolean sizeKnown;
+	@Getter(AccessLevel.NONE)
+	private final Int2ObjectMap<CompoundTag> blockEntityNbt = new Int2ObjectOpenHashMap<>();
 	private final List<EntityInfo> entities = new ArrayList<>();
 	private final Set<String> missingBlocks = new LinkedHashSet<>();
 
 	private int sizeX;
 	private int sizeY;
 	private int sizeZ;
+	private int volume;
+	private int blockCount;
 
 	private float centerX;
 	private float centerY;
@@ -37,69 +82,237 @@ public class StructureScene {
 	}
 
 	public static StructureScene loadFromFile(Path path) throws IOException {
-		CompoundTag root = NbtIo.readCompressed(path.toFile());
+		return loadFromFile(path, null);
+	}
 
+	/**
+	 * 读取结构文件, 并向加载任务报告 {@link StructureLoadTask.Stage#READING} 与
+	 * {@link StructureLoadTask.Stage#RESOLVING} 阶段的进度
+	 *
+	 * @throws java.util.concurrent.CancellationException 加载任务已被取消
+	 */
+	public static StructureScene loadFromFile(Path path, @Nullable StructureLoadTask task) throws IOException {
 		StructureScene scene = new StructureScene();
-		scene.parse(root);
+		try (InputStream in = Files.newInputStream(path)) {
+			new StructureNbtReader(scene, task).read(task == null ? in : task.track(in, Files.size(path)));
+		}
 
 		return scene;
 	}
 
+	// 索引访问
+
+	public boolean isInside(int x, int y, int z) {
+		return x >= 0 && y >= 0 && z >= 0 && x < sizeX && y < sizeY && z < sizeZ;
+	}
+
+	public int indexOf(int x, int y, int z) {
+		return (y * sizeZ + z) * sizeX + x;
+	}
+
+	public BlockPos posOf(int index) {
+		int x = index % sizeX;
+		int rest = index / sizeX;
+		return new BlockPos(x, rest / sizeZ, rest % sizeZ);
+	}
+
+	public BlockState getBlockState(int index) {
+		return palette.get(storage.get(index));
+	}
+
+	public BlockState getBlockState(int x, int y, int z) {
+		if (!isInside(x, y, z)) {
+			return Blocks.AIR.defaultBlockState();
+		}
+		return getBlockState(indexOf(x, y, z));
+	}
+
+	public BlockState getBlockState(BlockPos pos) {
+		return getBlockState(pos.getX(), pos.getY(), pos.getZ());
+	}
+
+	/**
+	 * 修改某个位置的方块, 调色板中没有的状态会追加到调色板末尾
+	 */
+	public void setBlockState(int index, BlockState state) {
+		int previous = storage.get(index);
+		int id = getOrAddPaletteId(state);
+		if (previous == id) {
+			return;
+		}
+
+		storage.set(index, id);
+		if (previous == 0) {
+			blockCount++;
+		} else if (id == 0) {
+			blockCount--;
+		}
+	}
+
+	@Nullable
+	public CompoundTag getBlockEntityNbt(int index) {
+		return blockEntityNbt.get(index);
+	}
+
+	@Nullable
+	public CompoundTag getBlockEntityNbt(BlockPos pos) {
+		if (!isInside(pos.getX(), pos.getY(), pos.getZ())) {
+			return null;
+		}
+		return blockEntityNbt.get(indexOf(pos.getX(), pos.getY(), pos.getZ()));
+	}
+
+	/**
+	 * 按索引顺序遍历所有非空气方块
+	 */
+	public void forEachBlock(BlockVisitor visitor) {
+		int index = 0;
+		for (int y = 0; y < sizeY; y++) {
+			for (int z = 0; z < sizeZ; z++) {
+				for (int x = 0; x < sizeX; x++, index++) {
+					int id = storage.get(index);
+					if (id != 0) {
+						visitor.accept(index, x, y, z, palette.get(id));
+					}
+				}
+			}
+		}
+	}
+
+	private int getOrAddPaletteId(BlockState state) {
+		if (state.isAir()) {
+			return 0;
+		}
+
+		int id = paletteIds.getOrDefault(state, -1);
+		if (id >= 0) {
+			return id;
+		}
+
+		id = palette.size();
+		palette.add(state);
+		paletteIds.put(state, id);
+
+		int bits = getBits(palette.size());
+		if (bits > storage.getBits()) {
+			SimpleBitStorage resized = new SimpleBitStorage(bits, volume);
+			for (int index = 0; index < volume; index++) {
+				resized.set(index, storage.get(index));
+			}
+			storage = resized;
+		}
+		return id;
+	}
+
+	private static int getBits(int paletteSize) {
+		return Math.max(1, Mth.ceillog2(paletteSize));
+	}
+
+	// 由 StructureNbtReader 写入
+
+	void setSize(int x, int y, int z) throws IOException {
+		sizeX = Math.max(0, x);
+		sizeY = Math.max(0, y);
+		sizeZ = Math.max(0, z);
+
+		try {
+			volume = Math.multiplyExact(Math.multiplyExact(sizeX, sizeY), sizeZ);
+		} catch (ArithmeticException exception) {
+			throw new IOException("Structure is too large: " + sizeX + "x" + sizeY + "x" + sizeZ);
+		}
+		sizeKnown = true;
+		createStorage();
+	}
+
+	/**
+	 * 解析文件中的调色板, 之后文件中的状态编号通过 {@link #paletteMapping} 映射到本调色板
+	 */
 	@SuppressWarnings("deprecation")
-	private void parse(CompoundTag root) {
-		ListTag sizeTag = root.getList("size", Tag.TAG_INT);
-		sizeX = sizeTag.getInt(0);
-		sizeY = sizeTag.getInt(1);
-		sizeZ = sizeTag.getInt(2);
+	void setPalette(List<CompoundTag> entries) {
+		paletteMapping = new int[entries.size()];
 
-		ListTag paletteTag = root.getList("palette", Tag.TAG_COMPOUND);
-		BlockState[] palette = new BlockState[paletteTag.size()];
+		palette.add(Blocks.AIR.defaultBlockState());
+		paletteIds.defaultReturnValue(-1);
+		paletteIds.put(Blocks.AIR.defaultBlockState(), 0);
 
-		for (int index = 0; index < paletteTag.size(); index++) {
-			CompoundTag paletteEntry = paletteTag.getCompound(index);
+		for (int index = 0; index < entries.size(); index++) {
+			CompoundTag paletteEntry = entries.get(index);
 			String blockName = paletteEntry.getString("Name");
 			ResourceLocation blockId = ResourceLocation.parse(blockName);
 
+			BlockState state;
 			if (!BuiltInRegistries.BLOCK.containsKey(blockId)) {
-				palette[index] = Blocks.AIR.defaultBlockState();
+				state = Blocks.AIR.defaultBlockState();
 				missingBlocks.add(blockName);
 			} else {
-				palette[index] = NbtUtils.readBlockState(
+				state = NbtUtils.readBlockState(
 						BuiltInRegistries.BLOCK.asLookup(),
 						paletteEntry
 				);
 			}
-		}
 
-		ListTag blocksList = root.getList("blocks", Tag.TAG_COMPOUND);
+			if (state.isAir()) {
+				paletteMapping[index] = 0;
+			} else {
+				paletteMapping[index] = palette.size();
+				palette.add(state);
+				paletteIds.putIfAbsent(state, paletteMapping[index]);
+			}
+		}
+		createStorage();
+	}
 
-		for (int index = 0; index < blocksList.size(); index++) {
+	/**
+	 * 尺寸与调色板都已读取, 可以直接写入方块
+	 */
+	boolean isStorageReady() {
+		return storage != null;
+	}
 
-			CompoundTag entry = blocksList.getCompound(index);
-			ListTag posTag = entry.getList("pos", Tag.TAG_INT);
+	private void createStorage() {
+		if (sizeKnown && paletteMapping != null) {
+			storage = new SimpleBitStorage(getBits(palette.size()), volume);
+		}
+	}
 
-			BlockPos pos = new BlockPos(
-					posTag.getInt(0),
-					posTag.getInt(1),
-					posTag.getInt(2)
-			);
+	/**
+	 * 写入文件中的一个方块, 只能在 {@link #isStorageReady()} 之后调用
+	 *
+	 * @param stateIndex 文件调色板中的编号
+	 */
+	void putBlock(int x, int y, int z, int stateIndex, @Nullable CompoundTag nbt) {
+		if (!isInside(x, y, z)) {
+			return;
+		}
 
-			int stateIndex = entry.getInt("state");
+		int blockIndex = indexOf(x, y, z);
+		int id = stateIndex >= 0 && stateIndex < paletteMapping.length ? paletteMapping[stateIndex] : 0;
 
-			BlockState state;
-			if (stateIndex >= 0 && stateIndex < palette.length) {
-				state = palette[stateIndex];
-			} else {
-				state = Blocks.AIR.defaultBlockState();
+		if (id != 0) {
+			if (storage.get(blockIndex) == 0) {
+				blockCount++;
 			}
+			storage.set(blockIndex, id);
+		}
 
-			if (!state.isAir()) {
-				blocks.put(pos, state);
-			}
+		if (nbt != null) {
+			blockEntityNbt.put(blockIndex, nbt);
+		}
+	}
 
-			if (entry.contains("nbt", Tag.TAG_COMPOUND)) {
-				blockEntityNbt.put(pos, entry.getCompound("nbt"));
-			}
+	void addEntity(EntityInfo entity) {
+		entities.add(entity);
+	}
+
+	/**
+	 * 读取结束, 补全缺失的字段并计算中心点
+	 */
+	void finish() throws IOException {
+		if (!sizeKnown) {
+			setSize(0, 0, 0);
+		}
+		if (paletteMapping == null) {
+			setPalette(List.of());
 		}
 
 		centerX = sizeX / 2f;
@@ -107,29 +320,5 @@ public class StructureScene {
 		centerZ = sizeZ / 2f;
 
 		maxDimension = Math.max(sizeX, Math.max(sizeY, sizeZ));
-
-		if (root.contains("entities", Tag.TAG_LIST)) {
-			ListTag entitiesList = root.getList("entities", Tag.TAG_COMPOUND);
-
-			for (int index = 0; index < entitiesList.size(); index++) {
-				CompoundTag entityEntry = entitiesList.getCompound(index);
-
-				if (!entityEntry.contains("nbt", Tag.TAG_COMPOUND)) {
-					continue;
-				}
-
-				ListTag posTag = entityEntry.getList("pos", Tag.TAG_DOUBLE);
-
-				Vec3 pos = new Vec3(
-						posTag.getDouble(0),
-						posTag.getDouble(1),
-						posTag.getDouble(2)
-				);
-
-				CompoundTag nbt = entityEntry.getCompound("nbt");
-
-				entities.add(new EntityInfo(pos, nbt));
-			}
-		}
 	}
-}
\ No newline at end of file
+}
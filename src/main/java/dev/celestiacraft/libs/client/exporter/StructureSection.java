@@ -0,0 +1,132 @@
+package dev.celestiacraft.libs.client.exporter;
+
+import com.mojang.blaze3d.vertex.BufferBuilder;
+import com.mojang.blaze3d.vertex.VertexBuffer;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import lombok.Getter;
+import lombok.Setter;
+import net.minecraft.client.renderer.RenderType;
+import net.minecraft.core.SectionPos;
+import org.joml.Vector3f;
+
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 结构预览中的一个 16³ 分区
+ *
+ * <p>
+ * 每个分区拥有独立的顶点缓冲, 网格在后台线程构建, 顶点缓冲只在渲染线程上传与绘制.
+ * {@link #generation} 在分区需要重建时递增, 过期的构建结果会被丢弃
+ * </p>
+ */
+final class StructureSection implements AutoCloseable {
+	@Getter
+	private final SectionPos origin;
+	@Getter
+	private final Vector3f center;
+	/**
+	 * 分区内非空气方块在 {@link StructureScene} 中的索引
+	 */
+	@Getter
+	private final IntList indices = new IntArrayList();
+
+	private final Map<RenderType, VertexBuffer> blockVBOs = new HashMap<>();
+	@Getter
+	@Nullable
+	private VertexBuffer translucentVBO;
+	@Getter
+	@Setter
+	@Nullable
+	private BufferBuilder.SortState translucentSortState;
+	@Getter
+	private final Vector3f translucentSortDirection = new Vector3f();
+	@Getter
+	@Nullable
+	private VertexBuffer fluidVBO;
+
+	@Getter
+	private int generation;
+	@Getter
+	@Setter
+	private boolean queued;
+
+	StructureSection(SectionPos origin) {
+		this.origin = origin;
+		this.center = new Vector3f(origin.minBlockX() + 8f, origin.minBlockY() + 8f, origin.minBlockZ() + 8f);
+	}
+
+	void addBlock(int index) {
+		indices.add(index);
+	}
+
+	/**
+	 * 使正在进行的构建结果失效
+	 */
+	void invalidate() {
+		generation++;
+	}
+
+	@Nullable
+	VertexBuffer getBlockVBO(RenderType renderType) {
+		return blockVBOs.get(renderType);
+	}
+
+	void uploadBlocks(RenderType renderType, @Nullable BufferBuilder.RenderedBuffer rendered) {
+		VertexBuffer vbo = upload(blockVBOs.get(renderType), rendered);
+		if (vbo == null) {
+			blockVBOs.remove(renderType);
+		} else {
+			blockVBOs.put(renderType, vbo);
+		}
+	}
+
+	void uploadTranslucent(@Nullable BufferBuilder.RenderedBuffer rendered, @Nullable BufferBuilder.SortState sortState, Vector3f sortDirection) {
+		translucentVBO = upload(translucentVBO, rendered);
+		translucentSortState = translucentVBO == null ? null : sortState;
+		translucentSortDirection.set(sortDirection);
+	}
+
+	void uploadFluid(@Nullable BufferBuilder.RenderedBuffer rendered) {
+		fluidVBO = upload(fluidVBO, rendered);
+	}
+
+	@Nullable
+	private static VertexBuffer upload(@Nullable VertexBuffer vbo, @Nullable BufferBuilder.RenderedBuffer rendered) {
+		if (rendered == null) {
+			if (vbo != null) {
+				vbo.close();
+			}
+			return null;
+		}
+
+		if (vbo == null) {
+			vbo = new VertexBuffer(VertexBuffer.Usage.STATIC);
+		}
+		vbo.bind();
+		vbo.upload(rendered);
+		VertexBuffer.unbind();
+		return vbo;
+	}
+
+	@Override
+	public void close() {
+		for (VertexBuffer vbo : blockVBOs.values()) {
+			vbo.close();
+		}
+		blockVBOs.clear();
+
+		if (translucentVBO != null) {
+			translucentVBO.close();
+			translucentVBO = null;
+		}
+		translucentSortState = null;
+
+		if (fluidVBO != null) {
+			fluidVBO.close();
+			fluidVBO = null;
+		}
+	}
+}
@@ -2,6 +2,8 @@ package dev.celestiacraft.libs.client.exporter;
 
 import dev.celestiacraft.libs.compat.ICheckModLoaded;
 import dev.celestiacraft.libs.compat.mekanism.MekanismTransmitterHelper;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import lombok.Getter;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
@@ -22,10 +24,33 @@ import org.jetbrains.annotations.NotNull;
 import javax.annotation.Nullable;
 import java.util.*;
 
+/**
+ * 结构预览使用的虚拟世界
+ *
+ * <p>
+ * 方块状态保存在覆盖结构包围盒的一维数组中, 索引与 {@link StructureScene#indexOf(int, int, int)} 一致,
+ * 包围盒外的位置直接返回空气; 方块实体按同一索引保存在稀疏表中.
+ * 构建完成后只读, 可以在后台网格构建线程中并发读取
+ * </p>
+ *
+ * <p>
+ * 方块实体只在渲染线程调用 {@link #initAllBlockEntities()} 时创建; 在此之前或之后,
+ * {@link #getBlockEntity(BlockPos)} 只返回已创建的方块实体, 后台线程不会因此触发其他模组的代码
+ * </p>
+ */
 public class VirtualBlockLevel extends WrappedLevel {
-	private final Map<BlockPos, BlockState> blocks;
-	private final Map<BlockPos, CompoundTag> blockEntityNbt;
-	private final Map<BlockPos, BlockEntity> blockEntities = new HashMap<>();
+	private static final BlockState AIR = Blocks.AIR.defaultBlockState();
+
+	private final StructureScene scene;
+	private final int sizeX;
+	private final int sizeY;
+	private final int sizeZ;
+	private BlockState[] states;
+	private final Int2ObjectMap<BlockEntity> blockEntities = new Int2ObjectOpenHashMap<>();
+	/**
+	 * 只在 {@link #initAllBlockEntities()} 期间为 {@code true}
+	 */
+	private boolean creatingBlockEntities;
 
 	@Getter
 	private final List<BlockEntity> renderedBlockEntities = new ArrayList<>();
@@ -33,15 +58,38 @@ public class VirtualBlockLevel extends WrappedLevel {
 	@Getter
 	private final List<Entity> renderedEntities = new ArrayList<>();
 
-	public VirtualBlockLevel(Level level, Map<BlockPos, BlockState> blocks, Map<BlockPos, CompoundTag> tag) {
+	public VirtualBlockLevel(Level level, StructureScene scene) {
 		super(level);
-		this.blocks = blocks;
-		this.blockEntityNbt = tag;
+		this.scene = scene;
+		this.sizeX = scene.getSizeX();
+		this.sizeY = scene.getSizeY();
+		this.sizeZ = scene.getSizeZ();
+		this.states = new BlockState[scene.getVolume()];
+		Arrays.fill(states, AIR);
+		scene.forEachBlock((index, x, y, z, state) -> states[index] = state);
+	}
+
+	/**
+	 * 包围盒内的索引, 包围盒外返回 -1
+	 */
+	private int indexOf(BlockPos pos) {
+		int x = pos.getX();
+		int y = pos.getY();
+		int z = pos.getZ();
+		if ((x | y | z) < 0 || x >= sizeX || y >= sizeY || z >= sizeZ) {
+			return -1;
+		}
+		return (y * sizeZ + z) * sizeX + x;
 	}
 
 	@Override
 	public @NotNull BlockState getBlockState(BlockPos pos) {
-		return blocks.getOrDefault(pos, Blocks.AIR.defaultBlockState());
+		int index = indexOf(pos);
+		return index < 0 ? AIR : states[index];
+	}
+
+	public BlockState getBlockState(int index) {
+		return states[index];
 	}
 
 	@Override
@@ -57,11 +105,17 @@ public class VirtualBlockLevel extends WrappedLevel {
 	@Nullable
 	@Override
 	public BlockEntity getBlockEntity(@NotNull BlockPos pos) {
-		if (blockEntities.containsKey(pos)) {
-			return blockEntities.get(pos);
+		int index = indexOf(pos);
+		if (index < 0) {
+			return null;
+		}
+
+		BlockEntity cached = blockEntities.get(index);
+		if (cached != null || blockEntities.containsKey(index) || !creatingBlockEntities) {
+			return cached;
 		}
 
-		BlockState state = getBlockState(pos);
+		BlockState state = states[index];
 
 		if (!(state.getBlock() instanceof EntityBlock entityBlock)) {
 			return null;
@@ -71,26 +125,34 @@ public class VirtualBlockLevel extends WrappedLevel {
 			BlockEntity blockEntity = entityBlock.newBlockEntity(pos, state);
 			if (blockEntity != null) {
 				blockEntity.setLevel(this);
-				blockEntities.put(pos, blockEntity);
+				blockEntities.put(index, blockEntity);
 				renderedBlockEntities.add(blockEntity);
 
-				CompoundTag nbt = blockEntityNbt.get(pos);
+				CompoundTag nbt = scene.getBlockEntityNbt(index);
 				if (nbt != null) {
 					blockEntity.load(nbt);
 				}
 			}
 			return blockEntity;
 		} catch (Exception exception) {
-			blockEntities.put(pos, null);
+			blockEntities.put(index, null);
 			return null;
 		}
 	}
 
+	/**
+	 * 创建所有方块实体, 只能在渲染线程调用
+	 */
 	public void initAllBlockEntities() {
-		for (Map.Entry<BlockPos, BlockState> entry : blocks.entrySet()) {
-			if (entry.getValue().getBlock() instanceof EntityBlock) {
-				getBlockEntity(entry.getKey());
-			}
+		creatingBlockEntities = true;
+		try {
+			scene.forEachBlock((index, x, y, z, state) -> {
+				if (states[index].getBlock() instanceof EntityBlock) {
+					getBlockEntity(new BlockPos(x, y, z));
+				}
+			});
+		} finally {
+			creatingBlockEntities = false;
 		}
 	}
 
@@ -166,33 +228,51 @@ public class VirtualBlockLevel extends WrappedLevel {
 			return;
 		}
 
-		MekanismTransmitterHelper.refreshConnections(blockEntities);
+		MekanismTransmitterHelper.refreshConnections(this, renderedBlockEntities);
 	}
 
+	/**
+	 * 按相邻方块更新所有方块的形状
+	 *
+	 * <p>
+	 * 单次遍历, 读取旧数组并写入新数组, 结束后交换; 结果与遍历顺序无关
+	 * </p>
+	 *
+	 * <p>
+	 * 会调用各方块的 {@code updateShape}, 只能在渲染线程调用,
+	 * 并且要放在 {@link #initAllBlockEntities()} 之后, 否则依赖方块实体的连接会计算错误
+	 * </p>
+	 */
 	public void updateNeighborStates() {
-		Map<BlockPos, BlockState> updates = new HashMap<>();
-		for (Map.Entry<BlockPos, BlockState> entry : blocks.entrySet()) {
-			BlockPos pos = entry.getKey();
-			BlockState state = entry.getValue();
-			BlockState updated = state;
-
-			for (Direction direction : Direction.values()) {
-				BlockPos neighborPos = pos.relative(direction);
-				BlockState neighborState = getBlockState(neighborPos);
-				updated = updated.updateShape(
-						direction,
-						neighborState,
-						this,
-						pos,
-						neighborPos
-				);
-			}
+		BlockState[] updated = states.clone();
+		BlockPos.MutableBlockPos neighborPos = new BlockPos.MutableBlockPos();
+
+		int index = 0;
+		for (int y = 0; y < sizeY; y++) {
+			for (int z = 0; z < sizeZ; z++) {
+				for (int x = 0; x < sizeX; x++, index++) {
+					BlockState state = states[index];
+					if (state.isAir()) {
+						continue;
+					}
 
-			if (updated != state) {
-				updates.put(pos, updated);
+					BlockPos pos = new BlockPos(x, y, z);
+					BlockState result = state;
+					for (Direction direction : Direction.values()) {
+						neighborPos.setWithOffset(pos, direction);
+						result = result.updateShape(
+								direction,
+								getBlockState(neighborPos),
+								this,
+								pos,
+								neighborPos
+						);
+					}
+					updated[index] = result;
+				}
 			}
 		}
 
-		blocks.putAll(updates);
+		states = updated;
 	}
-}
\ No newline at end of file
+}
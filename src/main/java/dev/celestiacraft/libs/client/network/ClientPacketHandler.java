@@ -0,0 +1,49 @@
+package dev.celestiacraft.libs.client.network;
+
+import dev.celestiacraft.libs.api.register.multiblock.machine.MachineControllerBlockEntity;
+import dev.celestiacraft.libs.network.packet.BlockEntityBatchPacket;
+import dev.celestiacraft.libs.network.packet.MachineSyncPacket;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.multiplayer.ClientLevel;
+import net.minecraft.core.BlockPos;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.world.level.block.entity.BlockEntity;
+
+/**
+ * 客户端数据包处理
+ *
+ * <p>
+ * 只在客户端加载, 服务端的数据包类通过 {@link net.minecraftforge.fml.DistExecutor} 间接调用
+ * </p>
+ */
+public final class ClientPacketHandler {
+	private ClientPacketHandler() {
+	}
+
+	public static void handleMachineSync(MachineSyncPacket packet) {
+		ClientLevel level = Minecraft.getInstance().level;
+		if (level == null || !level.isLoaded(packet.getPos())) {
+			return;
+		}
+
+		if (level.getBlockEntity(packet.getPos()) instanceof MachineControllerBlockEntity machine) {
+			machine.applySyncPacket(packet);
+		}
+	}
+
+	public static void handleBlockEntityBatch(BlockEntityBatchPacket packet) {
+		ClientLevel level = Minecraft.getInstance().level;
+		if (level == null || !level.hasChunk(packet.getChunkX(), packet.getChunkZ())) {
+			return;
+		}
+
+		BlockPos[] positions = packet.getPositions();
+		CompoundTag[] tags = packet.getTags();
+		for (int i = 0; i < positions.length; i++) {
+			BlockEntity blockEntity = level.getBlockEntity(positions[i]);
+			if (blockEntity != null && tags[i] != null) {
+				blockEntity.handleUpdateTag(tags[i]);
+			}
+		}
+	}
+}
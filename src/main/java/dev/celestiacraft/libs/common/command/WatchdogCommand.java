@@ -0,0 +1,70 @@
+package dev.celestiacraft.libs.common.command;
+
+import com.mojang.brigadier.CommandDispatcher;
+import dev.celestiacraft.libs.NebulaLibs;
+import dev.celestiacraft.libs.server.tick.ControllerTickWatchdog;
+import net.minecraft.ChatFormatting;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.Component;
+import net.minecraftforge.event.RegisterCommandsEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+import java.util.List;
+
+@Mod.EventBusSubscriber(modid = NebulaLibs.MODID, bus = Mod.EventBusSubscriber.Bus.FORGE)
+public class WatchdogCommand {
+	private static final int MAX_LINES = 10;
+
+	@SubscribeEvent
+	public static void onRegisterCommands(RegisterCommandsEvent event) {
+		CommandDispatcher<CommandSourceStack> dispatcher = event.getDispatcher();
+		dispatcher.register(Commands.literal("nebula")
+				.then(Commands.literal("watchdog")
+						.requires((source) -> source.hasPermission(2))
+						.executes((context) -> {
+							CommandSourceStack source = context.getSource();
+							List<ControllerTickWatchdog.Entry> entries = ControllerTickWatchdog.snapshot();
+
+							if (entries.isEmpty()) {
+								source.sendSuccess(
+										() -> Component.translatable("nebula_libs.watchdog.empty"),
+										false
+								);
+								return 0;
+							}
+
+							source.sendSuccess(
+									() -> Component.translatable("nebula_libs.watchdog.header", entries.size()),
+									false
+							);
+							for (ControllerTickWatchdog.Entry entry : entries.subList(0, Math.min(MAX_LINES, entries.size()))) {
+								source.sendSuccess(
+										() -> Component.translatable(
+												"nebula_libs.watchdog.entry",
+												entry.getType() == null ? "?" : entry.getType().toString(),
+												entry.getDimension().toString(),
+												entry.getPos().toShortString(),
+												String.format("%.1f", entry.getAverageNanos() / 1000D),
+												entry.getSkippedTicks()
+										).withStyle(entry.isThrottled() ? ChatFormatting.RED : ChatFormatting.GRAY),
+										false
+								);
+							}
+							return entries.size();
+						})
+						.then(Commands.literal("reset")
+								.executes((context) -> {
+									ControllerTickWatchdog.reset();
+									context.getSource().sendSuccess(
+											() -> Component.translatable("nebula_libs.watchdog.reset"),
+											true
+									);
+									return 1;
+								})
+						)
+				)
+		);
+	}
+}
@@ -10,6 +10,7 @@ import net.minecraft.nbt.TagParser;
 import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.util.GsonHelper;
+import net.minecraft.util.RandomSource;
 import net.minecraft.world.Container;
 import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
@@ -18,17 +19,27 @@ import net.minecraft.world.item.crafting.Recipe;
 import net.minecraft.world.item.crafting.RecipeSerializer;
 import net.minecraft.world.item.crafting.RecipeType;
 import net.minecraft.world.level.Level;
+import net.minecraft.world.level.material.Fluid;
+import net.minecraftforge.energy.IEnergyStorage;
 import net.minecraftforge.fluids.FluidStack;
 import net.minecraftforge.fluids.capability.IFluidHandler;
 import net.minecraftforge.items.IItemHandler;
+import net.minecraftforge.items.ItemHandlerHelper;
 import net.minecraftforge.registries.ForgeRegistries;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
 public class MachineRecipe implements Recipe<Container> {
+	private static final ThreadLocal<OutputSimulator> OUTPUT_SIMULATOR = ThreadLocal.withInitial(OutputSimulator::new);
+	/**
+	 * 二项分布采样时, 期望成功次数超过该值改用正态近似
+	 */
+	private static final double BINOMIAL_NORMAL_THRESHOLD = 30D;
+
 	private final ResourceLocation id;
 	@Getter
 	private final ResourceLocation recipeTypeId;
@@ -70,36 +81,50 @@ public class MachineRecipe implements Recipe<Container> {
 	}
 
 	public static MachineRecipe fromJson(ResourceLocation id, ResourceLocation recipeTypeId, JsonObject json) {
-		List<ItemInput> inputItems = new ArrayList<>();
-		List<ItemOutput> outputItems = new ArrayList<>();
-		List<FluidInput> inputFluids = new ArrayList<>();
-		List<FluidOutput> outputFluids = new ArrayList<>();
+		return parse(id, recipeTypeId, json).build();
+	}
+
+	/**
+	 * 只读取 JSON 结构, 注册名与 NBT, 不创建物品堆叠与原料
+	 *
+	 * <p>
+	 * 不会调用其他模组的代码, 可以在工作线程上运行; 之后需要在重载线程调用 {@link Draft#build()}
+	 * </p>
+	 */
+	static Draft parse(ResourceLocation id, ResourceLocation recipeTypeId, JsonObject json) {
+		List<ItemInputDraft> inputItems = new ArrayList<>();
+		List<ItemDraft> outputItems = new ArrayList<>();
+		List<FluidDraft> inputFluids = new ArrayList<>();
+		List<FluidDraft> outputFluids = new ArrayList<>();
 
 		if (json.has("inputItems")) {
 			for (JsonElement element : GsonHelper.getAsJsonArray(json, "inputItems")) {
-				inputItems.add(ItemInput.fromJson(GsonHelper.convertToJsonObject(element, "inputItems")));
+				JsonObject input = GsonHelper.convertToJsonObject(element, "inputItems");
+				inputItems.add(new ItemInputDraft(input.get("ingredient"), GsonHelper.getAsInt(input, "count", 1)));
 			}
 		}
 
 		if (json.has("outputItems")) {
 			for (JsonElement element : GsonHelper.getAsJsonArray(json, "outputItems")) {
-				outputItems.add(ItemOutput.fromJson(GsonHelper.convertToJsonObject(element, "outputItems")));
+				JsonObject output = GsonHelper.convertToJsonObject(element, "outputItems");
+				outputItems.add(readItemDraft(output, GsonHelper.getAsDouble(output, "chance", 1D)));
 			}
 		}
 
 		if (json.has("inputFluids")) {
 			for (JsonElement element : GsonHelper.getAsJsonArray(json, "inputFluids")) {
-				inputFluids.add(FluidInput.fromJson(GsonHelper.convertToJsonObject(element, "inputFluids")));
+				inputFluids.add(readFluidDraft(GsonHelper.convertToJsonObject(element, "inputFluids"), 1D));
 			}
 		}
 
 		if (json.has("outputFluids")) {
 			for (JsonElement element : GsonHelper.getAsJsonArray(json, "outputFluids")) {
-				outputFluids.add(FluidOutput.fromJson(GsonHelper.convertToJsonObject(element, "outputFluids")));
+				JsonObject output = GsonHelper.convertToJsonObject(element, "outputFluids");
+				outputFluids.add(readFluidDraft(output, GsonHelper.getAsDouble(output, "chance", 1D)));
 			}
 		}
 
-		return new MachineRecipe(
+		return new Draft(
 				id,
 				recipeTypeId,
 				inputItems,
@@ -151,26 +176,18 @@ public class MachineRecipe implements Recipe<Container> {
 		return json;
 	}
 
+	/**
+	 * @see MachineRecipeCodec
+	 */
 	public static MachineRecipe fromNetwork(ResourceLocation id, ResourceLocation recipeTypeId, FriendlyByteBuf buf) {
-		List<ItemInput> inputItems = buf.readList(ItemInput::fromNetwork);
-		List<ItemOutput> outputItems = buf.readList(ItemOutput::fromNetwork);
-		List<FluidInput> inputFluids = buf.readList(FluidInput::fromNetwork);
-		List<FluidOutput> outputFluids = buf.readList(FluidOutput::fromNetwork);
-		int inputEnergy = buf.readVarInt();
-		int outputEnergy = buf.readVarInt();
-		int duration = buf.readVarInt();
-
-		return new MachineRecipe(id, recipeTypeId, inputItems, outputItems, inputFluids, outputFluids, inputEnergy, outputEnergy, duration);
+		return MachineRecipeCodec.read(id, recipeTypeId, buf);
 	}
 
+	/**
+	 * @see MachineRecipeCodec
+	 */
 	public void toNetwork(FriendlyByteBuf buf) {
-		buf.writeCollection(inputItems, (buffer, value) -> value.toNetwork(buffer));
-		buf.writeCollection(outputItems, (buffer, value) -> value.toNetwork(buffer));
-		buf.writeCollection(inputFluids, (buffer, value) -> value.toNetwork(buffer));
-		buf.writeCollection(outputFluids, (buffer, value) -> value.toNetwork(buffer));
-		buf.writeVarInt(inputEnergy);
-		buf.writeVarInt(outputEnergy);
-		buf.writeVarInt(duration);
+		MachineRecipeCodec.write(buf, this);
 	}
 
 	public boolean matchesItemInputs(IItemHandler handler, int startSlot) {
@@ -192,46 +209,382 @@ public class MachineRecipe implements Recipe<Container> {
 	}
 
 	public boolean canOutputItems(IItemHandler handler, int startSlot) {
-		for (int i = 0; i < outputItems.size(); i++) {
-			ItemStack remaining = handler.insertItem(startSlot + i, outputItems.get(i).stack.copy(), true);
-			if (!remaining.isEmpty()) {
-				return false;
+		return OUTPUT_SIMULATOR.get().getMaxItemCrafts(this, handler, startSlot, 1) > 0;
+	}
+
+	public boolean canOutputFluids(IFluidHandler handler) {
+		return OUTPUT_SIMULATOR.get().getMaxFluidCrafts(this, handler, 1) > 0;
+	}
+
+	/**
+	 * 在暂存模型上同时模拟全部物品与流体输出, 返回最多能放下的合成次数
+	 *
+	 * @see OutputSimulator#getMaxCrafts(MachineRecipe, IItemHandler, int, IFluidHandler, int)
+	 */
+	public int getMaxOutputCrafts(@Nullable IItemHandler items, int startSlot, @Nullable IFluidHandler fluids, int limit) {
+		return OUTPUT_SIMULATOR.get().getMaxCrafts(this, items, startSlot, fluids, limit);
+	}
+
+	/**
+	 * 按输入物品、输入流体与能量计算最多能同时进行的合成次数
+	 *
+	 * @param io    本次运行使用的容器
+	 * @param limit 并行上限
+	 * @return 范围 {@code [0, limit]}
+	 */
+	public int getMaxInputCrafts(MachineRecipeIO io, int limit) {
+		long crafts = Math.max(0, limit);
+
+		if (io.pooled()) {
+			crafts = getMaxPooledInputCrafts(io, crafts);
+		} else if (!inputItems.isEmpty()) {
+			IItemHandler handler = io.itemInputs();
+			if (handler == null) {
+				return 0;
+			}
+			for (int i = 0; i < inputItems.size() && crafts > 0; i++) {
+				ItemInput input = inputItems.get(i);
+				int slot = io.itemInputStart() + i;
+				ItemStack stack = slot < handler.getSlots() ? handler.getStackInSlot(slot) : ItemStack.EMPTY;
+				crafts = input.matches(stack) ? Math.min(crafts, stack.getCount() / input.count()) : 0;
 			}
 		}
-		return true;
+
+		if (!io.pooled() && !inputFluids.isEmpty()) {
+			IFluidHandler handler = io.fluidInputs();
+			if (handler == null) {
+				return 0;
+			}
+			for (int i = 0; i < inputFluids.size() && crafts > 0; i++) {
+				FluidInput input = inputFluids.get(i);
+				int tank = io.fluidInputStart() + i;
+				FluidStack stored = tank < handler.getTanks() ? handler.getFluidInTank(tank) : FluidStack.EMPTY;
+				crafts = input.matches(stored) ? Math.min(crafts, stored.getAmount() / input.stack().getAmount()) : 0;
+			}
+		}
+
+		if (inputEnergy > 0 && crafts > 0) {
+			crafts = getMaxInputEnergyCrafts(io.energy(), (int) crafts);
+		}
+
+		if (outputEnergy > 0 && crafts > 0) {
+			crafts = getMaxOutputEnergyCrafts(io.energy(), (int) crafts);
+		}
+
+		return (int) crafts;
 	}
 
-	public boolean canOutputFluids(IFluidHandler handler) {
-		for (FluidOutput output : outputFluids) {
-			int filled = handler.fill(output.stack.copy(), IFluidHandler.FluidAction.SIMULATE);
-			if (filled < output.stack.getAmount()) {
-				return false;
+	/**
+	 * 按模拟提取的能量计算次数, 限速或不可提取的储能不会被当作可用
+	 */
+	private int getMaxInputEnergyCrafts(@Nullable IEnergyStorage energy, int crafts) {
+		if (energy == null) {
+			return 0;
+		}
+		int request = (int) Math.min(Integer.MAX_VALUE, (long) inputEnergy * crafts);
+		return Math.min(crafts, energy.extractEnergy(request, true) / inputEnergy);
+	}
+
+	/**
+	 * 按模拟接收的能量计算次数, 限速或不可接收的储能不会被当作有空间
+	 */
+	private int getMaxOutputEnergyCrafts(@Nullable IEnergyStorage energy, int crafts) {
+		if (energy == null) {
+			return 0;
+		}
+		int request = (int) Math.min(Integer.MAX_VALUE, (long) outputEnergy * crafts);
+		return Math.min(crafts, energy.receiveEnergy(request, true) / outputEnergy);
+	}
+
+	/**
+	 * 计算当前输入、输出空间与能量共同允许的最大并行数
+	 *
+	 * <p>
+	 * 输入在前先缩小上限, 之后输出只需在更小的范围内做暂存模拟
+	 * </p>
+	 */
+	public int getMaxParallel(MachineRecipeIO io, int limit) {
+		int crafts = getMaxInputCrafts(io, limit);
+		if (crafts <= 0) {
+			return 0;
+		}
+		if (io.pooled()) {
+			return OUTPUT_SIMULATOR.get().getMaxPooledCrafts(this, io.itemOutputs(), io.fluidOutputs(), crafts);
+		}
+		return getMaxOutputCrafts(io.itemOutputs(), io.itemOutputStart(), io.fluidOutputs(), crafts);
+	}
+
+	/**
+	 * 批量执行 {@code crafts} 次合成
+	 *
+	 * <p>
+	 * 一次性扣除全部输入与能量并写入全部输出, 概率输出按二项分布整体采样,
+	 * 调用前应先通过 {@link #getMaxParallel(MachineRecipeIO, int)} 确认次数
+	 * </p>
+	 *
+	 * <p>
+	 * 能量先于输入实际扣除, 次数按真正提取到的能量收紧; 不足一次的零头会尝试退回储能
+	 * </p>
+	 *
+	 * @return 实际完成的合成次数
+	 */
+	public int craft(Level level, MachineRecipeIO io, int crafts) {
+		if (crafts <= 0) {
+			return 0;
+		}
+
+		IEnergyStorage energy = io.energy();
+		if (inputEnergy > 0 || outputEnergy > 0) {
+			if (energy == null) {
+				return 0;
+			}
+			if (outputEnergy > 0) {
+				crafts = getMaxOutputEnergyCrafts(energy, crafts);
+			}
+			if (inputEnergy > 0 && crafts > 0) {
+				crafts = extractInputEnergy(energy, crafts);
+			}
+			if (crafts <= 0) {
+				return 0;
 			}
 		}
-		return true;
+
+		if (io.itemInputs() != null) {
+			if (io.pooled()) {
+				consumePooledItemInputs(io.itemInputs(), crafts);
+			} else {
+				consumeItemInputs(io.itemInputs(), io.itemInputStart(), crafts);
+			}
+		}
+		if (io.fluidInputs() != null) {
+			consumeFluidInputs(io.fluidInputs(), crafts);
+		}
+		if (outputEnergy > 0) {
+			energy.receiveEnergy(outputEnergy * crafts, false);
+		}
+		if (io.itemOutputs() != null) {
+			if (io.pooled()) {
+				producePooledItemOutputs(level, io.itemOutputs(), crafts);
+			} else {
+				produceItemOutputs(level, io.itemOutputs(), io.itemOutputStart(), crafts);
+			}
+		}
+		if (io.fluidOutputs() != null) {
+			produceFluidOutputs(level, io.fluidOutputs(), crafts);
+		}
+		return crafts;
+	}
+
+	/**
+	 * 实际扣除 {@code crafts} 次合成所需的能量
+	 *
+	 * @return 提取到的能量足够的次数
+	 */
+	private int extractInputEnergy(IEnergyStorage energy, int crafts) {
+		crafts = getMaxInputEnergyCrafts(energy, crafts);
+		if (crafts <= 0) {
+			return 0;
+		}
+
+		int extracted = energy.extractEnergy(inputEnergy * crafts, false);
+		int paid = extracted / inputEnergy;
+		int change = extracted - paid * inputEnergy;
+		if (change > 0) {
+			energy.receiveEnergy(change, false);
+		}
+		return paid;
 	}
 
 	public void consumeItemInputs(IItemHandler handler, int startSlot) {
+		consumeItemInputs(handler, startSlot, 1);
+	}
+
+	public void consumeItemInputs(IItemHandler handler, int startSlot, int crafts) {
 		for (int i = 0; i < inputItems.size(); i++) {
-			handler.extractItem(startSlot + i, inputItems.get(i).count, false);
+			handler.extractItem(startSlot + i, inputItems.get(i).count * crafts, false);
+		}
+	}
+
+	/**
+	 * 合并模式下从任意槽位扣除物品输入
+	 *
+	 * <p>
+	 * 每个槽位只归属于第一个能接受它的输入, 与 {@link #getMaxInputCrafts(MachineRecipeIO, int)} 的统计方式一致
+	 * </p>
+	 */
+	public void consumePooledItemInputs(IItemHandler handler, int crafts) {
+		long[] needed = new long[inputItems.size()];
+		for (int i = 0; i < needed.length; i++) {
+			needed[i] = (long) inputItems.get(i).count * crafts;
+		}
+
+		for (int slot = 0; slot < handler.getSlots(); slot++) {
+			int index = findItemInput(handler.getStackInSlot(slot));
+			if (index < 0 || needed[index] <= 0) {
+				continue;
+			}
+			needed[index] -= handler.extractItem(slot, (int) Math.min(Integer.MAX_VALUE, needed[index]), false).getCount();
+		}
+	}
+
+	public void consumeFluidInputs(IFluidHandler handler, int crafts) {
+		for (FluidInput input : inputFluids) {
+			handler.drain(new FluidStack(input.stack, input.stack.getAmount() * crafts), IFluidHandler.FluidAction.EXECUTE);
 		}
 	}
 
 	public void produceItemOutputs(Level level, IItemHandler handler, int startSlot) {
+		produceItemOutputs(level, handler, startSlot, 1);
+	}
+
+	public void produceItemOutputs(Level level, IItemHandler handler, int startSlot, int crafts) {
 		for (int i = 0; i < outputItems.size(); i++) {
 			ItemOutput output = outputItems.get(i);
-			if (output.roll(level)) {
-				handler.insertItem(startSlot + i, output.stack.copy(), false);
+			int successes = output.roll(level, crafts);
+			if (successes > 0) {
+				handler.insertItem(startSlot + i, output.stack.copyWithCount(output.stack.getCount() * successes), false);
+			}
+		}
+	}
+
+	/**
+	 * 合并模式下写入物品输出, 优先堆叠到已有相同物品的槽位
+	 */
+	public void producePooledItemOutputs(Level level, IItemHandler handler, int crafts) {
+		for (ItemOutput output : outputItems) {
+			int successes = output.roll(level, crafts);
+			if (successes > 0) {
+				ItemHandlerHelper.insertItemStacked(handler, output.stack.copyWithCount(output.stack.getCount() * successes), false);
 			}
 		}
 	}
 
 	public void produceFluidOutputs(Level level, IFluidHandler handler) {
+		produceFluidOutputs(level, handler, 1);
+	}
+
+	public void produceFluidOutputs(Level level, IFluidHandler handler, int crafts) {
 		for (FluidOutput output : outputFluids) {
-			if (output.roll(level)) {
-				handler.fill(output.stack.copy(), IFluidHandler.FluidAction.EXECUTE);
+			int successes = output.roll(level, crafts);
+			if (successes > 0) {
+				handler.fill(new FluidStack(output.stack, output.stack.getAmount() * successes), IFluidHandler.FluidAction.EXECUTE);
+			}
+		}
+	}
+
+	/**
+	 * 合并模式下按物品与流体总量计算输入允许的合成次数
+	 */
+	private long getMaxPooledInputCrafts(MachineRecipeIO io, long crafts) {
+		if (!inputItems.isEmpty()) {
+			IItemHandler handler = io.itemInputs();
+			if (handler == null) {
+				return 0;
+			}
+
+			long[] totals = new long[inputItems.size()];
+			for (int slot = 0; slot < handler.getSlots(); slot++) {
+				ItemStack stack = handler.getStackInSlot(slot);
+				int index = findItemInput(stack);
+				if (index >= 0) {
+					totals[index] += stack.getCount();
+				}
+			}
+			for (int i = 0; i < totals.length && crafts > 0; i++) {
+				crafts = Math.min(crafts, totals[i] / inputItems.get(i).count);
+			}
+		}
+
+		if (!inputFluids.isEmpty() && crafts > 0) {
+			IFluidHandler handler = io.fluidInputs();
+			if (handler == null) {
+				return 0;
+			}
+
+			long[] totals = new long[inputFluids.size()];
+			for (int tank = 0; tank < handler.getTanks(); tank++) {
+				FluidStack stored = handler.getFluidInTank(tank);
+				int index = findFluidInput(stored);
+				if (index >= 0) {
+					totals[index] += stored.getAmount();
+				}
+			}
+			for (int i = 0; i < totals.length && crafts > 0; i++) {
+				crafts = Math.min(crafts, totals[i] / inputFluids.get(i).stack.getAmount());
+			}
+		}
+
+		return crafts;
+	}
+
+	private int findItemInput(ItemStack stack) {
+		if (stack.isEmpty()) {
+			return -1;
+		}
+		for (int i = 0; i < inputItems.size(); i++) {
+			if (inputItems.get(i).ingredient.test(stack)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private int findFluidInput(FluidStack stack) {
+		if (stack.isEmpty()) {
+			return -1;
+		}
+		for (int i = 0; i < inputFluids.size(); i++) {
+			FluidStack required = inputFluids.get(i).stack;
+			if (stack.isFluidEqual(required) && FluidStack.areFluidStackTagsEqual(required, stack)) {
+				return i;
 			}
 		}
+		return -1;
+	}
+
+	/**
+	 * 对 {@code trials} 次独立概率事件做一次二项分布采样
+	 *
+	 * <p>
+	 * 期望较小时使用逆变换采样(单次随机数), 期望较大时使用正态近似,
+	 * 开销与 {@code trials} 无关
+	 * </p>
+	 *
+	 * @return 成功次数, 范围 {@code [0, trials]}
+	 */
+	public static int rollSuccesses(RandomSource random, int trials, double chance) {
+		if (trials <= 0 || chance <= 0D) {
+			return 0;
+		}
+		if (chance >= 1D) {
+			return trials;
+		}
+		if (chance > 0.5D) {
+			return trials - rollSuccesses(random, trials, 1D - chance);
+		}
+
+		double mean = trials * chance;
+		if (mean > BINOMIAL_NORMAL_THRESHOLD) {
+			double deviation = Math.sqrt(mean * (1D - chance));
+			long value = Math.round(mean + random.nextGaussian() * deviation);
+			return (int) Math.max(0, Math.min(trials, value));
+		}
+
+		double failure = 1D - chance;
+		double ratio = chance / failure;
+		double factor = (trials + 1) * ratio;
+		double probability = Math.pow(failure, trials);
+		double sample = random.nextDouble();
+		int successes = 0;
+		while (sample > probability) {
+			sample -= probability;
+			successes++;
+			if (successes >= trials) {
+				return trials;
+			}
+			probability *= factor / successes - ratio;
+		}
+		return successes;
 	}
 
 	@Override
@@ -291,45 +644,109 @@ public class MachineRecipe implements Recipe<Container> {
 		return json;
 	}
 
-	private static void readTag(JsonObject json, ConsumerWithException<CompoundTag> consumer, String messagePrefix) {
+	@Nullable
+	private static CompoundTag readTag(JsonObject json, String messagePrefix) {
 		if (!json.has("nbt")) {
-			return;
+			return null;
 		}
 
 		try {
-			consumer.accept(TagParser.parseTag(GsonHelper.getAsString(json, "nbt")));
+			return TagParser.parseTag(GsonHelper.getAsString(json, "nbt"));
 		} catch (Exception exception) {
 			throw new IllegalStateException(messagePrefix + GsonHelper.getAsString(json, "nbt"), exception);
 		}
 	}
 
-	private static ItemStack readItemStack(JsonObject json) {
+	private static ItemDraft readItemDraft(JsonObject json, double chance) {
 		String itemId = GsonHelper.getAsString(json, "item");
 		Item item = ForgeRegistries.ITEMS.getValue(ResourceLocation.parse(itemId));
 		if (item == null) {
 			throw new IllegalStateException("Unknown item: " + itemId);
 		}
 
-		ItemStack stack = new ItemStack(item, GsonHelper.getAsInt(json, "count", 1));
-		readTag(json, stack::setTag, "Invalid item nbt: ");
-		return stack;
+		return new ItemDraft(item, GsonHelper.getAsInt(json, "count", 1), readTag(json, "Invalid item nbt: "), chance);
 	}
 
-	private static FluidStack readFluidStack(JsonObject json) {
+	private static FluidDraft readFluidDraft(JsonObject json, double chance) {
 		String fluidId = GsonHelper.getAsString(json, "fluid");
-		var fluid = ForgeRegistries.FLUIDS.getValue(ResourceLocation.parse(fluidId));
+		Fluid fluid = ForgeRegistries.FLUIDS.getValue(ResourceLocation.parse(fluidId));
 		if (fluid == null) {
 			throw new IllegalStateException("Unknown fluid: " + fluidId);
 		}
 
-		FluidStack stack = new FluidStack(fluid, GsonHelper.getAsInt(json, "amount"));
-		readTag(json, stack::setTag, "Invalid fluid nbt: ");
-		return stack;
+		return new FluidDraft(fluid, GsonHelper.getAsInt(json, "amount"), readTag(json, "Invalid fluid nbt: "), chance);
+	}
+
+	/**
+	 * {@link #parse(ResourceLocation, ResourceLocation, JsonObject)} 的结果
+	 */
+	record Draft(
+			ResourceLocation id,
+			ResourceLocation recipeTypeId,
+			List<ItemInputDraft> inputItems,
+			List<ItemDraft> outputItems,
+			List<FluidDraft> inputFluids,
+			List<FluidDraft> outputFluids,
+			int inputEnergy,
+			int outputEnergy,
+			int duration
+	) {
+		/**
+		 * 创建物品堆叠与原料, 会触发能力附加事件并调用原料序列化器, 只能在重载线程调用
+		 */
+		MachineRecipe build() {
+			List<ItemInput> builtInputItems = new ArrayList<>(inputItems.size());
+			for (ItemInputDraft input : inputItems) {
+				builtInputItems.add(new ItemInput(Ingredient.fromJson(input.ingredient()), input.count()));
+			}
+			List<ItemOutput> builtOutputItems = new ArrayList<>(outputItems.size());
+			for (ItemDraft output : outputItems) {
+				builtOutputItems.add(new ItemOutput(output.toStack(), output.chance()));
+			}
+			List<FluidInput> builtInputFluids = new ArrayList<>(inputFluids.size());
+			for (FluidDraft input : inputFluids) {
+				builtInputFluids.add(new FluidInput(input.toStack()));
+			}
+			List<FluidOutput> builtOutputFluids = new ArrayList<>(outputFluids.size());
+			for (FluidDraft output : outputFluids) {
+				builtOutputFluids.add(new FluidOutput(output.toStack(), output.chance()));
+			}
+
+			return new MachineRecipe(
+					id,
+					recipeTypeId,
+					builtInputItems,
+					builtOutputItems,
+					builtInputFluids,
+					builtOutputFluids,
+					inputEnergy,
+					outputEnergy,
+					duration
+			);
+		}
+	}
+
+	record ItemInputDraft(JsonElement ingredient, int count) {
+	}
+
+	record ItemDraft(Item item, int count, @Nullable CompoundTag tag, double chance) {
+		ItemStack toStack() {
+			ItemStack stack = new ItemStack(item, count);
+			if (tag != null) {
+				stack.setTag(tag.copy());
+			}
+			return stack;
+		}
 	}
 
-	@FunctionalInterface
-	private interface ConsumerWithException<T> {
-		void accept(T value) throws Exception;
+	record FluidDraft(Fluid fluid, int amount, @Nullable CompoundTag tag, double chance) {
+		FluidStack toStack() {
+			FluidStack stack = new FluidStack(fluid, amount);
+			if (tag != null) {
+				stack.setTag(tag.copy());
+			}
+			return stack;
+		}
 	}
 
 	public record ItemInput(Ingredient ingredient, int count) {
@@ -371,6 +788,13 @@ public class MachineRecipe implements Recipe<Container> {
 			return chance >= 1D || level.random.nextDouble() <= chance;
 		}
 
+		public int roll(Level level, int crafts) {
+			if (crafts == 1) {
+				return roll(level) ? 1 : 0;
+			}
+			return rollSuccesses(level.random, crafts, chance);
+		}
+
 		public JsonObject toJson() {
 			ResourceLocation itemId = ForgeRegistries.ITEMS.getKey(stack.getItem());
 			if (itemId == null) {
@@ -380,7 +804,8 @@ public class MachineRecipe implements Recipe<Container> {
 		}
 
 		public static ItemOutput fromJson(JsonObject json) {
-			return new ItemOutput(readItemStack(json), GsonHelper.getAsDouble(json, "chance", 1D));
+			ItemDraft draft = readItemDraft(json, GsonHelper.getAsDouble(json, "chance", 1D));
+			return new ItemOutput(draft.toStack(), draft.chance());
 		}
 
 		public void toNetwork(FriendlyByteBuf buf) {
@@ -414,7 +839,7 @@ public class MachineRecipe implements Recipe<Container> {
 		}
 
 		public static FluidInput fromJson(JsonObject json) {
-			return new FluidInput(readFluidStack(json));
+			return new FluidInput(readFluidDraft(json, 1D).toStack());
 		}
 
 		public void toNetwork(FriendlyByteBuf buf) {
@@ -435,6 +860,13 @@ public class MachineRecipe implements Recipe<Container> {
 			return chance >= 1D || level.random.nextDouble() <= chance;
 		}
 
+		public int roll(Level level, int crafts) {
+			if (crafts == 1) {
+				return roll(level) ? 1 : 0;
+			}
+			return rollSuccesses(level.random, crafts, chance);
+		}
+
 		public JsonObject toJson() {
 			ResourceLocation fluidId = ForgeRegistries.FLUIDS.getKey(stack.getFluid());
 			if (fluidId == null) {
@@ -444,7 +876,8 @@ public class MachineRecipe implements Recipe<Container> {
 		}
 
 		public static FluidOutput fromJson(JsonObject json) {
-			return new FluidOutput(readFluidStack(json), GsonHelper.getAsDouble(json, "chance", 1D));
+			FluidDraft draft = readFluidDraft(json, GsonHelper.getAsDouble(json, "chance", 1D));
+			return new FluidOutput(draft.toStack(), draft.chance());
 		}
 
 		public void toNetwork(FriendlyByteBuf buf) {
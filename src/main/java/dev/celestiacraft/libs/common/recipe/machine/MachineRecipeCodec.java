@@ -0,0 +1,308 @@
+package dev.celestiacraft.libs.common.recipe.machine;
+
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.item.crafting.Ingredient;
+import net.minecraft.world.level.material.Fluid;
+import net.minecraftforge.fluids.FluidStack;
+import net.minecraftforge.registries.ForgeRegistries;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * {@link MachineRecipe} 的紧凑网络格式
+ *
+ * <p>
+ * 登录或 {@code /reload} 时所有配方写入同一个数据包, 同一个 {@link FriendlyByteBuf} 内的配方共享一份字典:
+ * </p>
+ *
+ * <ul>
+ *     <li>开头一个标志字节, 标记哪些列表非空, 能量是否非零, 时长是否不是默认的 20; 空的部分不写入</li>
+ *     <li>{@link Ingredient} 与流体(流体 + NBT, 不含数量)第一次出现时写入 0 和完整内容, 之后只写入 varint 字典序号</li>
+ *     <li>产出概率量化为 1/{@link #CHANCE_SCALE} 的 varint, 只有小于 1 的概率才写入, 由每个列表开头的位掩码标记</li>
+ * </ul>
+ *
+ * <p>
+ * 字典按线程保存, 遇到新的数据包缓冲区时重置. 读写必须按相同顺序, 与原版配方同步的方式一致
+ * </p>
+ */
+public final class MachineRecipeCodec {
+	static final int CHANCE_SCALE = 10000;
+	private static final int DEFAULT_DURATION = 20;
+	private static final int CHANCE_MASK_BITS = Long.SIZE - 1;
+
+	private static final int HAS_INPUT_ITEMS = 1;
+	private static final int HAS_OUTPUT_ITEMS = 1 << 1;
+	private static final int HAS_INPUT_FLUIDS = 1 << 2;
+	private static final int HAS_OUTPUT_FLUIDS = 1 << 3;
+	private static final int HAS_INPUT_ENERGY = 1 << 4;
+	private static final int HAS_OUTPUT_ENERGY = 1 << 5;
+	private static final int HAS_DURATION = 1 << 6;
+
+	private static final ThreadLocal<WriteDictionary> WRITE_DICTIONARY = ThreadLocal.withInitial(WriteDictionary::new);
+	private static final ThreadLocal<ReadDictionary> READ_DICTIONARY = ThreadLocal.withInitial(ReadDictionary::new);
+
+	private MachineRecipeCodec() {
+	}
+
+	public static void write(FriendlyByteBuf buf, MachineRecipe recipe) {
+		WriteDictionary dictionary = WRITE_DICTIONARY.get().bind(buf);
+
+		int flags = 0;
+		flags |= recipe.getInputItems().isEmpty() ? 0 : HAS_INPUT_ITEMS;
+		flags |= recipe.getOutputItems().isEmpty() ? 0 : HAS_OUTPUT_ITEMS;
+		flags |= recipe.getInputFluids().isEmpty() ? 0 : HAS_INPUT_FLUIDS;
+		flags |= recipe.getOutputFluids().isEmpty() ? 0 : HAS_OUTPUT_FLUIDS;
+		flags |= recipe.getInputEnergy() == 0 ? 0 : HAS_INPUT_ENERGY;
+		flags |= recipe.getOutputEnergy() == 0 ? 0 : HAS_OUTPUT_ENERGY;
+		flags |= recipe.getDuration() == DEFAULT_DURATION ? 0 : HAS_DURATION;
+		buf.writeByte(flags);
+
+		if ((flags & HAS_INPUT_ITEMS) != 0) {
+			buf.writeVarInt(recipe.getInputItems().size());
+			for (MachineRecipe.ItemInput input : recipe.getInputItems()) {
+				dictionary.writeIngredient(buf, input.ingredient());
+				buf.writeVarInt(input.count());
+			}
+		}
+
+		if ((flags & HAS_OUTPUT_ITEMS) != 0) {
+			List<MachineRecipe.ItemOutput> outputs = recipe.getOutputItems();
+			buf.writeVarInt(outputs.size());
+			writeChanceMask(buf, outputs.size(), (i) -> outputs.get(i).chance());
+			for (int i = 0; i < outputs.size(); i++) {
+				buf.writeItem(outputs.get(i).stack());
+				writeChance(buf, i, outputs.get(i).chance());
+			}
+		}
+
+		if ((flags & HAS_INPUT_FLUIDS) != 0) {
+			buf.writeVarInt(recipe.getInputFluids().size());
+			for (MachineRecipe.FluidInput input : recipe.getInputFluids()) {
+				dictionary.writeFluid(buf, input.stack());
+				buf.writeVarInt(input.stack().getAmount());
+			}
+		}
+
+		if ((flags & HAS_OUTPUT_FLUIDS) != 0) {
+			List<MachineRecipe.FluidOutput> outputs = recipe.getOutputFluids();
+			buf.writeVarInt(outputs.size());
+			writeChanceMask(buf, outputs.size(), (i) -> outputs.get(i).chance());
+			for (int i = 0; i < outputs.size(); i++) {
+				FluidStack stack = outputs.get(i).stack();
+				dictionary.writeFluid(buf, stack);
+				buf.writeVarInt(stack.getAmount());
+				writeChance(buf, i, outputs.get(i).chance());
+			}
+		}
+
+		if ((flags & HAS_INPUT_ENERGY) != 0) {
+			buf.writeVarInt(recipe.getInputEnergy());
+		}
+		if ((flags & HAS_OUTPUT_ENERGY) != 0) {
+			buf.writeVarInt(recipe.getOutputEnergy());
+		}
+		if ((flags & HAS_DURATION) != 0) {
+			buf.writeVarInt(recipe.getDuration());
+		}
+	}
+
+	public static MachineRecipe read(ResourceLocation id, ResourceLocation recipeTypeId, FriendlyByteBuf buf) {
+		ReadDictionary dictionary = READ_DICTIONARY.get().bind(buf);
+		int flags = buf.readUnsignedByte();
+
+		List<MachineRecipe.ItemInput> inputItems = new ArrayList<>();
+		if ((flags & HAS_INPUT_ITEMS) != 0) {
+			int size = buf.readVarInt();
+			for (int i = 0; i < size; i++) {
+				Ingredient ingredient = dictionary.readIngredient(buf);
+				inputItems.add(new MachineRecipe.ItemInput(ingredient, buf.readVarInt()));
+			}
+		}
+
+		List<MachineRecipe.ItemOutput> outputItems = new ArrayList<>();
+		if ((flags & HAS_OUTPUT_ITEMS) != 0) {
+			int size = buf.readVarInt();
+			long mask = buf.readVarLong();
+			for (int i = 0; i < size; i++) {
+				outputItems.add(new MachineRecipe.ItemOutput(buf.readItem(), readChance(buf, mask, i)));
+			}
+		}
+
+		List<MachineRecipe.FluidInput> inputFluids = new ArrayList<>();
+		if ((flags & HAS_INPUT_FLUIDS) != 0) {
+			int size = buf.readVarInt();
+			for (int i = 0; i < size; i++) {
+				inputFluids.add(new MachineRecipe.FluidInput(dictionary.readFluid(buf)));
+			}
+		}
+
+		List<MachineRecipe.FluidOutput> outputFluids = new ArrayList<>();
+		if ((flags & HAS_OUTPUT_FLUIDS) != 0) {
+			int size = buf.readVarInt();
+			long mask = buf.readVarLong();
+			for (int i = 0; i < size; i++) {
+				FluidStack fluid = dictionary.readFluid(buf);
+				outputFluids.add(new MachineRecipe.FluidOutput(fluid, readChance(buf, mask, i)));
+			}
+		}
+
+		int inputEnergy = (flags & HAS_INPUT_ENERGY) != 0 ? buf.readVarInt() : 0;
+		int outputEnergy = (flags & HAS_OUTPUT_ENERGY) != 0 ? buf.readVarInt() : 0;
+		int duration = (flags & HAS_DURATION) != 0 ? buf.readVarInt() : DEFAULT_DURATION;
+
+		return new MachineRecipe(id, recipeTypeId, inputItems, outputItems, inputFluids, outputFluids, inputEnergy, outputEnergy, duration);
+	}
+
+	/**
+	 * 前 {@link #CHANCE_MASK_BITS} 个产出中概率小于 1 的各占一位, 之后的产出总是写入概率
+	 */
+	private static void writeChanceMask(FriendlyByteBuf buf, int size, IntToDoubleFunction chance) {
+		long mask = 0;
+		for (int i = 0; i < Math.min(size, CHANCE_MASK_BITS); i++) {
+			if (chance.applyAsDouble(i) < 1D) {
+				mask |= 1L << i;
+			}
+		}
+		buf.writeVarLong(mask);
+	}
+
+	private static void writeChance(FriendlyByteBuf buf, int index, double chance) {
+		if (chance < 1D || index >= CHANCE_MASK_BITS) {
+			buf.writeVarInt((int) Math.round(Math.max(0D, Math.min(1D, chance)) * CHANCE_SCALE));
+		}
+	}
+
+	private static double readChance(FriendlyByteBuf buf, long mask, int index) {
+		if (index < CHANCE_MASK_BITS && (mask & (1L << index)) == 0) {
+			return 1D;
+		}
+		return buf.readVarInt() / (double) CHANCE_SCALE;
+	}
+
+	private record FluidKey(Fluid fluid, @Nullable CompoundTag tag) {
+	}
+
+	private static final class WriteDictionary {
+		private WeakReference<FriendlyByteBuf> owner = new WeakReference<>(null);
+		private final Reference2IntOpenHashMap<Ingredient> ingredientInstances = new Reference2IntOpenHashMap<>();
+		private final Object2IntOpenHashMap<ByteBuffer> ingredients = new Object2IntOpenHashMap<>();
+		private final Object2IntOpenHashMap<FluidKey> fluids = new Object2IntOpenHashMap<>();
+
+		private WriteDictionary() {
+			ingredientInstances.defaultReturnValue(-1);
+			ingredients.defaultReturnValue(-1);
+			fluids.defaultReturnValue(-1);
+		}
+
+		private WriteDictionary bind(FriendlyByteBuf buf) {
+			if (owner.get() != buf) {
+				owner = new WeakReference<>(buf);
+				ingredientInstances.clear();
+				ingredients.clear();
+				fluids.clear();
+			}
+			return this;
+		}
+
+		private void writeIngredient(FriendlyByteBuf buf, Ingredient ingredient) {
+			int index = ingredientInstances.getInt(ingredient);
+			if (index >= 0) {
+				buf.writeVarInt(index + 1);
+				return;
+			}
+
+			FriendlyByteBuf scratch = new FriendlyByteBuf(Unpooled.buffer());
+			try {
+				ingredient.toNetwork(scratch);
+				byte[] bytes = new byte[scratch.readableBytes()];
+				scratch.readBytes(bytes);
+
+				ByteBuffer key = ByteBuffer.wrap(bytes);
+				index = ingredients.getInt(key);
+				if (index >= 0) {
+					ingredientInstances.put(ingredient, index);
+					buf.writeVarInt(index + 1);
+					return;
+				}
+
+				index = ingredients.size();
+				ingredients.put(key, index);
+				ingredientInstances.put(ingredient, index);
+				buf.writeVarInt(0);
+				buf.writeBytes(bytes);
+			} finally {
+				scratch.release();
+			}
+		}
+
+		private void writeFluid(FriendlyByteBuf buf, FluidStack stack) {
+			FluidKey key = new FluidKey(stack.getFluid(), stack.getTag());
+			int index = fluids.getInt(key);
+			if (index >= 0) {
+				buf.writeVarInt(index + 1);
+				return;
+			}
+
+			fluids.put(key, fluids.size());
+			buf.writeVarInt(0);
+			buf.writeRegistryIdUnsafe(ForgeRegistries.FLUIDS, stack.getFluid());
+			buf.writeNbt(stack.getTag());
+		}
+	}
+
+	private static final class ReadDictionary {
+		private WeakReference<FriendlyByteBuf> owner = new WeakReference<>(null);
+		private final List<Ingredient> ingredients = new ArrayList<>();
+		private final List<FluidKey> fluids = new ArrayList<>();
+
+		private ReadDictionary bind(FriendlyByteBuf buf) {
+			if (owner.get() != buf) {
+				owner = new WeakReference<>(buf);
+				ingredients.clear();
+				fluids.clear();
+			}
+			return this;
+		}
+
+		private Ingredient readIngredient(FriendlyByteBuf buf) {
+			int index = buf.readVarInt();
+			if (index > 0) {
+				return ingredients.get(index - 1);
+			}
+
+			Ingredient ingredient = Ingredient.fromNetwork(buf);
+			ingredients.add(ingredient);
+			return ingredient;
+		}
+
+		/**
+		 * 读取字典项及其后的数量
+		 */
+		private FluidStack readFluid(FriendlyByteBuf buf) {
+			int index = buf.readVarInt();
+			FluidKey key;
+			if (index > 0) {
+				key = fluids.get(index - 1);
+			} else {
+				key = new FluidKey(buf.readRegistryIdUnsafe(ForgeRegistries.FLUIDS), buf.readNbt());
+				fluids.add(key);
+			}
+
+			FluidStack stack = new FluidStack(key.fluid(), buf.readVarInt());
+			if (key.tag() != null) {
+				stack.setTag(key.tag().copy());
+			}
+			return stack;
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package dev.celestiacraft.libs.common.recipe.machine;
+
+import net.minecraftforge.energy.IEnergyStorage;
+import net.minecraftforge.fluids.capability.IFluidHandler;
+import net.minecraftforge.items.IItemHandler;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 一次配方运行所使用的输入 / 输出容器集合
+ *
+ * <p>
+ * 将物品、流体、能量的输入输出端打包在一起,
+ * 供 {@link MachineRecipe#getMaxParallel(MachineRecipeIO, int)} 与 {@link MachineRecipe#craft(net.minecraft.world.level.Level, MachineRecipeIO, int)}
+ * 在一次调用中完成匹配、消耗与产出
+ * </p>
+ *
+ * <p>
+ * 未设置的容器为 {@code null}, 配方若需要该类容器则视为无法运行
+ * </p>
+ *
+ * <p>
+ * 默认按位置匹配: 第 i 个物品 / 流体输入对应 {@code start + i}, 第 i 个物品输出写入 {@code start + i}.
+ * 调用 {@link Builder#pooled()} 后改为合并匹配: 输入从任意槽位收集, 输出自动堆叠到任意空位,
+ * 适合多个输入 / 输出仓合并成的容器
+ * </p>
+ *
+ * <pre>{@code
+ * MachineRecipeIO io = MachineRecipeIO.builder()
+ *         .itemInputs(inputHandler, 0)
+ *         .itemOutputs(outputHandler, 0)
+ *         .fluidOutputs(fluidHandler)
+ *         .energy(energyStorage)
+ *         .build();
+ * }</pre>
+ */
+public record MachineRecipeIO(
+		@Nullable IItemHandler itemInputs,
+		int itemInputStart,
+		@Nullable IItemHandler itemOutputs,
+		int itemOutputStart,
+		@Nullable IFluidHandler fluidInputs,
+		int fluidInputStart,
+		@Nullable IFluidHandler fluidOutputs,
+		@Nullable IEnergyStorage energy,
+		boolean pooled
+) {
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public static class Builder {
+		private IItemHandler itemInputs;
+		private int itemInputStart;
+		private IItemHandler itemOutputs;
+		private int itemOutputStart;
+		private IFluidHandler fluidInputs;
+		private int fluidInputStart;
+		private IFluidHandler fluidOutputs;
+		private IEnergyStorage energy;
+		private boolean pooled;
+
+		private Builder() {
+		}
+
+		public Builder itemInputs(@Nullable IItemHandler handler, int startSlot) {
+			this.itemInputs = handler;
+			this.itemInputStart = startSlot;
+			return this;
+		}
+
+		public Builder itemOutputs(@Nullable IItemHandler handler, int startSlot) {
+			this.itemOutputs = handler;
+			this.itemOutputStart = startSlot;
+			return this;
+		}
+
+		public Builder fluidInputs(@Nullable IFluidHandler handler, int startTank) {
+			this.fluidInputs = handler;
+			this.fluidInputStart = startTank;
+			return this;
+		}
+
+		public Builder fluidOutputs(@Nullable IFluidHandler handler) {
+			this.fluidOutputs = handler;
+			return this;
+		}
+
+		public Builder energy(@Nullable IEnergyStorage energy) {
+			this.energy = energy;
+			return this;
+		}
+
+		/**
+		 * 使用合并匹配, 忽略起始槽位
+		 */
+		public Builder pooled() {
+			this.pooled = true;
+			return this;
+		}
+
+		public MachineRecipeIO build() {
+			return new MachineRecipeIO(
+					itemInputs,
+					itemInputStart,
+					itemOutputs,
+					itemOutputStart,
+					fluidInputs,
+					fluidInputStart,
+					fluidOutputs,
+					energy,
+					pooled
+			);
+		}
+	}
+}
@@ -0,0 +1,420 @@
+package dev.celestiacraft.libs.common.recipe.machine;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import dev.celestiacraft.libs.NebulaLibs;
+import dev.celestiacraft.libs.config.CommonConfig;
+import dev.celestiacraft.libs.mixin.IngredientAccessor;
+import io.netty.buffer.Unpooled;
+import net.minecraft.Util;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.tags.TagKey;
+import net.minecraft.util.GsonHelper;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.crafting.Ingredient;
+import net.minecraft.world.item.crafting.RecipeSerializer;
+import net.minecraft.world.level.material.Fluid;
+import net.minecraftforge.fluids.FluidStack;
+import net.minecraftforge.fml.ModList;
+import net.minecraftforge.fml.loading.FMLPaths;
+import net.minecraftforge.registries.ForgeRegistries;
+import net.minecraftforge.registries.IForgeRegistry;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * 机器配方预加载
+ *
+ * <p>
+ * 数据包重载时 {@link net.minecraft.world.item.crafting.RecipeManager} 在主线程逐个解析配方.
+ * 本类在其开始之前(见 {@code RecipeManagerMixin})一次性处理所有 {@link MachineRecipeSerializer} 类型的配方,
+ * 之后 {@link MachineRecipeSerializer#fromJson} 直接取出结果
+ * </p>
+ *
+ * <ul>
+ *     <li>解析分为两步: JSON 结构, 注册名查询与 NBT 文本解析({@link MachineRecipe#parse})不调用其他模组的代码,
+ *     在 fork-join 公共线程池上并行执行; 创建 {@link ItemStack}(会触发 {@code AttachCapabilitiesEvent})
+ *     与 {@link Ingredient}(会调用 Forge 原料序列化器)仍在重载线程上依次完成</li>
+ *     <li>解析失败的配方不会预先缓存, 由原流程在主线程重新解析并按原样报错, 条件不满足的配方也不受影响</li>
+ *     <li>开启 {@link CommonConfig#MACHINE_RECIPE_CACHE} 后, 解析结果以二进制写入 {@code nebula/cache},
+ *     机器配方 JSON 与模组列表的 SHA-256 不变时直接读取缓存, 完全跳过 JSON 解析;
+ *     缓存内容在重载线程上序列化, 只有文件写入交给 IO 线程池</li>
+ *     <li>缓存中的物品, 流体与标签按注册名保存, 不依赖数字 ID; 任何一项无法还原时整个缓存作废</li>
+ * </ul>
+ *
+ * <p>
+ * 预解析结果按配方 ID 与 JSON 对象本身匹配, 只在同一次 {@code apply} 内有效
+ * </p>
+ */
+public final class MachineRecipeLoader {
+	private static final int CACHE_MAGIC = 0x4E4D5243;
+	private static final int CACHE_FORMAT = 1;
+	private static final Path CACHE_FILE = FMLPaths.GAMEDIR.get().resolve("nebula").resolve("cache").resolve("machine_recipes.bin");
+
+	private static final int INGREDIENT_VALUES = 0;
+	private static final int INGREDIENT_JSON = 1;
+	private static final int VALUE_ITEM = 0;
+	private static final int VALUE_TAG = 1;
+
+	private static final Map<ResourceLocation, Prepared> PREPARED = new ConcurrentHashMap<>();
+
+	private MachineRecipeLoader() {
+	}
+
+	/**
+	 * 预解析所有机器配方, 在 {@code RecipeManager#apply} 开始时调用
+	 *
+	 * @param recipes 本次重载的全部配方 JSON
+	 */
+	public static void prepare(Map<ResourceLocation, JsonElement> recipes) {
+		PREPARED.clear();
+		if (!CommonConfig.PARALLEL_MACHINE_RECIPE_LOADING.get() && !CommonConfig.MACHINE_RECIPE_CACHE.get()) {
+			return;
+		}
+
+		long start = System.nanoTime();
+		List<Entry> entries = collectEntries(recipes);
+		if (entries.isEmpty()) {
+			return;
+		}
+
+		byte[] hash = CommonConfig.MACHINE_RECIPE_CACHE.get() ? hash(entries) : null;
+		if (hash != null && readCache(entries, hash)) {
+			NebulaLibs.LOGGER.info("Loaded {} machine recipes from cache in {} ms", PREPARED.size(), (System.nanoTime() - start) / 1000000L);
+			return;
+		}
+
+		MachineRecipe.Draft[] drafts = new MachineRecipe.Draft[entries.size()];
+		IntStream indices = IntStream.range(0, drafts.length);
+		if (CommonConfig.PARALLEL_MACHINE_RECIPE_LOADING.get()) {
+			indices = indices.parallel();
+		}
+		indices.forEach((index) -> {
+			Entry entry = entries.get(index);
+			try {
+				drafts[index] = MachineRecipe.parse(entry.id(), entry.recipeTypeId(), entry.json());
+			} catch (RuntimeException exception) {
+				NebulaLibs.LOGGER.debug("Deferring machine recipe {} to the main thread", entry.id(), exception);
+			}
+		});
+
+		for (int index = 0; index < drafts.length; index++) {
+			if (drafts[index] == null) {
+				continue;
+			}
+			Entry entry = entries.get(index);
+			try {
+				PREPARED.put(entry.id(), new Prepared(entry.json(), drafts[index].build()));
+			} catch (RuntimeException exception) {
+				NebulaLibs.LOGGER.debug("Deferring machine recipe {} to the main thread", entry.id(), exception);
+			}
+		}
+		NebulaLibs.LOGGER.info("Parsed {} of {} machine recipes in {} ms", PREPARED.size(), entries.size(), (System.nanoTime() - start) / 1000000L);
+
+		if (hash != null) {
+			writeCache(entries, hash);
+		}
+	}
+
+	/**
+	 * 取出预解析的配方, 没有或 JSON 不是同一个对象时返回 {@code null}
+	 */
+	@Nullable
+	public static MachineRecipe take(ResourceLocation id, JsonObject json) {
+		Prepared prepared = PREPARED.remove(id);
+		return prepared != null && prepared.json() == json ? prepared.recipe() : null;
+	}
+
+	/**
+	 * 清除未被取出的结果, 在 {@code RecipeManager#apply} 结束时调用
+	 */
+	public static void finish() {
+		PREPARED.clear();
+	}
+
+	private static List<Entry> collectEntries(Map<ResourceLocation, JsonElement> recipes) {
+		List<Entry> entries = new ArrayList<>();
+		for (Map.Entry<ResourceLocation, JsonElement> entry : recipes.entrySet()) {
+			if (!(entry.getValue() instanceof JsonObject json) || !json.has("type")) {
+				continue;
+			}
+
+			ResourceLocation type = ResourceLocation.tryParse(GsonHelper.getAsString(json, "type", ""));
+			RecipeSerializer<?> serializer = type == null ? null : ForgeRegistries.RECIPE_SERIALIZERS.getValue(type);
+			if (serializer instanceof MachineRecipeSerializer machineSerializer) {
+				entries.add(new Entry(entry.getKey(), machineSerializer.getRecipeTypeId(), json));
+			}
+		}
+		entries.sort(Comparator.comparing(Entry::id));
+		return entries;
+	}
+
+	@Nullable
+	private static byte[] hash(List<Entry> entries) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(Integer.toString(CACHE_FORMAT).getBytes(StandardCharsets.UTF_8));
+			ModList.get().getMods().stream()
+					.map((mod) -> mod.getModId() + "@" + mod.getVersion() + "\n")
+					.sorted()
+					.forEach((line) -> digest.update(line.getBytes(StandardCharsets.UTF_8)));
+			for (Entry entry : entries) {
+				digest.update((entry.id() + "\n" + entry.json() + "\n").getBytes(StandardCharsets.UTF_8));
+			}
+			return digest.digest();
+		} catch (NoSuchAlgorithmException exception) {
+			NebulaLibs.LOGGER.warn("SHA-256 is unavailable, machine recipe cache disabled", exception);
+			return null;
+		}
+	}
+
+	private static boolean readCache(List<Entry> entries, byte[] hash) {
+		if (!Files.isRegularFile(CACHE_FILE)) {
+			return false;
+		}
+
+		FriendlyByteBuf buf = null;
+		try {
+			buf = new FriendlyByteBuf(Unpooled.wrappedBuffer(Files.readAllBytes(CACHE_FILE)));
+			if (buf.readInt() != CACHE_MAGIC || buf.readVarInt() != CACHE_FORMAT || !Arrays.equals(buf.readByteArray(64), hash)) {
+				return false;
+			}
+
+			Map<ResourceLocation, JsonObject> jsons = new HashMap<>(entries.size());
+			for (Entry entry : entries) {
+				jsons.put(entry.id(), entry.json());
+			}
+
+			int size = buf.readVarInt();
+			for (int i = 0; i < size; i++) {
+				MachineRecipe recipe = readRecipe(buf);
+				JsonObject json = jsons.get(recipe.getId());
+				if (json == null) {
+					throw new IllegalStateException("Cached recipe is not in the datapacks: " + recipe.getId());
+				}
+				PREPARED.put(recipe.getId(), new Prepared(json, recipe));
+			}
+			return true;
+		} catch (IOException | RuntimeException exception) {
+			NebulaLibs.LOGGER.warn("Machine recipe cache is unreadable, parsing JSON instead", exception);
+			PREPARED.clear();
+			return false;
+		} finally {
+			if (buf != null) {
+				buf.release();
+			}
+		}
+	}
+
+	/**
+	 * 写入配方缓存
+	 *
+	 * <p>
+	 * 序列化(包括 {@code Ingredient#toJson}) 与解析一样留在重载线程上完成, IO 线程池只负责把生成的字节写入文件
+	 * </p>
+	 */
+	private static void writeCache(List<Entry> entries, byte[] hash) {
+		byte[] bytes;
+		FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer());
+		try {
+			int count = 0;
+			for (Entry entry : entries) {
+				if (PREPARED.containsKey(entry.id())) {
+					count++;
+				}
+			}
+
+			buf.writeInt(CACHE_MAGIC);
+			buf.writeVarInt(CACHE_FORMAT);
+			buf.writeByteArray(hash);
+			buf.writeVarInt(count);
+			for (Entry entry : entries) {
+				Prepared prepared = PREPARED.get(entry.id());
+				if (prepared != null) {
+					writeRecipe(buf, prepared.recipe());
+				}
+			}
+
+			bytes = new byte[buf.readableBytes()];
+			buf.readBytes(bytes);
+		} catch (RuntimeException exception) {
+			NebulaLibs.LOGGER.warn("Failed to write machine recipe cache", exception);
+			return;
+		} finally {
+			buf.release();
+		}
+
+		Util.ioPool().execute(() -> {
+			try {
+				Files.createDirectories(CACHE_FILE.getParent());
+				Path temp = CACHE_FILE.resolveSibling(CACHE_FILE.getFileName() + ".tmp");
+				Files.write(temp, bytes);
+				Files.move(temp, CACHE_FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException exception) {
+				NebulaLibs.LOGGER.warn("Failed to write machine recipe cache", exception);
+			}
+		});
+	}
+
+	private static void writeRecipe(FriendlyByteBuf buf, MachineRecipe recipe) {
+		buf.writeResourceLocation(recipe.getId());
+		buf.writeResourceLocation(recipe.getRecipeTypeId());
+
+		buf.writeCollection(recipe.getInputItems(), (buffer, input) -> {
+			writeIngredient(buffer, input.ingredient());
+			buffer.writeVarInt(input.count());
+		});
+		buf.writeCollection(recipe.getOutputItems(), (buffer, output) -> {
+			writeName(buffer, ForgeRegistries.ITEMS, output.stack().getItem());
+			buffer.writeVarInt(output.stack().getCount());
+			buffer.writeNbt(output.stack().getTag());
+			buffer.writeDouble(output.chance());
+		});
+		buf.writeCollection(recipe.getInputFluids(), (buffer, input) -> {
+			writeFluid(buffer, input.stack());
+		});
+		buf.writeCollection(recipe.getOutputFluids(), (buffer, output) -> {
+			writeFluid(buffer, output.stack());
+			buffer.writeDouble(output.chance());
+		});
+
+		buf.writeVarInt(recipe.getInputEnergy());
+		buf.writeVarInt(recipe.getOutputEnergy());
+		buf.writeVarInt(recipe.getDuration());
+	}
+
+	private static MachineRecipe readRecipe(FriendlyByteBuf buf) {
+		ResourceLocation id = buf.readResourceLocation();
+		ResourceLocation recipeTypeId = buf.readResourceLocation();
+
+		List<MachineRecipe.ItemInput> inputItems = buf.readList((buffer) -> {
+			return new MachineRecipe.ItemInput(readIngredient(buffer), buffer.readVarInt());
+		});
+		List<MachineRecipe.ItemOutput> outputItems = buf.readList((buffer) -> {
+			ItemStack stack = new ItemStack(readName(buffer, ForgeRegistries.ITEMS), buffer.readVarInt());
+			stack.setTag(buffer.readNbt());
+			return new MachineRecipe.ItemOutput(stack, buffer.readDouble());
+		});
+		List<MachineRecipe.FluidInput> inputFluids = buf.readList((buffer) -> {
+			return new MachineRecipe.FluidInput(readFluid(buffer));
+		});
+		List<MachineRecipe.FluidOutput> outputFluids = buf.readList((buffer) -> {
+			return new MachineRecipe.FluidOutput(readFluid(buffer), buffer.readDouble());
+		});
+
+		return new MachineRecipe(
+				id,
+				recipeTypeId,
+				inputItems,
+				outputItems,
+				inputFluids,
+				outputFluids,
+				buf.readVarInt(),
+				buf.readVarInt(),
+				buf.readVarInt()
+		);
+	}
+
+	/**
+	 * 原版物品/标签组成的原料按注册名保存, 其他类型的原料保存为 JSON
+	 */
+	private static void writeIngredient(FriendlyByteBuf buf, Ingredient ingredient) {
+		Ingredient.Value[] values = ingredient.getClass() == Ingredient.class ? ((IngredientAccessor) (Object) ingredient).nebula$getValues() : null;
+		if (values == null || !Arrays.stream(values).allMatch((value) -> value.getClass() == Ingredient.ItemValue.class || value.getClass() == Ingredient.TagValue.class)) {
+			buf.writeByte(INGREDIENT_JSON);
+			buf.writeUtf(ingredient.toJson().toString(), Integer.MAX_VALUE);
+			return;
+		}
+
+		buf.writeByte(INGREDIENT_VALUES);
+		buf.writeVarInt(values.length);
+		for (Ingredient.Value value : values) {
+			if (value instanceof Ingredient.TagValue) {
+				buf.writeByte(VALUE_TAG);
+				buf.writeResourceLocation(ResourceLocation.parse(GsonHelper.getAsString(value.serialize(), "tag")));
+			} else {
+				ItemStack stack = value.getItems().iterator().next();
+				buf.writeByte(VALUE_ITEM);
+				writeName(buf, ForgeRegistries.ITEMS, stack.getItem());
+				buf.writeNbt(stack.getTag());
+			}
+		}
+	}
+
+	private static Ingredient readIngredient(FriendlyByteBuf buf) {
+		if (buf.readByte() == INGREDIENT_JSON) {
+			return Ingredient.fromJson(JsonParser.parseString(buf.readUtf(Integer.MAX_VALUE)));
+		}
+
+		int size = buf.readVarInt();
+		Ingredient.Value[] values = new Ingredient.Value[size];
+		for (int i = 0; i < size; i++) {
+			if (buf.readByte() == VALUE_TAG) {
+				values[i] = new Ingredient.TagValue(TagKey.create(Registries.ITEM, buf.readResourceLocation()));
+			} else {
+				ItemStack stack = new ItemStack(readName(buf, ForgeRegistries.ITEMS));
+				stack.setTag(buf.readNbt());
+				values[i] = new Ingredient.ItemValue(stack);
+			}
+		}
+		return Ingredient.fromValues(Arrays.stream(values));
+	}
+
+	private static void writeFluid(FriendlyByteBuf buf, FluidStack stack) {
+		writeName(buf, ForgeRegistries.FLUIDS, stack.getFluid());
+		buf.writeVarInt(stack.getAmount());
+		buf.writeNbt(stack.getTag());
+	}
+
+	private static FluidStack readFluid(FriendlyByteBuf buf) {
+		Fluid fluid = readName(buf, ForgeRegistries.FLUIDS);
+		FluidStack stack = new FluidStack(fluid, buf.readVarInt());
+		CompoundTag tag = buf.readNbt();
+		if (tag != null) {
+			stack.setTag(tag);
+		}
+		return stack;
+	}
+
+	private static <T> void writeName(FriendlyByteBuf buf, IForgeRegistry<T> registry, T value) {
+		ResourceLocation name = registry.getKey(value);
+		if (name == null) {
+			throw new IllegalStateException("Unregistered " + registry.getRegistryName() + " entry: " + value);
+		}
+		buf.writeResourceLocation(name);
+	}
+
+	private static <T> T readName(FriendlyByteBuf buf, IForgeRegistry<T> registry) {
+		ResourceLocation name = buf.readResourceLocation();
+		T value = registry.containsKey(name) ? registry.getValue(name) : null;
+		if (value == null) {
+			throw new IllegalStateException("Unknown " + registry.getRegistryName() + " entry: " + name);
+		}
+		return value;
+	}
+
+	private record Entry(ResourceLocation id, ResourceLocation recipeTypeId, JsonObject json) {
+	}
+
+	private record Prepared(JsonObject json, MachineRecipe recipe) {
+	}
+}
@@ -1,12 +1,14 @@
 package dev.celestiacraft.libs.common.recipe.machine;
 
 import com.google.gson.JsonObject;
+import lombok.Getter;
 import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.world.item.crafting.RecipeSerializer;
 import org.jetbrains.annotations.NotNull;
 
 public class MachineRecipeSerializer implements RecipeSerializer<MachineRecipe> {
+	@Getter
 	private final ResourceLocation recipeTypeId;
 
 	public MachineRecipeSerializer(ResourceLocation recipeTypeId) {
@@ -15,6 +17,10 @@ public class MachineRecipeSerializer implements RecipeSerializer<MachineRecipe>
 
 	@Override
 	public @NotNull MachineRecipe fromJson(@NotNull ResourceLocation id, @NotNull JsonObject json) {
+		MachineRecipe prepared = MachineRecipeLoader.take(id, json);
+		if (prepared != null) {
+			return prepared;
+		}
 		return MachineRecipe.fromJson(id, recipeTypeId, json);
 	}
 
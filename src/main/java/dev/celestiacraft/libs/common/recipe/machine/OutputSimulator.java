@@ -0,0 +1,407 @@
+package dev.celestiacraft.libs.common.recipe.machine;
+
+import net.minecraft.world.item.ItemStack;
+import net.minecraftforge.fluids.FluidStack;
+import net.minecraftforge.fluids.capability.IFluidHandler;
+import net.minecraftforge.items.IItemHandler;
+import net.minecraftforge.items.ItemHandlerHelper;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 配方输出暂存模拟器
+ *
+ * <p>
+ * 在一份可复用的暂存模型上一次性模拟配方的全部输出(或 N 次并行合成),
+ * 代替逐个输出调用 {@code insertItem(..., true)} / {@code fill(SIMULATE)} 的检查方式
+ * </p>
+ *
+ * <ul>
+ *     <li>试算过程不复制 {@link ItemStack} / {@link FluidStack}, 内部数组按需扩容后复用</li>
+ *     <li>多个流体输出竞争同一个储罐时按累计量计算, 不会重复占用同一份空间</li>
+ *     <li>返回当前库存最多能放下的合成次数</li>
+ *     <li>暂存模型只依据 {@code isItemValid} / {@code isFluidValid} 与容量判断空间,
+ *     结果最后再用容器自身的 {@code insertItem} / {@code fill} 模拟一次确认, 插入逻辑更严格的容器不会被高估;
+ *     确认用的物品 / 流体按输出位置各保留一份, 同一配方反复检查时只修改数量</li>
+ * </ul>
+ *
+ * <p>
+ * 物品输出沿用 {@link MachineRecipe} 的约定: 第 i 个输出固定写入 {@code startSlot + i},
+ * 流体输出按 "已有同种流体的储罐 -> 空储罐" 的顺序分配.
+ * 合并模式({@link #getMaxPooledItemCrafts(MachineRecipe, IItemHandler, int)})下物品输出也按
+ * "可堆叠的槽位 -> 空槽位" 的顺序分配, 与 {@link ItemHandlerHelper#insertItemStacked(IItemHandler, ItemStack, boolean)} 一致
+ * </p>
+ *
+ * <p>
+ * 实例不是线程安全的, 通常每个线程或每个控制器持有一个
+ * </p>
+ */
+public final class OutputSimulator {
+	private FluidStack[] tankFluids = new FluidStack[0];
+	private int[] tankAmounts = new int[0];
+	private int[] tankCapacities = new int[0];
+	private FluidStack[] trialFluids = new FluidStack[0];
+	private long[] trialAmounts = new long[0];
+	private int tankCount;
+	private ItemStack[] slotStacks = new ItemStack[0];
+	private int[] slotLimits = new int[0];
+	private ItemStack[] trialStacks = new ItemStack[0];
+	private long[] trialCounts = new long[0];
+	private int slotCount;
+	private ItemStack[] confirmItemSources = new ItemStack[0];
+	private ItemStack[] confirmItems = new ItemStack[0];
+	private FluidStack[] confirmFluidSources = new FluidStack[0];
+	private FluidStack[] confirmFluids = new FluidStack[0];
+
+	/**
+	 * 计算物品与流体输出同时能放下的最大合成次数
+	 *
+	 * @param recipe    待模拟的配方
+	 * @param items     物品输出容器, 为 {@code null} 时若配方有物品输出则返回 0
+	 * @param startSlot 物品输出的起始槽位
+	 * @param fluids    流体输出容器, 为 {@code null} 时若配方有流体输出则返回 0
+	 * @param limit     最多检查的合成次数
+	 * @return 能放下的合成次数, 范围 {@code [0, limit]}
+	 */
+	public int getMaxCrafts(MachineRecipe recipe, @Nullable IItemHandler items, int startSlot, @Nullable IFluidHandler fluids, int limit) {
+		int crafts = getMaxItemCrafts(recipe, items, startSlot, limit);
+		if (crafts <= 0) {
+			return 0;
+		}
+		return getMaxFluidCrafts(recipe, fluids, crafts);
+	}
+
+	/**
+	 * 计算物品输出能放下的最大合成次数
+	 */
+	public int getMaxItemCrafts(MachineRecipe recipe, @Nullable IItemHandler handler, int startSlot, int limit) {
+		List<MachineRecipe.ItemOutput> outputs = recipe.getOutputItems();
+		if (limit <= 0) {
+			return 0;
+		}
+		if (outputs.isEmpty()) {
+			return limit;
+		}
+		if (handler == null) {
+			return 0;
+		}
+
+		long crafts = limit;
+		for (int i = 0; i < outputs.size() && crafts > 0; i++) {
+			ItemStack stack = outputs.get(i).stack();
+			crafts = Math.min(crafts, getItemSpace(handler, startSlot + i, stack) / stack.getCount());
+		}
+		return confirmItemCrafts(outputs, handler, startSlot, false, (int) crafts);
+	}
+
+	/**
+	 * 计算流体输出能放下的最大合成次数
+	 *
+	 * <p>
+	 * 先读取一次储罐快照, 之后对候选次数做二分查找,
+	 * 每次试算都在暂存数组上完成, 不会再访问容器
+	 * </p>
+	 */
+	public int getMaxFluidCrafts(MachineRecipe recipe, @Nullable IFluidHandler handler, int limit) {
+		List<MachineRecipe.FluidOutput> outputs = recipe.getOutputFluids();
+		if (limit <= 0) {
+			return 0;
+		}
+		if (outputs.isEmpty()) {
+			return limit;
+		}
+		if (handler == null) {
+			return 0;
+		}
+
+		loadTanks(handler);
+
+		long totalFree = 0;
+		for (int tank = 0; tank < tankCount; tank++) {
+			totalFree += Math.max(0, tankCapacities[tank] - tankAmounts[tank]);
+		}
+		long perCraft = 0;
+		for (MachineRecipe.FluidOutput output : outputs) {
+			perCraft += output.stack().getAmount();
+		}
+
+		int high = (int) Math.min(limit, perCraft <= 0 ? limit : totalFree / perCraft);
+		if (high <= 0) {
+			return 0;
+		}
+		if (fluidsFit(outputs, handler, high)) {
+			return confirmFluidCrafts(outputs, handler, high);
+		}
+
+		int low = 0;
+		high--;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (fluidsFit(outputs, handler, mid)) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return confirmFluidCrafts(outputs, handler, low);
+	}
+
+	/**
+	 * 合并模式下计算物品与流体输出同时能放下的最大合成次数
+	 */
+	public int getMaxPooledCrafts(MachineRecipe recipe, @Nullable IItemHandler items, @Nullable IFluidHandler fluids, int limit) {
+		int crafts = getMaxPooledItemCrafts(recipe, items, limit);
+		if (crafts <= 0) {
+			return 0;
+		}
+		return getMaxFluidCrafts(recipe, fluids, crafts);
+	}
+
+	/**
+	 * 合并模式下计算物品输出能放下的最大合成次数
+	 *
+	 * <p>
+	 * 输出可以写入容器的任意槽位, 先读取一次槽位快照再二分查找
+	 * </p>
+	 */
+	public int getMaxPooledItemCrafts(MachineRecipe recipe, @Nullable IItemHandler handler, int limit) {
+		List<MachineRecipe.ItemOutput> outputs = recipe.getOutputItems();
+		if (limit <= 0) {
+			return 0;
+		}
+		if (outputs.isEmpty()) {
+			return limit;
+		}
+		if (handler == null) {
+			return 0;
+		}
+
+		loadSlots(handler);
+
+		if (itemsFit(outputs, handler, limit)) {
+			return confirmItemCrafts(outputs, handler, 0, true, limit);
+		}
+
+		int low = 0;
+		int high = limit - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (itemsFit(outputs, handler, mid)) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return confirmItemCrafts(outputs, handler, 0, true, low);
+	}
+
+	/**
+	 * 计算某个槽位还能放入多少个与 {@code stack} 相同的物品
+	 *
+	 * <p>
+	 * 与 {@link net.minecraftforge.items.ItemStackHandler#insertItem(int, ItemStack, boolean)} 的判定保持一致,
+	 * 但不会复制传入的物品
+	 * </p>
+	 */
+	public static int getItemSpace(IItemHandler handler, int slot, ItemStack stack) {
+		if (stack.isEmpty() || slot < 0 || slot >= handler.getSlots() || !handler.isItemValid(slot, stack)) {
+			return 0;
+		}
+
+		int limit = Math.min(handler.getSlotLimit(slot), stack.getMaxStackSize());
+		ItemStack existing = handler.getStackInSlot(slot);
+		if (existing.isEmpty()) {
+			return limit;
+		}
+		if (!ItemHandlerHelper.canItemStacksStack(existing, stack)) {
+			return 0;
+		}
+		return Math.max(0, limit - existing.getCount());
+	}
+
+	/**
+	 * 用容器自身的模拟插入收紧暂存模型给出的物品输出次数
+	 *
+	 * <p>
+	 * 每个输出只模拟一次, 按实际接受的数量换算为次数; 合并模式使用
+	 * {@link ItemHandlerHelper#insertItemStacked(IItemHandler, ItemStack, boolean)}, 与实际写入方式一致
+	 * </p>
+	 */
+	private int confirmItemCrafts(List<MachineRecipe.ItemOutput> outputs, IItemHandler handler, int startSlot, boolean pooled, int crafts) {
+		if (confirmItems.length < outputs.size()) {
+			confirmItemSources = Arrays.copyOf(confirmItemSources, outputs.size());
+			confirmItems = Arrays.copyOf(confirmItems, outputs.size());
+		}
+
+		for (int i = 0; i < outputs.size() && crafts > 0; i++) {
+			ItemStack stack = outputs.get(i).stack();
+			int total = (int) Math.min(Integer.MAX_VALUE, (long) stack.getCount() * crafts);
+			ItemStack scratch = getConfirmItem(i, stack);
+			scratch.setCount(total);
+			ItemStack remainder = pooled
+					? ItemHandlerHelper.insertItemStacked(handler, scratch, true)
+					: handler.insertItem(startSlot + i, scratch, true);
+			crafts = Math.min(crafts, (total - remainder.getCount()) / stack.getCount());
+		}
+		return crafts;
+	}
+
+	/**
+	 * 用容器自身的 {@code fill(SIMULATE)} 收紧暂存模型给出的流体输出次数
+	 */
+	private int confirmFluidCrafts(List<MachineRecipe.FluidOutput> outputs, IFluidHandler handler, int crafts) {
+		if (confirmFluids.length < outputs.size()) {
+			confirmFluidSources = Arrays.copyOf(confirmFluidSources, outputs.size());
+			confirmFluids = Arrays.copyOf(confirmFluids, outputs.size());
+		}
+
+		for (int i = 0; i < outputs.size() && crafts > 0; i++) {
+			FluidStack stack = outputs.get(i).stack();
+			int total = (int) Math.min(Integer.MAX_VALUE, (long) stack.getAmount() * crafts);
+			FluidStack scratch = getConfirmFluid(i, stack);
+			scratch.setAmount(total);
+			int filled = handler.fill(scratch, IFluidHandler.FluidAction.SIMULATE);
+			crafts = Math.min(crafts, filled / stack.getAmount());
+		}
+		return crafts;
+	}
+
+	/**
+	 * 第 {@code index} 个物品输出的确认用副本, 只在输出换成另一份物品时才重新复制
+	 */
+	private ItemStack getConfirmItem(int index, ItemStack stack) {
+		if (confirmItemSources[index] != stack) {
+			confirmItemSources[index] = stack;
+			confirmItems[index] = stack.copy();
+		}
+		return confirmItems[index];
+	}
+
+	/**
+	 * 第 {@code index} 个流体输出的确认用副本, 只在输出换成另一份流体时才重新复制
+	 */
+	private FluidStack getConfirmFluid(int index, FluidStack stack) {
+		if (confirmFluidSources[index] != stack) {
+			confirmFluidSources[index] = stack;
+			confirmFluids[index] = stack.copy();
+		}
+		return confirmFluids[index];
+	}
+
+	private void loadTanks(IFluidHandler handler) {
+		tankCount = handler.getTanks();
+		if (tankFluids.length < tankCount) {
+			int size = Math.max(tankCount, tankFluids.length * 2);
+			tankFluids = Arrays.copyOf(tankFluids, size);
+			tankAmounts = Arrays.copyOf(tankAmounts, size);
+			tankCapacities = Arrays.copyOf(tankCapacities, size);
+			trialFluids = Arrays.copyOf(trialFluids, size);
+			trialAmounts = Arrays.copyOf(trialAmounts, size);
+		}
+
+		for (int tank = 0; tank < tankCount; tank++) {
+			FluidStack stored = handler.getFluidInTank(tank);
+			tankFluids[tank] = stored;
+			tankAmounts[tank] = stored.getAmount();
+			tankCapacities[tank] = handler.getTankCapacity(tank);
+		}
+	}
+
+	private void loadSlots(IItemHandler handler) {
+		slotCount = handler.getSlots();
+		if (slotStacks.length < slotCount) {
+			int size = Math.max(slotCount, slotStacks.length * 2);
+			slotStacks = Arrays.copyOf(slotStacks, size);
+			slotLimits = Arrays.copyOf(slotLimits, size);
+			trialStacks = Arrays.copyOf(trialStacks, size);
+			trialCounts = Arrays.copyOf(trialCounts, size);
+		}
+
+		for (int slot = 0; slot < slotCount; slot++) {
+			slotStacks[slot] = handler.getStackInSlot(slot);
+			slotLimits[slot] = handler.getSlotLimit(slot);
+		}
+	}
+
+	private boolean itemsFit(List<MachineRecipe.ItemOutput> outputs, IItemHandler handler, long crafts) {
+		for (int slot = 0; slot < slotCount; slot++) {
+			trialStacks[slot] = slotStacks[slot];
+			trialCounts[slot] = slotStacks[slot].getCount();
+		}
+
+		for (MachineRecipe.ItemOutput output : outputs) {
+			ItemStack stack = output.stack();
+			long remaining = (long) stack.getCount() * crafts;
+
+			for (int slot = 0; slot < slotCount && remaining > 0; slot++) {
+				if (trialCounts[slot] > 0 && ItemHandlerHelper.canItemStacksStack(trialStacks[slot], stack)) {
+					remaining -= fillSlotTrial(slot, stack, remaining);
+				}
+			}
+
+			for (int slot = 0; slot < slotCount && remaining > 0; slot++) {
+				if (trialCounts[slot] <= 0 && handler.isItemValid(slot, stack)) {
+					trialStacks[slot] = stack;
+					remaining -= fillSlotTrial(slot, stack, remaining);
+				}
+			}
+
+			if (remaining > 0) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private long fillSlotTrial(int slot, ItemStack stack, long amount) {
+		long filled = Math.min(amount, Math.min(slotLimits[slot], stack.getMaxStackSize()) - trialCounts[slot]);
+		if (filled <= 0) {
+			return 0;
+		}
+		trialCounts[slot] += filled;
+		return filled;
+	}
+
+	private boolean fluidsFit(List<MachineRecipe.FluidOutput> outputs, IFluidHandler handler, long crafts) {
+		for (int tank = 0; tank < tankCount; tank++) {
+			trialFluids[tank] = tankFluids[tank];
+			trialAmounts[tank] = tankAmounts[tank];
+		}
+
+		for (MachineRecipe.FluidOutput output : outputs) {
+			FluidStack stack = output.stack();
+			long remaining = stack.getAmount() * crafts;
+
+			for (int tank = 0; tank < tankCount && remaining > 0; tank++) {
+				if (trialAmounts[tank] > 0 && trialFluids[tank].isFluidEqual(stack)) {
+					remaining -= fillTrial(tank, remaining);
+				}
+			}
+
+			for (int tank = 0; tank < tankCount && remaining > 0; tank++) {
+				if (trialAmounts[tank] <= 0 && handler.isFluidValid(tank, stack)) {
+					trialFluids[tank] = stack;
+					remaining -= fillTrial(tank, remaining);
+				}
+			}
+
+			if (remaining > 0) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private long fillTrial(int tank, long amount) {
+		long filled = Math.min(amount, tankCapacities[tank] - trialAmounts[tank]);
+		if (filled <= 0) {
+			return 0;
+		}
+		trialAmounts[tank] += filled;
+		return filled;
+	}
+}
@@ -4,15 +4,14 @@ import mekanism.common.content.network.transmitter.Transmitter;
 import mekanism.common.tile.transmitter.TileEntityTransmitter;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
+import net.minecraft.world.level.BlockGetter;
 import net.minecraft.world.level.block.entity.BlockEntity;
 
-import java.util.Map;
+import java.util.Collection;
 
 public class MekanismTransmitterHelper {
-	public static void refreshConnections(Map<BlockPos, BlockEntity> blockEntities) {
-		for (Map.Entry<BlockPos, BlockEntity> entry : blockEntities.entrySet()) {
-			BlockEntity blockEntity = entry.getValue();
-
+	public static void refreshConnections(BlockGetter level, Collection<BlockEntity> blockEntities) {
+		for (BlockEntity blockEntity : blockEntities) {
 			if (!(blockEntity instanceof TileEntityTransmitter transmitterTile)) {
 				continue;
 			}
@@ -22,9 +21,9 @@ public class MekanismTransmitterHelper {
 			byte connections = 0x00;
 
 			for (Direction side : Direction.values()) {
-				BlockPos neighborPos = entry.getKey().relative(side);
+				BlockPos neighborPos = blockEntity.getBlockPos().relative(side);
 
-				BlockEntity neighborBlockEntity = blockEntities.get(neighborPos);
+				BlockEntity neighborBlockEntity = level.getBlockEntity(neighborPos);
 
 				if (neighborBlockEntity instanceof TileEntityTransmitter neighborTile) {
 					if (transmitter.supportsTransmissionType(neighborTile)
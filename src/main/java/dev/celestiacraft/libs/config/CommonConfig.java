@@ -11,6 +11,13 @@ public class CommonConfig {
 	public static final ForgeConfigSpec.BooleanValue ENABLE_LARGE_SPRUCE_PODZOL_CONVERSION;
 	public static final ForgeConfigSpec.ConfigValue<List<? extends String>> MUST_USE_TOOL_BLOCKS;
 
+	public static final ForgeConfigSpec.BooleanValue ENABLE_CONTROLLER_WATCHDOG;
+	public static final ForgeConfigSpec.IntValue CONTROLLER_TICK_BUDGET_MICROS;
+	public static final ForgeConfigSpec.IntValue CONTROLLER_THROTTLE_INTERVAL;
+	public static final ForgeConfigSpec.IntValue SCHEDULER_TICK_BUDGET_MICROS;
+	public static final ForgeConfigSpec.BooleanValue PARALLEL_MACHINE_RECIPE_LOADING;
+	public static final ForgeConfigSpec.BooleanValue MACHINE_RECIPE_CACHE;
+
 	static {
 		BUILDER.comment("All settings below will only take effect after restarting the server or client.")
 				.push("general");
@@ -36,6 +43,44 @@ public class CommonConfig {
 						List.of(),
 						CommonConfig::validateString
 				);
+
+		BUILDER.pop();
+		BUILDER.push("performance");
+
+		ENABLE_CONTROLLER_WATCHDOG = BUILDER
+				.comment("Whether to measure multiblock controller ticks and throttle controllers that exceed the budget")
+				.comment("Only applies to controllers ticked through IControllerRecipe#runTick")
+				.comment("Default value: true")
+				.define("enableControllerWatchdog", true);
+
+		CONTROLLER_TICK_BUDGET_MICROS = BUILDER
+				.comment("Average tick time (microseconds) a single controller may use before it is throttled")
+				.comment("Default value: 2000")
+				.defineInRange("controllerTickBudgetMicros", 2000, 1, 1000000);
+
+		CONTROLLER_THROTTLE_INTERVAL = BUILDER
+				.comment("Throttled controllers only tick once every this many ticks")
+				.comment("Default value: 10")
+				.defineInRange("controllerThrottleInterval", 10, 2, 1200);
+
+		SCHEDULER_TICK_BUDGET_MICROS = BUILDER
+				.comment("Time (microseconds) TickScheduler may spend running due tasks per server tick")
+				.comment("Tasks over the budget are carried over to the next tick, 0 disables the budget")
+				.comment("Default value: 5000")
+				.defineInRange("schedulerTickBudgetMicros", 5000, 0, 1000000);
+
+		PARALLEL_MACHINE_RECIPE_LOADING = BUILDER
+				.comment("Whether to parse machine recipe JSON on multiple threads during datapack reload")
+				.comment("Default value: true")
+				.define("parallelMachineRecipeLoading", true);
+
+		MACHINE_RECIPE_CACHE = BUILDER
+				.comment("Whether to keep a binary cache of parsed machine recipes in nebula/cache")
+				.comment("The cache is reused only when the machine recipe JSON and the mod list are unchanged")
+				.comment("Default value: false")
+				.define("machineRecipeCache", false);
+
+		BUILDER.pop();
 	}
 
 	public static final ForgeConfigSpec SPEC = BUILDER.build();
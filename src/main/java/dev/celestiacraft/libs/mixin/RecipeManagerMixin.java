@@ -0,0 +1,36 @@
+package dev.celestiacraft.libs.mixin;
+
+import com.google.gson.JsonElement;
+import dev.celestiacraft.libs.common.recipe.machine.MachineRecipeLoader;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.packs.resources.ResourceManager;
+import net.minecraft.util.profiling.ProfilerFiller;
+import net.minecraft.world.item.crafting.RecipeManager;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import java.util.Map;
+
+@Mixin(RecipeManager.class)
+public abstract class RecipeManagerMixin {
+	/**
+	 * 在逐个解析配方之前, 并行预解析所有机器配方
+	 */
+	@Inject(
+			method = "apply(Ljava/util/Map;Lnet/minecraft/server/packs/resources/ResourceManager;Lnet/minecraft/util/profiling/ProfilerFiller;)V",
+			at = @At("HEAD")
+	)
+	private void nebula$prepareMachineRecipes(Map<ResourceLocation, JsonElement> recipes, ResourceManager resourceManager, ProfilerFiller profiler, CallbackInfo ci) {
+		MachineRecipeLoader.prepare(recipes);
+	}
+
+	@Inject(
+			method = "apply(Ljava/util/Map;Lnet/minecraft/server/packs/resources/ResourceManager;Lnet/minecraft/util/profiling/ProfilerFiller;)V",
+			at = @At("RETURN")
+	)
+	private void nebula$clearMachineRecipes(Map<ResourceLocation, JsonElement> recipes, ResourceManager resourceManager, ProfilerFiller profiler, CallbackInfo ci) {
+		MachineRecipeLoader.finish();
+	}
+}
@@ -0,0 +1,161 @@
+package dev.celestiacraft.libs.network;
+
+import dev.celestiacraft.libs.NebulaLibs;
+import dev.celestiacraft.libs.network.packet.BlockEntityBatchPacket;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectLinkedOpenHashMap;
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.objects.ReferenceLinkedOpenHashSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.protocol.game.ClientboundBlockEntityDataPacket;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.server.ServerStoppedEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.network.PacketDistributor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 方块实体同步批处理器
+ *
+ * <p>
+ * 收集一个 Tick 内需要同步到客户端的方块实体, 在 Tick 结束时按区块分组,
+ * 每个区块发送 {@link BlockEntityBatchPacket} 给追踪该区块的玩家
+ * </p>
+ *
+ * <ul>
+ *     <li>同一个方块实体在一个 Tick 内多次排队只会同步一次</li>
+ *     <li>按编码后的大小拆分批次, 单个包不超过 {@link #MAX_BATCH_BYTES};
+ *     单个更新 NBT 本身就超过上限时改用原版 {@link ClientboundBlockEntityDataPacket} 单独发送</li>
+ *     <li>同步内容为方块实体的 {@link BlockEntity#getUpdateTag()}</li>
+ *     <li>只在服务端生效, 客户端调用会被忽略</li>
+ * </ul>
+ *
+ * <pre>{@code
+ * BlockEntitySyncBatcher.queue(this);
+ * }</pre>
+ */
+@Mod.EventBusSubscriber(modid = NebulaLibs.MODID, bus = Mod.EventBusSubscriber.Bus.FORGE)
+public final class BlockEntitySyncBatcher {
+	/**
+	 * 单个批量包的大小上限, 远低于自定义负载包约 1 MiB 的限制
+	 */
+	private static final int MAX_BATCH_BYTES = 512 * 1024;
+	/**
+	 * 每个方块实体除 NBT 外的坐标开销
+	 */
+	private static final int ENTRY_HEADER_BYTES = 3;
+
+	private static final ReferenceLinkedOpenHashSet<BlockEntity> PENDING = new ReferenceLinkedOpenHashSet<>();
+
+	private BlockEntitySyncBatcher() {
+	}
+
+	/**
+	 * 将方块实体加入本 Tick 的同步队列
+	 */
+	public static void queue(BlockEntity blockEntity) {
+		if (blockEntity.getLevel() instanceof ServerLevel) {
+			PENDING.add(blockEntity);
+		}
+	}
+
+	/**
+	 * 立即按区块发送所有排队的方块实体
+	 */
+	public static void flush() {
+		if (PENDING.isEmpty()) {
+			return;
+		}
+
+		Reference2ObjectLinkedOpenHashMap<ServerLevel, Long2ObjectLinkedOpenHashMap<List<BlockEntity>>> groups = new Reference2ObjectLinkedOpenHashMap<>();
+		for (BlockEntity blockEntity : PENDING) {
+			if (blockEntity.isRemoved() || !(blockEntity.getLevel() instanceof ServerLevel level)) {
+				continue;
+			}
+
+			groups.computeIfAbsent(level, (key) -> new Long2ObjectLinkedOpenHashMap<>())
+					.computeIfAbsent(ChunkPos.asLong(blockEntity.getBlockPos()), (key) -> new ArrayList<>())
+					.add(blockEntity);
+		}
+		PENDING.clear();
+
+		groups.forEach((level, chunks) -> {
+			chunks.forEach((chunkKey, blockEntities) -> {
+				sendChunk(level, new ChunkPos(chunkKey), blockEntities);
+			});
+		});
+	}
+
+	private static void sendChunk(ServerLevel level, ChunkPos chunkPos, List<BlockEntity> blockEntities) {
+		LevelChunk chunk = level.getChunkSource().getChunkNow(chunkPos.x, chunkPos.z);
+		if (chunk == null) {
+			return;
+		}
+
+		PacketDistributor.PacketTarget target = PacketDistributor.TRACKING_CHUNK.with(() -> chunk);
+		List<BlockPos> positions = new ArrayList<>(blockEntities.size());
+		List<CompoundTag> tags = new ArrayList<>(blockEntities.size());
+		FriendlyByteBuf scratch = new FriendlyByteBuf(Unpooled.buffer());
+		int batchBytes = 0;
+
+		try {
+			for (BlockEntity blockEntity : blockEntities) {
+				CompoundTag tag = blockEntity.getUpdateTag();
+				scratch.clear();
+				scratch.writeNbt(tag);
+				int size = scratch.readableBytes() + ENTRY_HEADER_BYTES;
+
+				if (size > MAX_BATCH_BYTES) {
+					target.send(ClientboundBlockEntityDataPacket.create(blockEntity, (ignored) -> tag));
+					continue;
+				}
+
+				if (batchBytes + size > MAX_BATCH_BYTES) {
+					sendBatch(target, chunkPos, positions, tags);
+					batchBytes = 0;
+				}
+
+				positions.add(blockEntity.getBlockPos());
+				tags.add(tag);
+				batchBytes += size;
+			}
+		} finally {
+			scratch.release();
+		}
+
+		sendBatch(target, chunkPos, positions, tags);
+	}
+
+	private static void sendBatch(PacketDistributor.PacketTarget target, ChunkPos chunkPos, List<BlockPos> positions, List<CompoundTag> tags) {
+		if (positions.isEmpty()) {
+			return;
+		}
+
+		NebulaNetwork.CHANNEL.send(target, BlockEntityBatchPacket.of(chunkPos, positions, tags));
+		positions.clear();
+		tags.clear();
+	}
+
+	@SubscribeEvent
+	public static void onServerTick(TickEvent.ServerTickEvent event) {
+		if (event.phase != TickEvent.Phase.END) {
+			return;
+		}
+
+		flush();
+	}
+
+	@SubscribeEvent
+	public static void onServerStopped(ServerStoppedEvent event) {
+		PENDING.clear();
+	}
+}
@@ -0,0 +1,54 @@
+package dev.celestiacraft.libs.network;
+
+import dev.celestiacraft.libs.NebulaLibs;
+import dev.celestiacraft.libs.network.packet.BlockEntityBatchPacket;
+import dev.celestiacraft.libs.network.packet.MachineSyncPacket;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.network.NetworkDirection;
+import net.minecraftforge.network.NetworkRegistry;
+import net.minecraftforge.network.PacketDistributor;
+import net.minecraftforge.network.simple.SimpleChannel;
+
+/**
+ * Nebula Libs 网络通道
+ *
+ * <p>
+ * 所有自定义数据包都在 {@link #register()} 中注册, 由主类构造时调用一次
+ * </p>
+ */
+public final class NebulaNetwork {
+	private static final String PROTOCOL_VERSION = "1";
+
+	public static final SimpleChannel CHANNEL = NetworkRegistry.newSimpleChannel(
+			NebulaLibs.loadResource("main"),
+			() -> PROTOCOL_VERSION,
+			PROTOCOL_VERSION::equals,
+			PROTOCOL_VERSION::equals
+	);
+
+	private static int packetId;
+
+	private NebulaNetwork() {
+	}
+
+	public static void register() {
+		CHANNEL.messageBuilder(MachineSyncPacket.class, packetId++, NetworkDirection.PLAY_TO_CLIENT)
+				.encoder(MachineSyncPacket::encode)
+				.decoder(MachineSyncPacket::decode)
+				.consumerMainThread(MachineSyncPacket::handle)
+				.add();
+
+		CHANNEL.messageBuilder(BlockEntityBatchPacket.class, packetId++, NetworkDirection.PLAY_TO_CLIENT)
+				.encoder(BlockEntityBatchPacket::encode)
+				.decoder(BlockEntityBatchPacket::decode)
+				.consumerMainThread(BlockEntityBatchPacket::handle)
+				.add();
+	}
+
+	/**
+	 * 向单个玩家发送数据包
+	 */
+	public static void sendToPlayer(ServerPlayer player, Object packet) {
+		CHANNEL.send(PacketDistributor.PLAYER.with(() -> player), packet);
+	}
+}
@@ -0,0 +1,87 @@
+package dev.celestiacraft.libs.network.packet;
+
+import dev.celestiacraft.libs.client.network.ClientPacketHandler;
+import lombok.Getter;
+import net.minecraft.core.BlockPos;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.fml.DistExecutor;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 同一区块内多个方块实体的批量更新包
+ *
+ * <p>
+ * 区块坐标只写一次, 每个方块实体只写区块内的相对坐标(y 为 short, x / z 合并为一个字节)与更新 NBT.
+ * 客户端收到后依次调用对应方块实体的 {@code handleUpdateTag}
+ * </p>
+ */
+@Getter
+public class BlockEntityBatchPacket {
+	private final int chunkX;
+	private final int chunkZ;
+	private final BlockPos[] positions;
+	private final CompoundTag[] tags;
+
+	private BlockEntityBatchPacket(int chunkX, int chunkZ, BlockPos[] positions, CompoundTag[] tags) {
+		this.chunkX = chunkX;
+		this.chunkZ = chunkZ;
+		this.positions = positions;
+		this.tags = tags;
+	}
+
+	/**
+	 * @param chunk     所在区块
+	 * @param positions 方块实体坐标, 必须都位于 {@code chunk} 内
+	 * @param tags      与坐标一一对应的更新 NBT
+	 */
+	public static BlockEntityBatchPacket of(ChunkPos chunk, List<BlockPos> positions, List<CompoundTag> tags) {
+		return new BlockEntityBatchPacket(
+				chunk.x,
+				chunk.z,
+				positions.toArray(BlockPos[]::new),
+				tags.toArray(CompoundTag[]::new)
+		);
+	}
+
+	public void encode(FriendlyByteBuf buf) {
+		buf.writeInt(chunkX);
+		buf.writeInt(chunkZ);
+		buf.writeVarInt(positions.length);
+
+		for (int i = 0; i < positions.length; i++) {
+			BlockPos pos = positions[i];
+			buf.writeShort(pos.getY());
+			buf.writeByte((pos.getX() & 15) << 4 | pos.getZ() & 15);
+			buf.writeNbt(tags[i]);
+		}
+	}
+
+	public static BlockEntityBatchPacket decode(FriendlyByteBuf buf) {
+		int chunkX = buf.readInt();
+		int chunkZ = buf.readInt();
+		int count = buf.readVarInt();
+		int baseX = chunkX << 4;
+		int baseZ = chunkZ << 4;
+
+		BlockPos[] positions = new BlockPos[count];
+		CompoundTag[] tags = new CompoundTag[count];
+		for (int i = 0; i < count; i++) {
+			int y = buf.readShort();
+			int local = buf.readUnsignedByte();
+			positions[i] = new BlockPos(baseX + (local >> 4), y, baseZ + (local & 15));
+			tags[i] = buf.readNbt();
+		}
+
+		return new BlockEntityBatchPacket(chunkX, chunkZ, positions, tags);
+	}
+
+	public static void handle(BlockEntityBatchPacket packet, Supplier<NetworkEvent.Context> context) {
+		DistExecutor.unsafeRunWhenOn(Dist.CLIENT, () -> () -> ClientPacketHandler.handleBlockEntityBatch(packet));
+	}
+}
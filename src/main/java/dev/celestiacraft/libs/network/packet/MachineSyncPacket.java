@@ -0,0 +1,214 @@
+package dev.celestiacraft.libs.network.packet;
+
+import dev.celestiacraft.libs.client.network.ClientPacketHandler;
+import lombok.Getter;
+import net.minecraft.core.BlockPos;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.world.item.ItemStack;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.fluids.FluidStack;
+import net.minecraftforge.fml.DistExecutor;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * 机器控制器的增量同步包
+ *
+ * <p>
+ * 只携带自上次发送以来发生变化的字段, 由一个标志字节声明包含哪些部分:
+ * </p>
+ *
+ * <ul>
+ *     <li>能量: varint</li>
+ *     <li>工作进度: varint</li>
+ *     <li>物品槽: 数量 + (槽位 varint, 物品) 列表</li>
+ *     <li>流体槽: 数量 + (储罐 varint, 流体) 列表</li>
+ * </ul>
+ *
+ * <p>
+ * 完整状态仍然由区块加载时的 {@code getUpdateTag} 下发
+ * </p>
+ */
+@Getter
+public class MachineSyncPacket {
+	private static final int ENERGY = 1;
+	private static final int WORK_TIME = 1 << 1;
+	private static final int ITEMS = 1 << 2;
+	private static final int FLUIDS = 1 << 3;
+
+	private static final int[] NO_INDICES = new int[0];
+	private static final ItemStack[] NO_ITEMS = new ItemStack[0];
+	private static final FluidStack[] NO_FLUIDS = new FluidStack[0];
+
+	private final BlockPos pos;
+	private final int flags;
+	private final int energy;
+	private final int workTime;
+	private final int[] slots;
+	private final ItemStack[] items;
+	private final int[] tanks;
+	private final FluidStack[] fluids;
+
+	private MachineSyncPacket(BlockPos pos, int flags, int energy, int workTime, int[] slots, ItemStack[] items, int[] tanks, FluidStack[] fluids) {
+		this.pos = pos;
+		this.flags = flags;
+		this.energy = energy;
+		this.workTime = workTime;
+		this.slots = slots;
+		this.items = items;
+		this.tanks = tanks;
+		this.fluids = fluids;
+	}
+
+	public static Builder builder(BlockPos pos) {
+		return new Builder(pos);
+	}
+
+	public boolean hasEnergy() {
+		return (flags & ENERGY) != 0;
+	}
+
+	public boolean hasWorkTime() {
+		return (flags & WORK_TIME) != 0;
+	}
+
+	public boolean isEmpty() {
+		return flags == 0;
+	}
+
+	public void encode(FriendlyByteBuf buf) {
+		buf.writeBlockPos(pos);
+		buf.writeByte(flags);
+
+		if (hasEnergy()) {
+			buf.writeVarInt(energy);
+		}
+
+		if (hasWorkTime()) {
+			buf.writeVarInt(workTime);
+		}
+
+		if ((flags & ITEMS) != 0) {
+			buf.writeVarInt(slots.length);
+			for (int i = 0; i < slots.length; i++) {
+				buf.writeVarInt(slots[i]);
+				buf.writeItem(items[i]);
+			}
+		}
+
+		if ((flags & FLUIDS) != 0) {
+			buf.writeVarInt(tanks.length);
+			for (int i = 0; i < tanks.length; i++) {
+				buf.writeVarInt(tanks[i]);
+				buf.writeFluidStack(fluids[i]);
+			}
+		}
+	}
+
+	public static MachineSyncPacket decode(FriendlyByteBuf buf) {
+		BlockPos pos = buf.readBlockPos();
+		int flags = buf.readUnsignedByte();
+		int energy = (flags & ENERGY) != 0 ? buf.readVarInt() : 0;
+		int workTime = (flags & WORK_TIME) != 0 ? buf.readVarInt() : 0;
+
+		int[] slots = NO_INDICES;
+		ItemStack[] items = NO_ITEMS;
+		if ((flags & ITEMS) != 0) {
+			int count = buf.readVarInt();
+			slots = new int[count];
+			items = new ItemStack[count];
+			for (int i = 0; i < count; i++) {
+				slots[i] = buf.readVarInt();
+				items[i] = buf.readItem();
+			}
+		}
+
+		int[] tanks = NO_INDICES;
+		FluidStack[] fluids = NO_FLUIDS;
+		if ((flags & FLUIDS) != 0) {
+			int count = buf.readVarInt();
+			tanks = new int[count];
+			fluids = new FluidStack[count];
+			for (int i = 0; i < count; i++) {
+				tanks[i] = buf.readVarInt();
+				fluids[i] = buf.readFluidStack();
+			}
+		}
+
+		return new MachineSyncPacket(pos, flags, energy, workTime, slots, items, tanks, fluids);
+	}
+
+	public static void handle(MachineSyncPacket packet, Supplier<NetworkEvent.Context> context) {
+		DistExecutor.unsafeRunWhenOn(Dist.CLIENT, () -> () -> ClientPacketHandler.handleMachineSync(packet));
+	}
+
+	public static class Builder {
+		private final BlockPos pos;
+		private int flags;
+		private int energy;
+		private int workTime;
+		private int[] slots = NO_INDICES;
+		private ItemStack[] items = NO_ITEMS;
+		private int itemCount;
+		private int[] tanks = NO_INDICES;
+		private FluidStack[] fluids = NO_FLUIDS;
+		private int fluidCount;
+
+		private Builder(BlockPos pos) {
+			this.pos = pos.immutable();
+		}
+
+		public Builder energy(int energy) {
+			this.flags |= ENERGY;
+			this.energy = energy;
+			return this;
+		}
+
+		public Builder workTime(int workTime) {
+			this.flags |= WORK_TIME;
+			this.workTime = workTime;
+			return this;
+		}
+
+		public Builder item(int slot, ItemStack stack) {
+			if (itemCount == slots.length) {
+				int size = Math.max(4, itemCount * 2);
+				slots = Arrays.copyOf(slots, size);
+				items = Arrays.copyOf(items, size);
+			}
+			flags |= ITEMS;
+			slots[itemCount] = slot;
+			items[itemCount] = stack.copy();
+			itemCount++;
+			return this;
+		}
+
+		public Builder fluid(int tank, FluidStack stack) {
+			if (fluidCount == tanks.length) {
+				int size = Math.max(2, fluidCount * 2);
+				tanks = Arrays.copyOf(tanks, size);
+				fluids = Arrays.copyOf(fluids, size);
+			}
+			flags |= FLUIDS;
+			tanks[fluidCount] = tank;
+			fluids[fluidCount] = stack.copy();
+			fluidCount++;
+			return this;
+		}
+
+		public MachineSyncPacket build() {
+			return new MachineSyncPacket(
+					pos,
+					flags,
+					energy,
+					workTime,
+					Arrays.copyOf(slots, itemCount),
+					Arrays.copyOf(items, itemCount),
+					Arrays.copyOf(tanks, fluidCount),
+					Arrays.copyOf(fluids, fluidCount)
+			);
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package dev.celestiacraft.libs.server.tick;
+
+import dev.celestiacraft.libs.NebulaLibs;
+import dev.celestiacraft.libs.utils.WorkerPool;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 分两段执行的任务: 到期后在 {@link WorkerPool} 上计算, 计算完成后重新进入调度器, 在服务端线程交付结果
+ *
+ * <p>
+ * 计算期间任务处于等待状态, 取消后结果会被丢弃
+ * </p>
+ */
+public class AsyncTask<T> extends TickTask {
+	Supplier<T> supplier;
+	Consumer<T> consumer;
+	private T result;
+	private boolean computed;
+
+	public AsyncTask(int ticks, Supplier<T> supplier, Consumer<T> consumer) {
+		super(ticks);
+		this.supplier = supplier;
+		this.consumer = consumer;
+	}
+
+	@Override
+	void run() {
+		if (computed) {
+			consumer.accept(result);
+			return;
+		}
+
+		int generation = TickScheduler.getGeneration();
+		waiting = true;
+		try {
+			WorkerPool.supply(supplier).whenComplete((value, exception) -> {
+				if (exception != null) {
+					NebulaLibs.LOGGER.error("Async scheduled task failed", exception);
+					cancel();
+				} else if (generation == TickScheduler.getGeneration()) {
+					result = value;
+					computed = true;
+					ticks = 0;
+					TickScheduler.resume(this);
+				}
+			});
+		} catch (RejectedExecutionException exception) {
+			NebulaLibs.LOGGER.error("Worker pool is full, dropping async scheduled task", exception);
+			waiting = false;
+			cancel();
+		}
+	}
+
+	@Override
+	void release() {
+		supplier = null;
+		consumer = null;
+		result = null;
+	}
+}
@@ -0,0 +1,79 @@
+package dev.celestiacraft.libs.server.tick;
+
+import dev.celestiacraft.libs.NebulaLibs;
+import it.unimi.dsi.fastutil.objects.ReferenceLinkedOpenHashSet;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.server.ServerStoppingEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+/**
+ * 方块实体变更合并器
+ *
+ * <p>
+ * 同一个方块实体在一个 Tick 内多次标记变更时, 只在 Tick 结束时调用一次 {@link BlockEntity#setChanged()}.
+ * {@code setChanged} 会标记区块需要保存并更新比较器, 频繁 IO 的机器每 Tick 可能触发几十次
+ * </p>
+ *
+ * <ul>
+ *     <li>只在服务端合并, 客户端或未加入世界时立即调用 {@code setChanged}</li>
+ *     <li>Tick 结束时已被移除的方块实体会被跳过</li>
+ *     <li>服务器关闭前会把剩余的变更全部写入</li>
+ * </ul>
+ *
+ * <pre>{@code
+ * BlockEntityChangeTracker.markChanged(this);
+ * }</pre>
+ */
+@Mod.EventBusSubscriber(modid = NebulaLibs.MODID, bus = Mod.EventBusSubscriber.Bus.FORGE)
+public final class BlockEntityChangeTracker {
+	private static final ReferenceLinkedOpenHashSet<BlockEntity> PENDING = new ReferenceLinkedOpenHashSet<>();
+
+	private BlockEntityChangeTracker() {
+	}
+
+	/**
+	 * 标记方块实体已变更, 在本 Tick 结束时统一调用 {@link BlockEntity#setChanged()}
+	 *
+	 * @param blockEntity 发生变更的方块实体
+	 */
+	public static void markChanged(BlockEntity blockEntity) {
+		Level level = blockEntity.getLevel();
+		MinecraftServer server = level == null || level.isClientSide() ? null : level.getServer();
+		if (server == null || !server.isSameThread()) {
+			blockEntity.setChanged();
+			return;
+		}
+
+		PENDING.add(blockEntity);
+	}
+
+	/**
+	 * 立即写入所有尚未处理的变更
+	 */
+	public static void flush() {
+		while (!PENDING.isEmpty()) {
+			BlockEntity blockEntity = PENDING.removeFirst();
+			if (!blockEntity.isRemoved() && blockEntity.getLevel() != null) {
+				blockEntity.setChanged();
+			}
+		}
+	}
+
+	@SubscribeEvent
+	public static void onServerTick(TickEvent.ServerTickEvent event) {
+		if (event.phase != TickEvent.Phase.END) {
+			return;
+		}
+
+		flush();
+	}
+
+	@SubscribeEvent
+	public static void onServerStopping(ServerStoppingEvent event) {
+		flush();
+	}
+}
@@ -0,0 +1,42 @@
+package dev.celestiacraft.libs.server.tick;
+
+import net.minecraft.world.level.block.entity.BlockEntity;
+
+import java.lang.ref.WeakReference;
+import java.util.function.Consumer;
+
+public class BlockEntityTask<T extends BlockEntity> extends TickTask {
+	WeakReference<T> blockEntity;
+	Consumer<T> task;
+
+	public BlockEntityTask(T blockEntity, int ticks, Consumer<T> task) {
+		super(ticks);
+		this.blockEntity = new WeakReference<>(blockEntity);
+		this.task = task;
+	}
+
+	@Override
+	void run() {
+		T blockEntity = this.blockEntity.get();
+		if (blockEntity == null || blockEntity.isRemoved() || blockEntity.getLevel() == null) {
+			cancel();
+			return;
+		}
+
+		task.accept(blockEntity);
+	}
+
+	@Override
+	Object[] getOwners() {
+		T blockEntity = this.blockEntity.get();
+		if (blockEntity == null || blockEntity.isRemoved()) {
+			return new Object[]{null};
+		}
+		return new Object[]{blockEntity, blockEntity.getLevel()};
+	}
+
+	@Override
+	void release() {
+		task = null;
+	}
+}
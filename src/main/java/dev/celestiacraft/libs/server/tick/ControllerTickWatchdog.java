@@ -0,0 +1,172 @@
+package dev.celestiacraft.libs.server.tick;
+
+import dev.celestiacraft.libs.NebulaLibs;
+import dev.celestiacraft.libs.api.register.multiblock.ControllerBlockEntity;
+import dev.celestiacraft.libs.config.CommonConfig;
+import lombok.Getter;
+import net.minecraft.core.BlockPos;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.entity.BlockEntityType;
+import net.minecraftforge.event.server.ServerStoppedEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.registries.ForgeRegistries;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * 多方块控制器 tick 看门狗
+ *
+ * <p>
+ * 测量每个控制器单次 tick 的耗时并维护滑动平均值,
+ * 平均值超过 {@link CommonConfig#CONTROLLER_TICK_BUDGET_MICROS} 的控制器会被节流为每
+ * {@link CommonConfig#CONTROLLER_THROTTLE_INTERVAL} tick 运行一次
+ * </p>
+ *
+ * <ul>
+ *     <li>滑动平均采用指数加权, 每次运行的权重为 {@code 1 / }{@link #AVERAGE_WINDOW}</li>
+ *     <li>平均值回落到预算的一半以下时解除节流</li>
+ *     <li>每个控制器第一次被节流时在日志中记录位置与类型, 之后可通过 {@code /nebula watchdog} 查看</li>
+ *     <li>统计数据以弱引用保存, 控制器被卸载后自动回收</li>
+ * </ul>
+ *
+ * <pre>{@code
+ * ControllerTickWatchdog.tick(controller, () -> controller.tick(context));
+ * }</pre>
+ *
+ * @see dev.celestiacraft.libs.api.register.multiblock.machine.IControllerRecipe#runTick
+ */
+@Mod.EventBusSubscriber(modid = NebulaLibs.MODID, bus = Mod.EventBusSubscriber.Bus.FORGE)
+public final class ControllerTickWatchdog {
+	private static final int AVERAGE_WINDOW = 20;
+	private static final Map<ControllerBlockEntity, Stats> STATS = new WeakHashMap<>();
+
+	private ControllerTickWatchdog() {
+	}
+
+	/**
+	 * 在看门狗下执行一次控制器 tick
+	 *
+	 * <p>
+	 * 客户端, 看门狗关闭或不在服务端线程时直接执行
+	 * </p>
+	 *
+	 * @param controller 控制器
+	 * @param tick       实际的 tick 逻辑
+	 */
+	public static void tick(ControllerBlockEntity controller, Runnable tick) {
+		Level level = controller.getLevel();
+		if (level == null || level.isClientSide() || !level.getServer().isSameThread() || !CommonConfig.ENABLE_CONTROLLER_WATCHDOG.get()) {
+			tick.run();
+			return;
+		}
+
+		Stats stats = STATS.computeIfAbsent(controller, (key) -> new Stats());
+		long gameTime = level.getGameTime();
+		if (stats.throttled && gameTime - stats.lastRunTick < CommonConfig.CONTROLLER_THROTTLE_INTERVAL.get()) {
+			stats.skippedTicks++;
+			return;
+		}
+
+		long start = System.nanoTime();
+		try {
+			tick.run();
+		} finally {
+			stats.record(controller, System.nanoTime() - start, gameTime);
+		}
+	}
+
+	/**
+	 * 当前所有控制器的统计, 按平均耗时降序
+	 */
+	public static List<Entry> snapshot() {
+		List<Entry> entries = new ArrayList<>(STATS.size());
+		STATS.forEach((controller, stats) -> {
+			if (!controller.isRemoved() && controller.getLevel() != null) {
+				entries.add(new Entry(controller, stats));
+			}
+		});
+		entries.sort(Comparator.comparingLong(Entry::getAverageNanos).reversed());
+		return entries;
+	}
+
+	/**
+	 * 清除全部统计并解除所有节流
+	 */
+	public static void reset() {
+		STATS.clear();
+	}
+
+	@SubscribeEvent
+	public static void onServerStopped(ServerStoppedEvent event) {
+		reset();
+	}
+
+	private static long getBudgetNanos() {
+		return CommonConfig.CONTROLLER_TICK_BUDGET_MICROS.get() * 1000L;
+	}
+
+	private static final class Stats {
+		private long averageNanos = -1;
+		private long lastRunTick;
+		private long skippedTicks;
+		private boolean throttled;
+		private boolean reported;
+
+		private void record(ControllerBlockEntity controller, long nanos, long gameTime) {
+			averageNanos = averageNanos < 0 ? nanos : averageNanos + (nanos - averageNanos) / AVERAGE_WINDOW;
+			lastRunTick = gameTime;
+
+			long budget = getBudgetNanos();
+			if (!throttled && averageNanos > budget) {
+				throttled = true;
+				if (!reported) {
+					reported = true;
+					NebulaLibs.LOGGER.warn(
+							"Controller {} at {} in {} averages {} us per tick (budget {} us), throttling to every {} ticks",
+							getTypeId(controller),
+							controller.getBlockPos().toShortString(),
+							controller.getLevel().dimension().location(),
+							averageNanos / 1000L,
+							budget / 1000L,
+							CommonConfig.CONTROLLER_THROTTLE_INTERVAL.get()
+					);
+				}
+			} else if (throttled && averageNanos < budget / 2) {
+				throttled = false;
+			}
+		}
+	}
+
+	private static ResourceLocation getTypeId(ControllerBlockEntity controller) {
+		BlockEntityType<?> type = controller.getType();
+		return ForgeRegistries.BLOCK_ENTITY_TYPES.getKey(type);
+	}
+
+	/**
+	 * 某个控制器的统计快照
+	 */
+	@Getter
+	public static final class Entry {
+		private final ResourceLocation dimension;
+		private final BlockPos pos;
+		private final ResourceLocation type;
+		private final long averageNanos;
+		private final long skippedTicks;
+		private final boolean throttled;
+
+		private Entry(ControllerBlockEntity controller, Stats stats) {
+			this.dimension = controller.getLevel().dimension().location();
+			this.pos = controller.getBlockPos();
+			this.type = getTypeId(controller);
+			this.averageNanos = Math.max(0, stats.averageNanos);
+			this.skippedTicks = stats.skippedTicks;
+			this.throttled = stats.throttled;
+		}
+	}
+}
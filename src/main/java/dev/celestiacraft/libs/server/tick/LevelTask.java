@@ -0,0 +1,38 @@
+package dev.celestiacraft.libs.server.tick;
+
+import net.minecraft.server.level.ServerLevel;
+
+import java.lang.ref.WeakReference;
+import java.util.function.Consumer;
+
+public class LevelTask extends TickTask {
+	WeakReference<ServerLevel> level;
+	Consumer<ServerLevel> task;
+
+	public LevelTask(ServerLevel level, int ticks, Consumer<ServerLevel> task) {
+		super(ticks);
+		this.level = new WeakReference<>(level);
+		this.task = task;
+	}
+
+	@Override
+	void run() {
+		ServerLevel level = this.level.get();
+		if (level == null) {
+			cancel();
+			return;
+		}
+
+		task.accept(level);
+	}
+
+	@Override
+	Object[] getOwners() {
+		return new Object[]{level.get()};
+	}
+
+	@Override
+	void release() {
+		task = null;
+	}
+}
@@ -1,23 +1,53 @@
 package dev.celestiacraft.libs.server.tick;
 
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerPlayer;
 
+import java.lang.ref.WeakReference;
+import java.util.UUID;
 import java.util.function.Consumer;
 
+/**
+ * 玩家任务
+ *
+ * <p>
+ * 按 UUID 记录玩家, 每次执行时通过 {@code getPlayerList().getPlayer(uuid)} 取得当前的 {@link ServerPlayer}.
+ * 死亡重生或离开末地后玩家会换成新的实例, 任务继续作用于新实例; 只有玩家退出时任务才会结束
+ * </p>
+ */
 public class PlayerTask extends TickTask {
-	ServerPlayer player;
+	WeakReference<MinecraftServer> server;
+	UUID player;
 	Consumer<ServerPlayer> task;
 
 	public PlayerTask(ServerPlayer player, int ticks, Consumer<ServerPlayer> task) {
 		super(ticks);
-		this.player = player;
+		this.server = new WeakReference<>(player.server);
+		this.player = player.getUUID();
 		this.task = task;
 	}
 
 	@Override
 	void run() {
-		if (player != null && player.isAlive()) {
+		MinecraftServer server = this.server.get();
+		ServerPlayer player = server == null ? null : server.getPlayerList().getPlayer(this.player);
+		if (player == null) {
+			cancel();
+			return;
+		}
+
+		if (player.isAlive() && !player.isRemoved()) {
 			task.accept(player);
 		}
 	}
-}
\ No newline at end of file
+
+	@Override
+	Object[] getOwners() {
+		return new Object[]{player};
+	}
+
+	@Override
+	void release() {
+		task = null;
+	}
+}
@@ -12,4 +12,9 @@ public class RunnableTask extends TickTask {
 	void run() {
 		task.run();
 	}
-}
\ No newline at end of file
+
+	@Override
+	void release() {
+		task = null;
+	}
+}
@@ -2,22 +2,32 @@ package dev.celestiacraft.libs.server.tick;
 
 import net.minecraft.server.MinecraftServer;
 
+import java.lang.ref.WeakReference;
 import java.util.function.Consumer;
 
 public class ServerTask extends TickTask {
-	MinecraftServer server;
+	WeakReference<MinecraftServer> server;
 	Consumer<MinecraftServer> task;
 
 	public ServerTask(MinecraftServer server, int ticks, Consumer<MinecraftServer> task) {
 		super(ticks);
-		this.server = server;
+		this.server = new WeakReference<>(server);
 		this.task = task;
 	}
 
 	@Override
 	void run() {
-		if (server != null) {
-			task.accept(server);
+		MinecraftServer server = this.server.get();
+		if (server == null || !server.isRunning()) {
+			cancel();
+			return;
 		}
+
+		task.accept(server);
+	}
+
+	@Override
+	void release() {
+		task = null;
 	}
-}
\ No newline at end of file
+}
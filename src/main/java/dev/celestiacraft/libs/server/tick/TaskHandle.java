@@ -0,0 +1,25 @@
+package dev.celestiacraft.libs.server.tick;
+
+/**
+ * {@link TickScheduler} 返回的任务句柄
+ *
+ * <p>
+ * 可以在任意线程调用. 取消后任务不会再执行, 重复任务也会停止
+ * </p>
+ */
+public interface TaskHandle {
+	/**
+	 * 取消任务, 任务已完成时无效果
+	 */
+	void cancel();
+
+	/**
+	 * 任务是否已被取消(包括所属的玩家, 维度或方块实体被移除)
+	 */
+	boolean isCancelled();
+
+	/**
+	 * 任务是否不会再执行, 已执行完毕或已取消都返回 {@code true}
+	 */
+	boolean isDone();
+}
@@ -0,0 +1,15 @@
+package dev.celestiacraft.libs.server.tick;
+
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+
+/**
+ * 同一个所有者(玩家, 维度或方块实体)名下的全部任务
+ *
+ * <p>
+ * 所有者被移除时由 {@link TickScheduler} 一次性取消, 不需要遍历时间轮.
+ * 本类不引用所有者本身, 只能在服务端线程访问
+ * </p>
+ */
+final class TaskScope {
+	final ReferenceOpenHashSet<TickTask> tasks = new ReferenceOpenHashSet<>();
+}
@@ -1,16 +1,26 @@
 package dev.celestiacraft.libs.server.tick;
 
 import dev.celestiacraft.libs.NebulaLibs;
+import dev.celestiacraft.libs.config.CommonConfig;
+import dev.celestiacraft.libs.utils.WorkerPool;
 import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.block.entity.BlockEntity;
 import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.entity.player.PlayerEvent;
+import net.minecraftforge.event.level.LevelEvent;
+import net.minecraftforge.event.server.ServerStoppedEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
 
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * 服务器 Tick 延迟任务调度器
@@ -37,13 +47,16 @@ import java.util.function.Consumer;
  * </ul>
  *
  * <p>
- * 调度器支持三种任务类型:
+ * 调度器支持以下任务类型:
  * </p>
  *
  * <ul>
  *   <li>普通任务 Runnable</li>
  *   <li>服务器任务 MinecraftServer</li>
  *   <li>玩家任务 ServerPlayer</li>
+ *   <li>维度任务 ServerLevel</li>
+ *   <li>方块实体任务 BlockEntity</li>
+ *   <li>异步任务, 见 {@link #scheduleAsync(int, Supplier, Consumer)}</li>
  * </ul>
  *
  * <p>
@@ -68,6 +81,12 @@ import java.util.function.Consumer;
  * TickScheduler.schedulePlayer(player, 60, (p) -> {
  *     p.sendSystemMessage(Component.literal("Delayed player message"));
  * });
+ *
+ * // 每秒执行一次, 直到取消
+ * TaskHandle handle = TickScheduler.scheduleRepeating(20, 20, () -> {
+ *     System.out.println("Tick");
+ * });
+ * handle.cancel();
  * }</pre>
  *
  * <p>
@@ -76,16 +95,75 @@ import java.util.function.Consumer;
  *
  * <ul>
  *   <li>任务在 ServerTickEvent 中执行</li>
- *   <li>任务只会执行一次</li>
- *   <li>Tick 倒计时每 Tick 减 1</li>
+ *   <li>普通任务只会执行一次, 重复任务按固定频率执行, 落后超过一个周期时跳过错过的周期</li>
+ *   <li>所有 schedule 方法都返回 {@link TaskHandle}, 可随时取消</li>
+ *   <li>玩家, 维度与方块实体任务只持有弱引用; 玩家退出, 维度卸载或方块实体移除时,
+ *   其名下的任务通过作用域索引一次性取消, 不需要遍历全部任务</li>
+ *   <li>延迟小于 1 的任务按 1 处理, 在下一个 Tick 执行</li>
+ *   <li>任务抛出的异常会被记录到日志, 不会影响其他任务</li>
+ * </ul>
+ *
+ * <p>
+ * 实现:
+ * </p>
+ *
+ * <ul>
+ *   <li>任务按到期的绝对 Tick 放入 {@link TimingWheel}, 注册为 O(1), 每 Tick 只处理到期的任务</li>
+ *   <li>到期任务进入就绪队列, 每 Tick 最多执行 {@link CommonConfig#SCHEDULER_TICK_BUDGET_MICROS} 微秒,
+ *   超出的部分顺延到下一个 Tick 优先执行</li>
+ *   <li>出现顺延时按 {@link #LAG_REPORT_INTERVAL} Tick 的间隔在日志中报告积压数量与最大延迟</li>
+ *   <li>服务器关闭后清空所有未执行的任务</li>
+ * </ul>
+ *
+ * <p>
+ * 线程安全:
+ * </p>
+ *
+ * <ul>
+ *   <li>所有 schedule 方法都可以在任意线程调用, 包括任务内部</li>
+ *   <li>新任务先进入无锁的接收队列, 在每个 Tick 开始时以及执行到期任务之前转入时间轮,
+ *   延迟从转入时开始计算</li>
+ *   <li>{@link #scheduleAsync(int, Supplier, Consumer)} 在 {@link WorkerPool} 上计算, 结果回到服务端线程交给回调</li>
  * </ul>
  */
 @Mod.EventBusSubscriber(modid = NebulaLibs.MODID, bus = Mod.EventBusSubscriber.Bus.FORGE)
 public class TickScheduler {
 	/**
-	 * 当前等待执行的 Tick 任务列表。
+	 * 两次积压报告之间的最小间隔(Tick)
 	 */
-	private static final List<TickTask> TASKS = new LinkedList<>();
+	private static final int LAG_REPORT_INTERVAL = 600;
+
+	/**
+	 * 等待到期的任务
+	 */
+	private static final TimingWheel WHEEL = new TimingWheel();
+
+	/**
+	 * 已到期, 等待执行的任务, 包括上一个 Tick 因超出预算顺延的任务
+	 */
+	private static final ArrayDeque<TickTask> READY = new ArrayDeque<>();
+
+	/**
+	 * 其他线程或任务执行过程中注册的新任务, 只由服务端线程取出
+	 */
+	private static final Queue<TickTask> INTAKE = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * 等待取消的作用域所有者, 只由服务端线程取出
+	 */
+	private static final Queue<Object> PURGES = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * 所有者到其名下任务的索引, 以弱引用持有所有者
+	 */
+	private static final Map<Object, TaskScope> SCOPES = new WeakHashMap<>();
+
+	private static long lastLagReport = -LAG_REPORT_INTERVAL;
+
+	/**
+	 * 每次服务器关闭时递增, 丢弃关闭前发起的异步任务结果
+	 */
+	private static volatile int generation;
 
 	/**
 	 * 注册一个普通延迟任务。
@@ -102,10 +180,22 @@ public class TickScheduler {
 	 *
 	 * @param ticks 延迟 Tick 数
 	 * @param task  要执行的任务
+	 * @return 任务句柄
+	 */
+	public static TaskHandle schedule(int ticks, Runnable task) {
+		return enqueue(new RunnableTask(ticks, task), 0);
+	}
+
+	/**
+	 * 注册一个固定频率的重复任务。
 	 *
+	 * @param delay  首次执行前的延迟 Tick 数
+	 * @param period 重复间隔 Tick 数, 至少为 1
+	 * @param task   要执行的任务
+	 * @return 任务句柄, 调用 {@link TaskHandle#cancel()} 停止
 	 */
-	public static void schedule(int ticks, Runnable task) {
-		TASKS.add(new RunnableTask(ticks, task));
+	public static TaskHandle scheduleRepeating(int delay, int period, Runnable task) {
+		return enqueue(new RunnableTask(delay, task), period);
 	}
 
 	/**
@@ -124,10 +214,10 @@ public class TickScheduler {
 	 * @param server 服务器实例
 	 * @param ticks  延迟 Tick 数
 	 * @param task   任务逻辑
-	 *
+	 * @return 任务句柄
 	 */
-	public static void scheduleServer(MinecraftServer server, int ticks, Consumer<MinecraftServer> task) {
-		TASKS.add(new ServerTask(server, ticks, task));
+	public static TaskHandle scheduleServer(MinecraftServer server, int ticks, Consumer<MinecraftServer> task) {
+		return enqueue(new ServerTask(server, ticks, task), 0);
 	}
 
 	/**
@@ -135,6 +225,8 @@ public class TickScheduler {
 	 *
 	 * <p>
 	 * 任务执行时会传入 ServerPlayer 实例。
+	 * 任务按玩家 UUID 记录, 每次执行时取得当前的玩家实例。
+	 * 玩家退出时任务自动取消, 玩家死亡时跳过本次执行, 重生后继续作用于新的玩家实例。
 	 * </p>
 	 * <pre>{@code
 	 * TickScheduler.schedulePlayer(player, 60, p -> {
@@ -145,10 +237,128 @@ public class TickScheduler {
 	 * @param player 玩家
 	 * @param ticks  延迟 Tick 数
 	 * @param task   玩家任务
+	 * @return 任务句柄
+	 */
+	public static TaskHandle schedulePlayer(ServerPlayer player, int ticks, Consumer<ServerPlayer> task) {
+		return enqueue(new PlayerTask(player, ticks, task), 0);
+	}
+
+	/**
+	 * 注册一个固定频率的玩家重复任务, 玩家退出时自动停止, 死亡重生后继续执行。
+	 *
+	 * @param player 玩家
+	 * @param delay  首次执行前的延迟 Tick 数
+	 * @param period 重复间隔 Tick 数, 至少为 1
+	 * @param task   玩家任务
+	 * @return 任务句柄
+	 */
+	public static TaskHandle schedulePlayerRepeating(ServerPlayer player, int delay, int period, Consumer<ServerPlayer> task) {
+		return enqueue(new PlayerTask(player, delay, task), period);
+	}
+
+	/**
+	 * 注册一个维度延迟任务, 维度卸载时自动取消。
+	 *
+	 * @param level 维度
+	 * @param ticks 延迟 Tick 数
+	 * @param task  维度任务
+	 * @return 任务句柄
+	 */
+	public static TaskHandle scheduleLevel(ServerLevel level, int ticks, Consumer<ServerLevel> task) {
+		return enqueue(new LevelTask(level, ticks, task), 0);
+	}
+
+	/**
+	 * 注册一个固定频率的维度重复任务, 维度卸载时自动停止。
+	 *
+	 * @param level  维度
+	 * @param delay  首次执行前的延迟 Tick 数
+	 * @param period 重复间隔 Tick 数, 至少为 1
+	 * @param task   维度任务
+	 * @return 任务句柄
+	 */
+	public static TaskHandle scheduleLevelRepeating(ServerLevel level, int delay, int period, Consumer<ServerLevel> task) {
+		return enqueue(new LevelTask(level, delay, task), period);
+	}
+
+	/**
+	 * 注册一个方块实体延迟任务。
+	 *
+	 * <p>
+	 * 方块实体被移除或所在维度卸载时任务自动取消。
+	 * 本库的控制器会在 {@code setRemoved} 时调用 {@link #cancelAll(Object)},
+	 * 其他方块实体在执行前检查 {@link BlockEntity#isRemoved()}。
+	 * </p>
+	 *
+	 * @param blockEntity 方块实体
+	 * @param ticks       延迟 Tick 数
+	 * @param task        方块实体任务
+	 * @return 任务句柄
+	 */
+	public static <T extends BlockEntity> TaskHandle scheduleBlockEntity(T blockEntity, int ticks, Consumer<T> task) {
+		return enqueue(new BlockEntityTask<>(blockEntity, ticks, task), 0);
+	}
+
+	/**
+	 * 注册一个固定频率的方块实体重复任务, 方块实体被移除时自动停止。
+	 *
+	 * @param blockEntity 方块实体
+	 * @param delay       首次执行前的延迟 Tick 数
+	 * @param period      重复间隔 Tick 数, 至少为 1
+	 * @param task        方块实体任务
+	 * @return 任务句柄
+	 */
+	public static <T extends BlockEntity> TaskHandle scheduleBlockEntityRepeating(T blockEntity, int delay, int period, Consumer<T> task) {
+		return enqueue(new BlockEntityTask<>(blockEntity, delay, task), period);
+	}
+
+	/**
+	 * 注册一个异步延迟任务。
+	 *
+	 * <p>
+	 * 延迟结束后在 {@link WorkerPool} 上执行 {@code supplier},
+	 * 完成后在下一个 Tick 于服务端线程把结果交给 {@code consumer}。
+	 * {@code supplier} 不能读写世界, 计算期间取消会丢弃结果。
+	 * </p>
+	 *
+	 * <pre>{@code
+	 * TickScheduler.scheduleAsync(0, () -> computeLayout(data), (layout) -> {
+	 *     applyLayout(level, layout);
+	 * });
+	 * }</pre>
 	 *
+	 * @param ticks    延迟 Tick 数
+	 * @param supplier 在工作线程上执行的计算
+	 * @param consumer 在服务端线程上接收结果
+	 * @return 任务句柄
 	 */
-	public static void schedulePlayer(ServerPlayer player, int ticks, Consumer<ServerPlayer> task) {
-		TASKS.add(new PlayerTask(player, ticks, task));
+	public static <T> TaskHandle scheduleAsync(int ticks, Supplier<T> supplier, Consumer<T> consumer) {
+		return enqueue(new AsyncTask<>(ticks, supplier, consumer), 0);
+	}
+
+	/**
+	 * 取消某个所有者(玩家, 维度或方块实体)名下的全部任务。
+	 *
+	 * <p>
+	 * 可以在任意线程调用, 在下一个 Tick 边界生效.
+	 * 玩家任务按 UUID 记录, 传入 {@link ServerPlayer} 或其 UUID 效果相同
+	 * </p>
+	 *
+	 * @param owner 任务所有者
+	 */
+	public static void cancelAll(Object owner) {
+		PURGES.add(owner instanceof ServerPlayer player ? player.getUUID() : owner);
+	}
+
+	/**
+	 * 当前尚未执行的任务数量, 包括已到期但被顺延的任务
+	 *
+	 * <p>
+	 * 只应在服务端线程调用
+	 * </p>
+	 */
+	public static int getPendingTasks() {
+		return WHEEL.size() + READY.size() + INTAKE.size();
 	}
 
 	/**
@@ -159,31 +369,169 @@ public class TickScheduler {
 	 * </p>
 	 *
 	 * <ul>
-	 *   <li>遍历所有任务</li>
-	 *   <li>减少 Tick 计数</li>
-	 *   <li>当 Tick 为 0 时执行任务</li>
-	 *   <li>执行后移除任务</li>
+	 *   <li>开始时把接收队列中的任务放入时间轮, 并处理待取消的作用域</li>
+	 *   <li>结束时再次处理以上队列, 然后时间轮前进 1 Tick, 到期任务进入就绪队列</li>
+	 *   <li>在时间预算内依次执行就绪任务, 至少执行一个</li>
+	 *   <li>剩余任务留到下一个 Tick</li>
 	 * </ul>
 	 *
 	 * @param event Forge ServerTickEvent
 	 */
 	@SubscribeEvent
 	public static void onServerTick(TickEvent.ServerTickEvent event) {
+		drainIntake();
+		drainPurges();
 		if (event.phase != TickEvent.Phase.END) {
 			return;
 		}
 
-		Iterator<TickTask> iterator = TASKS.iterator();
+		WHEEL.advance(READY::addLast);
+		runReady();
+	}
+
+	@SubscribeEvent
+	public static void onPlayerLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
+		purge(event.getEntity().getUUID());
+	}
+
+	@SubscribeEvent
+	public static void onLevelUnload(LevelEvent.Unload event) {
+		if (event.getLevel() instanceof ServerLevel level) {
+			purge(level);
+		}
+	}
+
+	@SubscribeEvent
+	public static void onServerStopped(ServerStoppedEvent event) {
+		generation++;
+		WHEEL.clear();
+		READY.clear();
+		INTAKE.clear();
+		PURGES.clear();
+		SCOPES.clear();
+	}
+
+	static int getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * 等待中的任务重新进入调度器, 可以在任意线程调用
+	 */
+	static void resume(TickTask task) {
+		INTAKE.add(task);
+	}
+
+	private static TaskHandle enqueue(TickTask task, int period) {
+		task.period = period <= 0 ? 0 : period;
+		INTAKE.add(task);
+		return task;
+	}
+
+	private static void drainIntake() {
+		TickTask task;
+		while ((task = INTAKE.poll()) != null) {
+			task.waiting = false;
+			if (task.isCancelled() || !registerScopes(task)) {
+				task.finish();
+				continue;
+			}
+
+			task.deadline = WHEEL.getCurrentTick() + Math.max(1, task.ticks);
+			WHEEL.insert(task, READY::addLast);
+		}
+	}
+
+	private static void drainPurges() {
+		Object owner;
+		while ((owner = PURGES.poll()) != null) {
+			purge(owner);
+		}
+	}
+
+	/**
+	 * 把任务登记到所有者的作用域中
+	 *
+	 * @return 所有者是否都仍然存在
+	 */
+	private static boolean registerScopes(TickTask task) {
+		if (task.scopes != null) {
+			return true;
+		}
+
+		Object[] owners = task.getOwners();
+		for (Object owner : owners) {
+			if (owner == null) {
+				task.cancel();
+				return false;
+			}
+		}
+		for (Object owner : owners) {
+			task.addScope(SCOPES.computeIfAbsent(owner, (key) -> new TaskScope()));
+		}
+		return true;
+	}
+
+	private static void purge(Object owner) {
+		TaskScope scope = SCOPES.remove(owner);
+		if (scope == null) {
+			return;
+		}
+
+		for (TickTask task : scope.tasks.toArray(TickTask[]::new)) {
+			task.cancel();
+			task.finish();
+		}
+	}
+
+	private static void runReady() {
+		long budget = CommonConfig.SCHEDULER_TICK_BUDGET_MICROS.get() * 1000L;
+		long start = System.nanoTime();
+		boolean first = true;
 
-		while (iterator.hasNext()) {
-			TickTask task = iterator.next();
+		while (!READY.isEmpty()) {
+			if (!first && budget > 0 && System.nanoTime() - start >= budget) {
+				reportLag();
+				return;
+			}
 
-			task.ticks--;
+			TickTask task = READY.pollFirst();
+			if (task.isCancelled()) {
+				task.finish();
+				continue;
+			}
+			first = false;
 
-			if (task.ticks <= 0) {
+			try {
 				task.run();
-				iterator.remove();
+			} catch (Exception exception) {
+				NebulaLibs.LOGGER.error("Scheduled task {} threw an exception", task, exception);
+			}
+
+			if (task.isCancelled()) {
+				task.finish();
+			} else if (task.period > 0) {
+				task.deadline = Math.max(task.deadline + task.period, WHEEL.getCurrentTick() + 1);
+				WHEEL.insert(task, READY::addLast);
+			} else if (!task.waiting) {
+				task.finish();
 			}
 		}
 	}
-}
\ No newline at end of file
+
+	private static void reportLag() {
+		long now = WHEEL.getCurrentTick();
+		if (now - lastLagReport < LAG_REPORT_INTERVAL) {
+			return;
+		}
+		lastLagReport = now;
+
+		TickTask oldest = READY.peekFirst();
+		NebulaLibs.LOGGER.warn(
+				"TickScheduler exceeded its {} us budget, {} tasks carried over, oldest is {} ticks late",
+				CommonConfig.SCHEDULER_TICK_BUDGET_MICROS.get(),
+				READY.size(),
+				oldest == null ? 0 : now - oldest.deadline
+		);
+	}
+}
@@ -1,11 +1,92 @@
 package dev.celestiacraft.libs.server.tick;
 
-public abstract class TickTask {
+import java.util.ArrayList;
+import java.util.List;
+
+public abstract class TickTask implements TaskHandle {
+	private static final Object[] NO_OWNERS = new Object[0];
+
 	int ticks;
+	/**
+	 * 重复间隔, 0 表示只执行一次
+	 */
+	int period;
+	/**
+	 * 到期的绝对 tick, 由 {@link TickScheduler} 在放入时间轮时计算
+	 */
+	long deadline;
+	/**
+	 * 时间轮槽位链表中的下一个任务
+	 */
+	TickTask next;
+	/**
+	 * 任务所属的作用域, 任务结束时从中移除
+	 */
+	List<TaskScope> scopes;
+	/**
+	 * 执行后暂不结束, 等待自行通过 {@link TickScheduler#resume(TickTask)} 重新进入调度器
+	 */
+	boolean waiting;
+
+	private volatile boolean cancelled;
+	private volatile boolean done;
 
 	public TickTask(int ticks) {
 		this.ticks = ticks;
 	}
 
 	abstract void run();
-}
\ No newline at end of file
+
+	/**
+	 * 任务的所有者, 所有者被移除时任务自动取消
+	 *
+	 * <p>
+	 * 返回的数组中出现 {@code null} 表示所有者已不存在
+	 * </p>
+	 */
+	Object[] getOwners() {
+		return NO_OWNERS;
+	}
+
+	/**
+	 * 任务结束后释放对回调的引用
+	 */
+	void release() {
+	}
+
+	void addScope(TaskScope scope) {
+		if (scopes == null) {
+			scopes = new ArrayList<>(2);
+		}
+		scopes.add(scope);
+		scope.tasks.add(this);
+	}
+
+	void finish() {
+		done = true;
+		if (scopes != null) {
+			for (TaskScope scope : scopes) {
+				scope.tasks.remove(this);
+			}
+			scopes = null;
+		}
+		release();
+	}
+
+	@Override
+	public void cancel() {
+		if (!done) {
+			cancelled = true;
+		}
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	@Override
+	public boolean isDone() {
+		return done || cancelled;
+	}
+}
@@ -0,0 +1,126 @@
+package dev.celestiacraft.libs.server.tick;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * 分层时间轮
+ *
+ * <p>
+ * 以绝对 tick 作为到期时间, 共 {@link #LEVELS} 层, 每层 {@link #SLOTS} 个槽位:
+ * </p>
+ *
+ * <ul>
+ *     <li>第 0 层每个槽位对应 1 tick, 第 n 层每个槽位对应 64<sup>n</sup> tick, 四层合计约 9.7 天</li>
+ *     <li>插入只计算一次层级与槽位, 复杂度 O(1)</li>
+ *     <li>每 tick 只处理第 0 层的当前槽位; 低层转满一圈时把上一层的当前槽位重新分配到低层</li>
+ *     <li>超出四层范围的任务放在溢出链表中, 最高层转满一圈时重新分配</li>
+ * </ul>
+ *
+ * <p>
+ * 槽位使用 {@link TickTask#next} 串成的单向链表, 不产生额外对象.
+ * 只能在服务端线程访问
+ * </p>
+ */
+final class TimingWheel {
+	private static final int SLOT_BITS = 6;
+	private static final int SLOTS = 1 << SLOT_BITS;
+	private static final int SLOT_MASK = SLOTS - 1;
+	private static final int LEVELS = 4;
+	private static final long RANGE = 1L << (SLOT_BITS * LEVELS);
+
+	private final TickTask[][] slots = new TickTask[LEVELS][SLOTS];
+	private TickTask overflow;
+	private long currentTick;
+	private int size;
+
+	long getCurrentTick() {
+		return currentTick;
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * 放入任务, 到期时间已到或已过的任务直接交给 {@code expired}
+	 */
+	void insert(TickTask task, Consumer<TickTask> expired) {
+		long delta = task.deadline - currentTick;
+		if (delta <= 0) {
+			expired.accept(task);
+			return;
+		}
+
+		size++;
+		if (delta >= RANGE) {
+			task.next = overflow;
+			overflow = task;
+			return;
+		}
+
+		int level = 0;
+		while (delta >= 1L << (SLOT_BITS * (level + 1))) {
+			level++;
+		}
+
+		int slot = (int) (task.deadline >>> (SLOT_BITS * level)) & SLOT_MASK;
+		task.next = slots[level][slot];
+		slots[level][slot] = task;
+	}
+
+	/**
+	 * 前进 1 tick, 把本 tick 到期的任务依次交给 {@code expired}
+	 */
+	void advance(Consumer<TickTask> expired) {
+		currentTick++;
+
+		for (int level = 1; level <= LEVELS; level++) {
+			if (((currentTick >>> (SLOT_BITS * (level - 1))) & SLOT_MASK) != 0) {
+				break;
+			}
+			if (level == LEVELS) {
+				TickTask head = overflow;
+				overflow = null;
+				reinsert(head, expired);
+			} else {
+				int slot = (int) (currentTick >>> (SLOT_BITS * level)) & SLOT_MASK;
+				TickTask head = slots[level][slot];
+				slots[level][slot] = null;
+				reinsert(head, expired);
+			}
+		}
+
+		int slot = (int) currentTick & SLOT_MASK;
+		TickTask task = slots[0][slot];
+		slots[0][slot] = null;
+		while (task != null) {
+			TickTask next = task.next;
+			task.next = null;
+			size--;
+			expired.accept(task);
+			task = next;
+		}
+	}
+
+	/**
+	 * 移除全部任务
+	 */
+	void clear() {
+		for (TickTask[] level : slots) {
+			Arrays.fill(level, null);
+		}
+		overflow = null;
+		size = 0;
+	}
+
+	private void reinsert(TickTask task, Consumer<TickTask> expired) {
+		while (task != null) {
+			TickTask next = task.next;
+			task.next = null;
+			size--;
+			insert(task, expired);
+			task = next;
+		}
+	}
+}
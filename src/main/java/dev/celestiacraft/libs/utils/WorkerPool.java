@@ -0,0 +1,77 @@
+package dev.celestiacraft.libs.utils;
+
+import dev.celestiacraft.libs.NebulaLibs;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 服务端后台工作线程池
+ *
+ * <p>
+ * 用于把耗时但不访问世界的计算(配方搜索, 脚本计算等)移出主线程
+ * </p>
+ *
+ * <ul>
+ *     <li>线程数为 CPU 核心数的一半, 限制在 1 ~ 4 之间</li>
+ *     <li>等待队列有上限, 队列满时提交会抛出 {@link java.util.concurrent.RejectedExecutionException}</li>
+ *     <li>线程均为守护线程, 不会阻止服务器关闭</li>
+ * </ul>
+ *
+ * <p>
+ * 提交的任务不能读写 {@link net.minecraft.world.level.Level}, 结果需要回到主线程再使用
+ * </p>
+ */
+public final class WorkerPool {
+	private static final int QUEUE_CAPACITY = 1024;
+	private static final ThreadPoolExecutor EXECUTOR;
+
+	static {
+		int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+		AtomicInteger counter = new AtomicInteger();
+		ThreadFactory factory = (runnable) -> {
+			Thread thread = new Thread(runnable, "Nebula Worker-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			thread.setUncaughtExceptionHandler((t, exception) -> {
+				NebulaLibs.LOGGER.error("Uncaught exception in {}", t.getName(), exception);
+			});
+			return thread;
+		};
+
+		EXECUTOR = new ThreadPoolExecutor(
+				threads,
+				threads,
+				30L,
+				TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(QUEUE_CAPACITY),
+				factory
+		);
+		EXECUTOR.allowCoreThreadTimeOut(true);
+	}
+
+	private WorkerPool() {
+	}
+
+	/**
+	 * 在工作线程上执行任务
+	 *
+	 * @param task 不访问世界的计算任务
+	 * @return 任务结果
+	 * @throws java.util.concurrent.RejectedExecutionException 等待队列已满
+	 */
+	public static <T> CompletableFuture<T> supply(Supplier<T> task) {
+		return CompletableFuture.supplyAsync(task, EXECUTOR);
+	}
+
+	/**
+	 * 当前排队中的任务数量
+	 */
+	public static int getQueuedTasks() {
+		return EXECUTOR.getQueue().size();
+	}
+}